@@ -0,0 +1,6 @@
+-- Book, Author and Loan ids now come from pooled sequences (allocation size 50).
+-- MySQL has no sequences, so Hibernate keeps them in the book_seq, author_seq and loan_seq tables.
+-- Run once on an existing database after the tables were created, so new ids start after the current maximum.
+UPDATE book_seq SET next_val = (SELECT COALESCE(MAX(id), 0) + 50 FROM book);
+UPDATE author_seq SET next_val = (SELECT COALESCE(MAX(id), 0) + 50 FROM author);
+UPDATE loan_seq SET next_val = (SELECT COALESCE(MAX(id), 0) + 50 FROM loan);
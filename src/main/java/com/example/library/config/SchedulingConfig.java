@@ -0,0 +1,13 @@
+package com.example.library.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables @Scheduled background jobs (overdue loan processing). Cron expressions are properties,
+ * "-" disables a job.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
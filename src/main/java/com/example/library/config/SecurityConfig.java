@@ -1,12 +1,18 @@
 package com.example.library.config;
 
+import com.example.library.controller.IdempotencyFilter;
 import com.example.library.security.JwtAuthenticationFilter;
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authorization.AuthorizationDecision;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
@@ -21,9 +27,12 @@ public class SecurityConfig {
     @Autowired
     private JwtAuthenticationFilter jwtAuthenticationFilter;
 
+    @Value("${security.bcrypt.strength:10}")
+    private int bcryptStrength;
+
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        return new BCryptPasswordEncoder(bcryptStrength);
     }
 
     @Bean
@@ -32,6 +41,7 @@ public class SecurityConfig {
         configuration.setAllowedOrigins(Arrays.asList("http://localhost:5173"));
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS")); //přidat do properties
         configuration.setAllowedHeaders(Arrays.asList("*"));
+        configuration.setExposedHeaders(Arrays.asList(IdempotencyFilter.REPLAYED));
         configuration.setAllowCredentials(true);
         configuration.setMaxAge(3600L);
 
@@ -46,6 +56,9 @@ public class SecurityConfig {
                 .cors(cors -> cors.configurationSource(corsConfigurationSource()))
                 .csrf(csrf -> csrf.disable())
                 .authorizeHttpRequests(authz -> authz
+                        // Streaming responses finish on an async dispatch; the request was authorized on the way in
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+
                         // Public endpoints for authentication
                         .requestMatchers("/api/users/login", "/api/users/register").permitAll()
                         .requestMatchers("/h2-console/**").permitAll()
@@ -55,20 +68,46 @@ public class SecurityConfig {
                         .requestMatchers("/swagger-ui/**", "/swagger-ui.html").permitAll()
                         .requestMatchers("/v3/api-docs/**", "/v3/api-docs.yaml").permitAll()
 
+                        // A patron's own loan history; other users' histories are admin only
+                        .requestMatchers(org.springframework.http.HttpMethod.GET, "/api/users/{uid}/loans")
+                        .access((authentication, context) -> new AuthorizationDecision(isSelfOrAdmin(
+                                authentication.get(), context.getVariables().get("uid"))))
+
                         // Admin-only endpoints
                         .requestMatchers("/api/admin/**").hasAuthority("ROLE_ADMIN")
                         .requestMatchers("/api/users/**").hasAuthority("ROLE_ADMIN")
 
+                        // Full catalog and loan exports are admin only
+                        .requestMatchers("/api/books/export", "/api/loans/export").hasAuthority("ROLE_ADMIN")
+
+                        // Import job status is not public even though it is a GET under /api/books
+                        .requestMatchers("/api/books/import/**").authenticated()
+
                         // Books endpoints - GET is public, other operations require authentication
                         .requestMatchers(org.springframework.http.HttpMethod.GET, "/api/books", "/api/books/**").permitAll()
                         .requestMatchers("/api/books/**").authenticated()
 
+                        // Typeahead suggestions are public like the book listing
+                        .requestMatchers(org.springframework.http.HttpMethod.GET, "/api/suggest").permitAll()
+
                         // Loan endpoints - all require authentication
                         .requestMatchers("/api/loans/**").authenticated()
 
+                        // Holds are checked against their owner in the controller
+                        .requestMatchers("/api/holds/**").authenticated()
+
                         // All other requests require authentication
                         .anyRequest().authenticated())
                 .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
         return http.build();
     }
+
+    private static boolean isSelfOrAdmin(Authentication authentication, String uid) {
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            return false;
+        }
+        return authentication.getName().equals(uid) || authentication.getAuthorities().stream()
+                .anyMatch(authority -> "ROLE_ADMIN".equals(authority.getAuthority()));
+    }
 }
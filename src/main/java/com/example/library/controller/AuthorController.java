@@ -1,8 +1,10 @@
 package com.example.library.controller;
 
+import com.example.library.dto.CursorPage;
 import com.example.library.model.Author;
 import com.example.library.service.AuthorService;
 import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -21,25 +23,52 @@ import java.util.List;
 @CrossOrigin(origins = "*")
 public class AuthorController {
     private static final Logger logger = LoggerFactory.getLogger(AuthorController.class);
+    // Index-backed columns allowed as keyset sort keys
+    private static final List<String> CURSOR_SORT_FIELDS = List.of("id", "firstName", "lastName");
     private final AuthorService authorService;
+    private final int maxPageSize;
 
-    public AuthorController(AuthorService authorService) {
+    public AuthorController(AuthorService authorService,
+                            @Value("${library.pagination.max-page-size:100}") int maxPageSize) {
         this.authorService = authorService;
+        this.maxPageSize = maxPageSize;
     }
 
     // Get all authors with pagination and optional filters
     @GetMapping
-    public ResponseEntity<Page<Author>> getAll(
+    public ResponseEntity<?> getAll(
             @RequestParam(required = false) String name,
             @RequestParam(required = false) String nationality,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "id") String sortBy,
-            @RequestParam(defaultValue = "ASC") String sortDirection) {
+            @RequestParam(defaultValue = "ASC") String sortDirection,
+            @RequestParam(required = false) String after) {
         logger.info("GET request: Fetching authors - name: {}, nationality: {}, page: {}, size: {}", 
                     name, nationality, page, size);
         try {
+            if (size < 1 || size > maxPageSize) {
+                logger.warn("Invalid page size: {}", size);
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Page size must be between 1 and " + maxPageSize + "; use cursor pagination (after=) to walk the whole list");
+            }
             Sort.Direction direction = sortDirection.equalsIgnoreCase("DESC") ? Sort.Direction.DESC : Sort.Direction.ASC;
+            if (after != null) {
+                if (name != null || nationality != null) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                            "Cursor pagination cannot be combined with name or nationality filters");
+                }
+                if (!CURSOR_SORT_FIELDS.contains(sortBy)) {
+                    logger.warn("Unsupported sort field for cursor pagination: {}", sortBy);
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                            "Cursor pagination supports sortBy: " + String.join(", ", CURSOR_SORT_FIELDS));
+                }
+                CursorPage<Author> authors = authorService.getAuthorsAfter(sortBy, direction, after, size);
+                logger.info("Successfully retrieved {} authors by cursor (hasNext: {})",
+                            authors.getNumberOfElements(), authors.isHasNext());
+                return ResponseEntity.ok(authors);
+            }
+
             Pageable pageable = PageRequest.of(page, size, Sort.by(direction, sortBy));
             Page<Author> authors;
 
@@ -54,6 +83,11 @@ public class AuthorController {
             logger.info("Successfully retrieved page {} with {} authors (total: {})", 
                         page, authors.getNumberOfElements(), authors.getTotalElements());
             return ResponseEntity.ok(authors);
+        } catch (ResponseStatusException e) {
+            throw e;
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid pagination request: {}", e.getMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
         } catch (Exception e) {
             logger.error("Error retrieving authors", e);
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to retrieve authors");
@@ -1,20 +1,44 @@
 package com.example.library.controller;
 
+import com.example.library.dto.BookFacets;
+import com.example.library.dto.BookFilter;
+import com.example.library.dto.BookResponse;
+import com.example.library.dto.BookSearchHit;
+import com.example.library.dto.BookUpsertResult;
+import com.example.library.dto.CursorPage;
+import com.example.library.dto.FacetedResponse;
+import com.example.library.dto.HoldView;
+import com.example.library.exception.BookNotFoundException;
+import com.example.library.exception.HoldAlreadyExistsException;
+import com.example.library.exception.ServiceOverloadedException;
+import com.example.library.exception.UserNotFoundException;
 import com.example.library.model.Book;
+import com.example.library.service.AvailabilityStreamService;
 import com.example.library.service.BookService;
+import com.example.library.service.ExportService;
+import com.example.library.service.HoldService;
 import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 
 @RestController
@@ -22,37 +46,167 @@ import java.util.List;
 @CrossOrigin(origins = "*")
 public class BookController {
     private static final Logger logger = LoggerFactory.getLogger(BookController.class);
+    // Index-backed columns allowed as keyset sort keys
+    private static final List<String> CURSOR_SORT_FIELDS = List.of("id", "title", "publicationYear");
+    private static final List<String> VIEWS = List.of("summary", "full");
     private final BookService bookService;
+    private final ExportService exportService;
+    private final AvailabilityStreamService availabilityStreamService;
+    private final HoldService holdService;
+    private final int bulkMaxSize;
+    private final int maxPageSize;
 
-    public BookController(BookService bookService) {
+    public BookController(BookService bookService, ExportService exportService,
+                          AvailabilityStreamService availabilityStreamService, HoldService holdService,
+                          @Value("${library.books.bulk-max-size:100}") int bulkMaxSize,
+                          @Value("${library.pagination.max-page-size:100}") int maxPageSize) {
         this.bookService = bookService;
+        this.exportService = exportService;
+        this.availabilityStreamService = availabilityStreamService;
+        this.holdService = holdService;
+        this.bulkMaxSize = bulkMaxSize;
+        this.maxPageSize = maxPageSize;
     }
 
-    // Get all books with pagination
+    // Get all books with pagination, cursor mode when "after" is present (empty for the first page).
+    // Returns summaries without content unless view=full is requested. Optional filters combine with AND,
+    // facets=true adds counts per availability, decade and author nationality
     @GetMapping
-    public ResponseEntity<Page<Book>> getAll(
+    public ResponseEntity<?> getAll(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "id") String sortBy,
-            @RequestParam(defaultValue = "ASC") String sortDirection) {
-        logger.info("GET request: Fetching books - page: {}, size: {}, sortBy: {}, direction: {}", 
-                    page, size, sortBy, sortDirection);
+            @RequestParam(defaultValue = "ASC") String sortDirection,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "summary") String view,
+            @RequestParam(required = false) Boolean available,
+            @RequestParam(required = false) Integer yearFrom,
+            @RequestParam(required = false) Integer yearTo,
+            @RequestParam(required = false) Integer authorId,
+            @RequestParam(required = false) String nationality,
+            @RequestParam(defaultValue = "false") boolean facets) {
+        BookFilter filter = new BookFilter(available, yearFrom, yearTo, authorId, nationality);
+        logger.info("GET request: Fetching books - page: {}, size: {}, sortBy: {}, direction: {}, view: {}, filter: {}", 
+                    page, size, sortBy, sortDirection, view, filter);
         try {
+            if (yearFrom != null && yearTo != null && yearFrom > yearTo) {
+                logger.warn("Invalid year range: {} - {}", yearFrom, yearTo);
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "yearFrom must not be greater than yearTo");
+            }
+            if (!VIEWS.contains(view)) {
+                logger.warn("Unsupported book view: {}", view);
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "view must be one of: " + String.join(", ", VIEWS));
+            }
+            boolean full = "full".equals(view);
+            if (size < 1 || size > maxPageSize) {
+                logger.warn("Invalid page size: {}", size);
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Page size must be between 1 and " + maxPageSize + "; use /api/books/export for bulk access");
+            }
             Sort.Direction direction = sortDirection.equalsIgnoreCase("DESC") ? Sort.Direction.DESC : Sort.Direction.ASC;
+            if (after != null) {
+                if (!CURSOR_SORT_FIELDS.contains(sortBy)) {
+                    logger.warn("Unsupported sort field for cursor pagination: {}", sortBy);
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                            "Cursor pagination supports sortBy: " + String.join(", ", CURSOR_SORT_FIELDS));
+                }
+                CursorPage<?> books = full
+                        ? bookService.getBooksAfter(filter, sortBy, direction, after, size)
+                        : bookService.getBookSummariesAfter(filter, sortBy, direction, after, size);
+                logger.info("Successfully retrieved {} books by cursor (hasNext: {})",
+                            books.getNumberOfElements(), books.isHasNext());
+                return ResponseEntity.ok(facets ? new FacetedResponse<>(books, bookService.getFacets(filter)) : books);
+            }
+
             Pageable pageable = PageRequest.of(page, size, Sort.by(direction, sortBy));
-            Page<Book> books = bookService.getAllBooks(pageable);
+            Page<?> books = full ? bookService.getAllBooks(filter, pageable) : bookService.getBookSummaries(filter, pageable);
             logger.info("Successfully retrieved page {} with {} books (total: {})", 
                         page, books.getNumberOfElements(), books.getTotalElements());
-            return ResponseEntity.ok(books);
+            return ResponseEntity.ok(facets ? new FacetedResponse<>(books, bookService.getFacets(filter)) : books);
+        } catch (ResponseStatusException e) {
+            throw e;
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid pagination request: {}", e.getMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
         } catch (Exception e) {
             logger.error("Error retrieving books", e);
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to retrieve books");
         }
     }
 
+    // Ranked full-text search over title, author, ISBN and content
+    @GetMapping("/search")
+    public ResponseEntity<?> search(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean facets) {
+        logger.info("GET request: Searching books - q: {}, page: {}, size: {}", q, page, size);
+        try {
+            if (q.isBlank()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Query must not be empty");
+            }
+            if (size < 1 || size > maxPageSize) {
+                logger.warn("Invalid page size: {}", size);
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Page size must be between 1 and " + maxPageSize);
+            }
+            Page<BookSearchHit> hits = bookService.searchBooks(q, PageRequest.of(page, size));
+            logger.info("Search '{}' matched {} books", q, hits.getTotalElements());
+            if (facets) {
+                BookFacets counts = bookService.getSearchFacets(q);
+                return ResponseEntity.ok(new FacetedResponse<>(hits, counts));
+            }
+            return ResponseEntity.ok(hits);
+        } catch (ResponseStatusException e) {
+            throw e;
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid search request: {}", e.getMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error searching books", e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to search books");
+        }
+    }
+
+    // Stream all books as NDJSON or CSV (admin only), use instead of paging through the whole table
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = "ndjson") String format) {
+        logger.info("GET request: Exporting books as {}", format);
+        try {
+            ExportService.Format exportFormat = ExportService.Format.from(format);
+            StreamingResponseBody body = out -> exportService.exportBooks(exportFormat, out);
+            return ResponseEntity.ok()
+                    .contentType(exportFormat.getMediaType())
+                    .header(HttpHeaders.CONTENT_DISPOSITION,
+                            "attachment; filename=\"books." + exportFormat.getExtension() + "\"")
+                    .body(body);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid export request: {}", e.getMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    // Server-Sent Events of availability changes, of the given books or of all; replaces polling GET /{id}
+    @GetMapping(value = "/availability/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter availabilityStream(@RequestParam(required = false) List<Integer> bookIds) {
+        logger.info("GET request: Subscribing to availability changes - books: {}", bookIds != null ? bookIds : "all");
+        try {
+            return availabilityStreamService.subscribe(bookIds != null ? new HashSet<>(bookIds) : Set.of());
+        } catch (ServiceOverloadedException e) {
+            throw e;
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid availability subscription: {}", e.getMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error subscribing to availability changes", e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to open availability stream");
+        }
+    }
+
     // get book by ID
     @GetMapping("/{id}")
-    public ResponseEntity<Book> getOne(@PathVariable Integer id) {
+    public ResponseEntity<BookResponse> getOne(@PathVariable Integer id) {
         logger.info("GET request: Fetching book with id: {}", id);
         try {
             if (id == null || id <= 0) {
@@ -60,7 +214,7 @@ public class BookController {
                 throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid book ID");
             }
 
-            Book book = bookService.getBookById(id)
+            BookResponse book = bookService.getBookById(id)
                     .orElseThrow(() -> {
                         logger.warn("Book not found with id: {}", id);
                         return new ResponseStatusException(HttpStatus.NOT_FOUND, "Book not found");
@@ -75,9 +229,29 @@ public class BookController {
         }
     }
 
+    // Get book by ISBN-10 or ISBN-13 (hyphens optional)
+    @GetMapping("/isbn/{isbn}")
+    public ResponseEntity<BookResponse> getByIsbn(@PathVariable String isbn) {
+        logger.info("GET request: Fetching book with ISBN: {}", isbn);
+        try {
+            BookResponse book = bookService.getBookByIsbn(isbn)
+                    .orElseThrow(() -> {
+                        logger.warn("Book not found with ISBN: {}", isbn);
+                        return new ResponseStatusException(HttpStatus.NOT_FOUND, "Book not found");
+                    });
+            logger.info("Successfully retrieved book: {}", book.getTitle());
+            return ResponseEntity.ok(book);
+        } catch (ResponseStatusException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error retrieving book with ISBN: {}", isbn, e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to retrieve book");
+        }
+    }
+
     // Create a new book
     @PostMapping
-    public ResponseEntity<Book> create(@Valid @RequestBody Book book) {
+    public ResponseEntity<BookResponse> create(@Valid @RequestBody Book book) {
         logger.info("POST request: Creating new book with title: {}", book != null ? book.getTitle() : "null");
         try {
             if (book == null) {
@@ -87,9 +261,12 @@ public class BookController {
 
             Book savedBook = bookService.createBook(book);
             logger.info("Successfully created book with ID: {}", savedBook.getId());
-            return new ResponseEntity<>(savedBook, HttpStatus.CREATED);
+            return new ResponseEntity<>(BookResponse.from(savedBook), HttpStatus.CREATED);
         } catch (ResponseStatusException e) {
             throw e;
+        } catch (DataIntegrityViolationException e) {
+            logger.warn("Book with ISBN {} already exists", book.getIsbn());
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "A book with this ISBN already exists");
         } catch (IllegalArgumentException e) {
             logger.error("Invalid book data provided", e);
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid book data: " + e.getMessage());
@@ -99,9 +276,37 @@ public class BookController {
         }
     }
 
+    // Queue the caller for a copy of the book; when one comes back it is set aside for a pickup window
+    @PostMapping("/{id}/holds")
+    public ResponseEntity<HoldView> placeHold(@PathVariable Integer id, Authentication authentication) {
+        logger.info("POST request: Placing hold on book {} - User: {}", id, authentication.getName());
+        try {
+            if (id == null || id <= 0) {
+                logger.warn("Invalid book ID for hold: {}", id);
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid book ID");
+            }
+
+            HoldView hold = holdService.placeHold(authentication.getName(), id);
+            logger.info("Hold placed - Hold ID: {}, Book: {}, status: {}, position: {}",
+                    hold.getId(), id, hold.getStatus(), hold.getPosition());
+            return new ResponseEntity<>(hold, HttpStatus.CREATED);
+        } catch (ResponseStatusException e) {
+            throw e;
+        } catch (BookNotFoundException | UserNotFoundException e) {
+            logger.warn("Hold target not found: {}", e.getMessage());
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+        } catch (HoldAlreadyExistsException e) {
+            logger.warn("User {} already holds book {}", authentication.getName(), id);
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error placing hold on book {}", id, e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to place hold");
+        }
+    }
+
     // Create multiple books
     @PostMapping("/bulk")
-    public ResponseEntity<List<Book>> createMany(@Valid @RequestBody List<Book> books) {
+    public ResponseEntity<List<BookResponse>> createMany(@Valid @RequestBody List<Book> books) {
         logger.info("POST request: Creating {} books in bulk", books != null ? books.size() : 0);
         try {
             if (books == null || books.isEmpty()) {
@@ -109,16 +314,21 @@ public class BookController {
                 throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Book list cannot be empty");
             }
 
-            if (books.size() > 100) {
+            if (books.size() > bulkMaxSize) {
                 logger.warn("Bulk create request exceeded limit: {} books", books.size());
-                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Maximum 100 books can be created at once");
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Maximum " + bulkMaxSize + " books can be created at once");
             }
 
             List<Book> savedBooks = bookService.createMultipleBooks(books);
             logger.info("Successfully created {} books", savedBooks.size());
-            return new ResponseEntity<>(savedBooks, HttpStatus.CREATED);
+            return new ResponseEntity<>(savedBooks.stream().map(BookResponse::from).toList(), HttpStatus.CREATED);
         } catch (ResponseStatusException e) {
             throw e;
+        } catch (DataIntegrityViolationException e) {
+            logger.warn("Bulk create contains an ISBN that already exists");
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "A book with one of these ISBNs already exists, use PUT /api/books/bulk to upsert");
         } catch (IllegalArgumentException e) {
             logger.error("Invalid book data in bulk creation", e);
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid book data: " + e.getMessage());
@@ -128,9 +338,39 @@ public class BookController {
         }
     }
 
+    // Insert or update multiple books matched by ISBN
+    @PutMapping("/bulk")
+    public ResponseEntity<BookUpsertResult> upsertMany(@Valid @RequestBody List<Book> books) {
+        logger.info("PUT request: Upserting {} books by ISBN", books != null ? books.size() : 0);
+        try {
+            if (books == null || books.isEmpty()) {
+                logger.warn("Book list is null or empty");
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Book list cannot be empty");
+            }
+
+            if (books.size() > bulkMaxSize) {
+                logger.warn("Bulk upsert request exceeded limit: {} books", books.size());
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Maximum " + bulkMaxSize + " books can be upserted at once");
+            }
+
+            BookUpsertResult result = bookService.upsertByIsbn(books);
+            logger.info("Successfully upserted books - created: {}, updated: {}", result.getCreated(), result.getUpdated());
+            return ResponseEntity.ok(result);
+        } catch (ResponseStatusException e) {
+            throw e;
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid book data in bulk upsert: {}", e.getMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid book data: " + e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error upserting books", e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to upsert books");
+        }
+    }
+
     // Update an existing book
     @PutMapping("/{id}")
-    public ResponseEntity<Book> update(@PathVariable Integer id, @Valid @RequestBody Book updated) {
+    public ResponseEntity<BookResponse> update(@PathVariable Integer id, @Valid @RequestBody Book updated) {
         logger.info("PUT request: Updating book with id: {}", id);
         try {
             if (id == null || id <= 0) {
@@ -143,11 +383,14 @@ public class BookController {
                 throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Book data is required");
             }
 
-            Book savedBook = bookService.updateBook(id, updated);
+            BookResponse savedBook = bookService.updateBook(id, updated);
             logger.info("Successfully updated book with id: {}", id);
             return ResponseEntity.ok(savedBook);
         } catch (ResponseStatusException e) {
             throw e;
+        } catch (DataIntegrityViolationException e) {
+            logger.warn("Another book already has ISBN {}", updated.getIsbn());
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Another book with this ISBN already exists");
         } catch (IllegalArgumentException e) {
             logger.error("Book not found for update with id: {}", id, e);
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
@@ -0,0 +1,67 @@
+package com.example.library.controller;
+
+import com.example.library.dto.ImportJobStatus;
+import com.example.library.exception.ServiceOverloadedException;
+import com.example.library.service.BookImportService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.net.URI;
+
+@RestController
+@RequestMapping("/api/books/import")
+@CrossOrigin(origins = "*")
+public class BookImportController {
+    private static final Logger logger = LoggerFactory.getLogger(BookImportController.class);
+    private final BookImportService importService;
+
+    public BookImportController(BookImportService importService) {
+        this.importService = importService;
+    }
+
+    /**
+     * Start an asynchronous import from an NDJSON (application/x-ndjson) or CSV (text/csv) body.
+     * Returns 202 with the job id right after the upload is stored. With mode=upsert, rows whose
+     * ISBN already exists update that book instead of being rejected as duplicates.
+     */
+    @PostMapping(consumes = {"application/x-ndjson", "text/csv"})
+    public ResponseEntity<ImportJobStatus> start(HttpServletRequest request,
+                                                 @RequestParam(defaultValue = "create") String mode) {
+        logger.info("POST request: Starting book import - content type: {}, length: {}, mode: {}",
+                request.getContentType(), request.getContentLengthLong(), mode);
+        try {
+            BookImportService.Format format = BookImportService.Format.fromContentType(request.getContentType());
+            BookImportService.Mode importMode = BookImportService.Mode.from(mode);
+            ImportJobStatus job = importService.submit(request.getInputStream(), format, importMode);
+            logger.info("Import job {} accepted", job.getJobId());
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/books/import/" + job.getJobId()))
+                    .body(job);
+        } catch (ResponseStatusException | ServiceOverloadedException e) {
+            throw e;
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid import request: {}", e.getMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error starting book import", e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to start import");
+        }
+    }
+
+    // Get progress and row errors of an import job
+    @GetMapping("/{jobId}")
+    public ResponseEntity<ImportJobStatus> status(@PathVariable String jobId) {
+        logger.info("GET request: Fetching import job: {}", jobId);
+        ImportJobStatus job = importService.getJob(jobId)
+                .orElseThrow(() -> {
+                    logger.warn("Import job not found: {}", jobId);
+                    return new ResponseStatusException(HttpStatus.NOT_FOUND, "Import job not found");
+                });
+        return ResponseEntity.ok(job);
+    }
+}
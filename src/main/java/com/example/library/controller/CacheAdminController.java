@@ -0,0 +1,53 @@
+package com.example.library.controller;
+
+import com.example.library.dto.CacheRegionStats;
+import com.example.library.service.CacheAdminService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/admin/cache")
+@CrossOrigin(origins = "*")
+public class CacheAdminController {
+    private static final Logger logger = LoggerFactory.getLogger(CacheAdminController.class);
+    private final CacheAdminService cacheAdminService;
+
+    public CacheAdminController(CacheAdminService cacheAdminService) {
+        this.cacheAdminService = cacheAdminService;
+    }
+
+    // Hit, miss and eviction counters per second-level cache region (admin only)
+    @GetMapping
+    public ResponseEntity<List<CacheRegionStats>> statistics() {
+        logger.info("GET request: Fetching cache statistics");
+        try {
+            List<CacheRegionStats> stats = cacheAdminService.getStatistics();
+            logger.info("Successfully retrieved statistics for {} cache regions (enabled: {})",
+                        stats.size(), cacheAdminService.isEnabled());
+            return ResponseEntity.ok(stats);
+        } catch (Exception e) {
+            logger.error("Error retrieving cache statistics", e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to retrieve cache statistics");
+        }
+    }
+
+    // Evict all cached entities and collections (admin only)
+    @DeleteMapping
+    public ResponseEntity<Void> evictAll() {
+        logger.info("DELETE request: Evicting second-level cache");
+        try {
+            cacheAdminService.evictAll();
+            logger.info("Successfully evicted second-level cache");
+            return ResponseEntity.noContent().build();
+        } catch (Exception e) {
+            logger.error("Error evicting cache", e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to evict cache");
+        }
+    }
+}
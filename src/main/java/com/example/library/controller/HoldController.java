@@ -0,0 +1,90 @@
+package com.example.library.controller;
+
+import com.example.library.dto.HoldView;
+import com.example.library.exception.HoldClosedException;
+import com.example.library.exception.HoldNotFoundException;
+import com.example.library.service.HoldService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * A patron's holds; placed with POST /api/books/{id}/holds. Patrons see and cancel their own holds,
+ * admins any.
+ */
+@RestController
+@RequestMapping("/api/holds")
+@CrossOrigin(origins = "*")
+public class HoldController {
+    private static final Logger logger = LoggerFactory.getLogger(HoldController.class);
+    private final HoldService holdService;
+
+    public HoldController(HoldService holdService) {
+        this.holdService = holdService;
+    }
+
+    // GET hold by ID, with the position in the queue while waiting
+    @GetMapping("/{id}")
+    public ResponseEntity<HoldView> getOne(@PathVariable Integer id, Authentication authentication) {
+        logger.info("GET request: Fetching hold with id: {}", id);
+        try {
+            if (id == null || id <= 0) {
+                logger.warn("Invalid hold ID: {}", id);
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid hold ID");
+            }
+
+            HoldView hold = holdService.getHold(id);
+            checkOwner(hold, authentication);
+            return ResponseEntity.ok(hold);
+        } catch (ResponseStatusException e) {
+            throw e;
+        } catch (HoldNotFoundException e) {
+            logger.warn("Hold not found with id: {}", id);
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Hold not found");
+        } catch (Exception e) {
+            logger.error("Error retrieving hold with id: {}", id, e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to retrieve hold");
+        }
+    }
+
+    // Cancel a hold; a copy already set aside for it goes to the next patron in the queue
+    @DeleteMapping("/{id}")
+    public ResponseEntity<HoldView> cancel(@PathVariable Integer id, Authentication authentication) {
+        logger.info("DELETE request: Cancelling hold with id: {}", id);
+        try {
+            if (id == null || id <= 0) {
+                logger.warn("Invalid hold ID for cancel: {}", id);
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid hold ID");
+            }
+
+            checkOwner(holdService.getHold(id), authentication);
+            HoldView cancelled = holdService.cancelHold(id);
+            logger.info("Hold cancelled - Hold ID: {}, Book: {}", id, cancelled.getBookId());
+            return ResponseEntity.ok(cancelled);
+        } catch (ResponseStatusException e) {
+            throw e;
+        } catch (HoldNotFoundException e) {
+            logger.warn("Hold not found for cancel with id: {}", id);
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Hold not found");
+        } catch (HoldClosedException e) {
+            logger.warn("Hold already closed - Hold ID: {}", id);
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error cancelling hold with id: {}", id, e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to cancel hold");
+        }
+    }
+
+    private static void checkOwner(HoldView hold, Authentication authentication) {
+        boolean admin = authentication.getAuthorities().stream()
+                .anyMatch(authority -> "ROLE_ADMIN".equals(authority.getAuthority()));
+        if (!admin && !authentication.getName().equals(hold.getUserId())) {
+            logger.warn("User {} may not access hold {}", authentication.getName(), hold.getId());
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Hold belongs to another user");
+        }
+    }
+}
@@ -1,67 +1,145 @@
 package com.example.library.controller;
 
 import com.example.library.model.Loan;
-import com.example.library.model.Book;
-import com.example.library.model.User;
+import com.example.library.model.LoanStatus;
+import com.example.library.dto.BatchBorrowRequest;
+import com.example.library.dto.BatchReturnRequest;
 import com.example.library.dto.BorrowLoanRequest;
+import com.example.library.dto.CursorPage;
+import com.example.library.dto.LoanBatchResult;
+import com.example.library.dto.LoanView;
+import com.example.library.exception.BookNotAvailableException;
+import com.example.library.exception.BookNotFoundException;
+import com.example.library.exception.LoanAlreadyReturnedException;
+import com.example.library.exception.LoanNotFoundException;
+import com.example.library.exception.LoanQuotaExceededException;
+import com.example.library.exception.UserNotFoundException;
+import com.example.library.repository.KeysetPaginator;
 import com.example.library.repository.LoanRepository;
-import com.example.library.repository.BookRepository;
+import com.example.library.repository.LoanSpecifications;
+import com.example.library.service.ExportService;
+import com.example.library.service.LoanService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.security.access.prepost.PreAuthorize;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.time.LocalDate;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/loans")
 @CrossOrigin(origins = "*")
 public class LoanController {
     private static final Logger logger = LoggerFactory.getLogger(LoanController.class);
+    // Index-backed columns allowed as keyset sort keys
+    private static final List<String> CURSOR_SORT_FIELDS = List.of("id", "loanDate");
     private final LoanRepository loanRepo;
-    private final BookRepository bookRepo;
-
-    public LoanController(LoanRepository loanRepo, BookRepository bookRepo) {
+    private final KeysetPaginator keysetPaginator;
+    private final ExportService exportService;
+    private final LoanService loanService;
+    private final int maxPageSize;
+    private final int batchMaxSize;
+
+    public LoanController(LoanRepository loanRepo, KeysetPaginator keysetPaginator,
+                          ExportService exportService, LoanService loanService,
+                          @Value("${library.pagination.max-page-size:100}") int maxPageSize,
+                          @Value("${library.loans.batch-max-size:50}") int batchMaxSize) {
         this.loanRepo = loanRepo;
-        this.bookRepo = bookRepo;
+        this.keysetPaginator = keysetPaginator;
+        this.exportService = exportService;
+        this.loanService = loanService;
+        this.maxPageSize = maxPageSize;
+        this.batchMaxSize = batchMaxSize;
     }
 
-    // Get all loans with pagination (admin only)
+    // Get all loans with pagination (admin only), optionally of one book ("who has this book") and status
     @GetMapping
     @PreAuthorize("hasRole('ROLE_ADMIN')")
-    public ResponseEntity<Page<Loan>> all(
+    public ResponseEntity<?> all(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "id") String sortBy,
-            @RequestParam(defaultValue = "DESC") String sortDirection) {
-        logger.info("GET request: Admin fetching loans - page: {}, size: {}, sortBy: {}, direction: {}", 
-                    page, size, sortBy, sortDirection);
+            @RequestParam(defaultValue = "DESC") String sortDirection,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer bookId,
+            @RequestParam(required = false) String status) {
+        logger.info("GET request: Admin fetching loans - page: {}, size: {}, sortBy: {}, direction: {}, bookId: {}, status: {}",
+                    page, size, sortBy, sortDirection, bookId, status);
         try {
+            if (size < 1 || size > maxPageSize) {
+                logger.warn("Invalid page size: {}", size);
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Page size must be between 1 and " + maxPageSize + "; use /api/loans/export for bulk access");
+            }
             Sort.Direction direction = sortDirection.equalsIgnoreCase("DESC") ? Sort.Direction.DESC : Sort.Direction.ASC;
+            Specification<Loan> filter = Specification.allOf(
+                    bookId != null ? LoanSpecifications.ofBook(bookId) : null,
+                    LoanSpecifications.withStatus(status != null ? LoanStatus.from(status) : null));
+            if (after != null) {
+                if (!CURSOR_SORT_FIELDS.contains(sortBy)) {
+                    logger.warn("Unsupported sort field for cursor pagination: {}", sortBy);
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                            "Cursor pagination supports sortBy: " + String.join(", ", CURSOR_SORT_FIELDS));
+                }
+                KeysetPaginator.KeysetSlice slice = keysetPaginator.seek(Loan.class, "id", sortBy, direction,
+                        after, size, filter);
+                CursorPage<LoanView> loans = keysetPaginator.load(slice, loanRepo::findViewsByIdIn, LoanView::getId);
+                logger.info("Successfully retrieved {} loans by cursor (hasNext: {})",
+                            loans.getNumberOfElements(), loans.isHasNext());
+                return ResponseEntity.ok(loans);
+            }
+
             Pageable pageable = PageRequest.of(page, size, Sort.by(direction, sortBy));
-            Page<Loan> loans = loanRepo.findAll(pageable);
+            Page<LoanView> loans = loanRepo.findViews(filter, pageable);
             logger.info("Successfully retrieved page {} with {} loans (total: {})", 
                         page, loans.getNumberOfElements(), loans.getTotalElements());
             return ResponseEntity.ok(loans);
+        } catch (ResponseStatusException e) {
+            throw e;
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid pagination request: {}", e.getMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
         } catch (Exception e) {
             logger.error("Error retrieving loans", e);
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to retrieve loans");
         }
     }
 
+    // Stream all loans as NDJSON or CSV (admin only), use instead of paging through the whole table
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = "ndjson") String format) {
+        logger.info("GET request: Exporting loans as {}", format);
+        try {
+            ExportService.Format exportFormat = ExportService.Format.from(format);
+            StreamingResponseBody body = out -> exportService.exportLoans(exportFormat, out);
+            return ResponseEntity.ok()
+                    .contentType(exportFormat.getMediaType())
+                    .header(HttpHeaders.CONTENT_DISPOSITION,
+                            "attachment; filename=\"loans." + exportFormat.getExtension() + "\"")
+                    .body(body);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid export request: {}", e.getMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
     /**
      * Borrow a book - creates a new loan and marks book as unavailable
      */
     @PostMapping("/borrow")
-    public ResponseEntity<Loan> borrow(@Valid @RequestBody BorrowLoanRequest borrowRequest) {
+    public ResponseEntity<LoanView> borrow(@Valid @RequestBody BorrowLoanRequest borrowRequest) {
         logger.info("POST request: Borrowing book - User: {}, Book: {}",
                 borrowRequest != null ? borrowRequest.getUserId() : null,
                 borrowRequest != null ? borrowRequest.getBookId() : null);
@@ -81,36 +159,22 @@ public class LoanController {
                 throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Valid book ID is required");
             }
 
-            Book book = bookRepo.findById(borrowRequest.getBookId())
-                    .orElseThrow(() -> {
-                        logger.warn("Book not found for borrowing: {}", borrowRequest.getBookId());
-                        return new ResponseStatusException(HttpStatus.NOT_FOUND, "Book not found");
-                    });
-
-            if (!book.isAvailable()) {
-                logger.warn("Book not available for borrowing: {} (ID: {})", book.getTitle(), book.getId());
-                throw new ResponseStatusException(HttpStatus.CONFLICT, "Book is not available");
-            }
-
-            book.setAvailable(false);
-            bookRepo.save(book);
-
-            Loan loan = new Loan();
-            User user = new User();
-            user.setUid(borrowRequest.getUserId());
-
-            loan.setUser(user);
-            loan.setBook(book);
-            loan.setLoanDate(LocalDate.now());
-            loan.setStatus("ACTIVE");
-            loan.setReturnDate(null);
-
-            Loan savedLoan = loanRepo.save(loan);
+            LoanView savedLoan = loanService.borrow(borrowRequest.getUserId(), borrowRequest.getBookId());
             logger.info("Book borrowed successfully - Loan ID: {}, User: {}, Book: {}",
-                    savedLoan.getId(), borrowRequest.getUserId(), book.getTitle());
+                    savedLoan.getId(), borrowRequest.getUserId(), savedLoan.getBookTitle());
             return new ResponseEntity<>(savedLoan, HttpStatus.CREATED);
         } catch (ResponseStatusException e) {
             throw e;
+        } catch (BookNotFoundException | UserNotFoundException e) {
+            logger.warn("Borrow target not found: {}", e.getMessage());
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+        } catch (BookNotAvailableException e) {
+            logger.warn("Book not available for borrowing: {}", borrowRequest.getBookId());
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "Book is not available, place a hold with POST /api/books/" + borrowRequest.getBookId() + "/holds");
+        } catch (LoanQuotaExceededException e) {
+            logger.warn("Borrow over the loan limit - User: {}", borrowRequest.getUserId());
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
         } catch (Exception e) {
             logger.error("Error borrowing book", e);
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to borrow book");
@@ -121,7 +185,7 @@ public class LoanController {
      * Return a loan - marks loan as returned and makes book available
      */
     @PostMapping("/return/{id}")
-    public ResponseEntity<Loan> returnLoan(@PathVariable Integer id) {
+    public ResponseEntity<LoanView> returnLoan(@PathVariable Integer id) {
         logger.info("POST request: Returning loan with id: {}", id);
         try {
             if (id == null || id <= 0) {
@@ -129,40 +193,79 @@ public class LoanController {
                 throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid loan ID");
             }
 
-            Loan loan = loanRepo.findById(id)
-                    .orElseThrow(() -> {
-                        logger.warn("Loan not found for return with id: {}", id);
-                        return new ResponseStatusException(HttpStatus.NOT_FOUND, "Loan not found");
-                    });
-            if ("RETURNED".equalsIgnoreCase(loan.getStatus())) {
-                logger.warn("Loan already returned - Loan ID: {}", id);
-                throw new ResponseStatusException(HttpStatus.CONFLICT, "Loan is already returned");
+            LoanView savedLoan = loanService.returnLoan(id);
+            logger.info("Loan returned successfully - Loan ID: {}, Book: {}", id, savedLoan.getBookTitle());
+            return ResponseEntity.ok(savedLoan);
+        } catch (ResponseStatusException e) {
+            throw e;
+        } catch (LoanNotFoundException e) {
+            logger.warn("Loan not found for return with id: {}", id);
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Loan not found");
+        } catch (LoanAlreadyReturnedException e) {
+            logger.warn("Loan already returned - Loan ID: {}", id);
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Loan is already returned");
+        } catch (Exception e) {
+            logger.error("Error returning loan with id: {}", id, e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to return loan");
+        }
+    }
+
+    /**
+     * Borrow a stack of books for one user in one transaction, with a result per book
+     */
+    @PostMapping("/borrow/batch")
+    public ResponseEntity<LoanBatchResult> borrowBatch(@Valid @RequestBody BatchBorrowRequest batchRequest) {
+        logger.info("POST request: Borrowing {} books in batch - User: {}",
+                batchRequest.getBookIds().size(), batchRequest.getUserId());
+        try {
+            if (batchRequest.getBookIds().size() > batchMaxSize) {
+                logger.warn("Batch borrow request exceeded limit: {} books", batchRequest.getBookIds().size());
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Maximum " + batchMaxSize + " books can be borrowed at once");
             }
 
-            loan.setReturnDate(LocalDate.now());
-            loan.setStatus("RETURNED");
+            LoanBatchResult result = loanService.borrowBatch(batchRequest.getUserId(), batchRequest.getBookIds());
+            logger.info("Batch borrow finished - User: {}, borrowed: {}, failed: {}",
+                    batchRequest.getUserId(), result.getSucceeded(), result.getFailed());
+            return ResponseEntity.ok(result);
+        } catch (ResponseStatusException e) {
+            throw e;
+        } catch (UserNotFoundException e) {
+            logger.warn("User not found for batch borrow: {}", batchRequest.getUserId());
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error borrowing books in batch", e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to borrow books");
+        }
+    }
 
-            Book book = loan.getBook();
-            if (book != null) {
-                book.setAvailable(true);
-                bookRepo.save(book);
+    /**
+     * Return a stack of loans in one transaction, with a result per loan
+     */
+    @PostMapping("/return/batch")
+    public ResponseEntity<LoanBatchResult> returnBatch(@Valid @RequestBody BatchReturnRequest batchRequest) {
+        logger.info("POST request: Returning {} loans in batch", batchRequest.getLoanIds().size());
+        try {
+            if (batchRequest.getLoanIds().size() > batchMaxSize) {
+                logger.warn("Batch return request exceeded limit: {} loans", batchRequest.getLoanIds().size());
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Maximum " + batchMaxSize + " loans can be returned at once");
             }
 
-            Loan savedLoan = loanRepo.save(loan);
-            logger.info("Loan returned successfully - Loan ID: {}, Book: {}", id,
-                    book != null ? book.getTitle() : "unknown");
-            return ResponseEntity.ok(savedLoan);
+            LoanBatchResult result = loanService.returnBatch(batchRequest.getLoanIds());
+            logger.info("Batch return finished - returned: {}, failed: {}", result.getSucceeded(), result.getFailed());
+            return ResponseEntity.ok(result);
         } catch (ResponseStatusException e) {
             throw e;
         } catch (Exception e) {
-            logger.error("Error returning loan with id: {}", id, e);
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to return loan");
+            logger.error("Error returning loans in batch", e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to return loans");
         }
     }
 
     // GET loan by ID
     @GetMapping("/{id}")
-    public ResponseEntity<Loan> getOne(@PathVariable Integer id) {
+    public ResponseEntity<LoanView> getOne(@PathVariable Integer id) {
         logger.info("GET request: Fetching loan with id: {}", id);
         try {
             if (id == null || id <= 0) {
@@ -170,7 +273,7 @@ public class LoanController {
                 throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid loan ID");
             }
 
-            Loan loan = loanRepo.findById(id)
+            LoanView loan = loanRepo.findViewById(id)
                     .orElseThrow(() -> {
                         logger.warn("Loan not found with id: {}", id);
                         return new ResponseStatusException(HttpStatus.NOT_FOUND, "Loan not found");
@@ -188,7 +291,7 @@ public class LoanController {
     // PUT update loan (updates dates/status). Adjusts book availability when status
     // changes.
     @PutMapping("/{id}")
-    public ResponseEntity<Loan> update(@PathVariable Integer id, @Valid @RequestBody Loan updated) {
+    public ResponseEntity<LoanView> update(@PathVariable Integer id, @Valid @RequestBody Loan updated) {
         try {
             if (id == null || id <= 0) {
                 throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid loan ID");
@@ -197,43 +300,15 @@ public class LoanController {
                 throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Loan data is required");
             }
 
-            Loan loan = loanRepo.findById(id)
-                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Loan not found"));
-
-            String previousStatus = loan.getStatus();
-
-            if (updated.getLoanDate() != null) {
-                loan.setLoanDate(updated.getLoanDate());
-            }
-
-            if (updated.getReturnDate() != null) {
-                loan.setReturnDate(updated.getReturnDate());
-            }
-
-            if (updated.getStatus() != null && !updated.getStatus().isBlank()) {
-                loan.setStatus(updated.getStatus());
-            }
-
-            if (previousStatus != null && !previousStatus.equals(updated.getStatus())) {
-                Book book = loan.getBook();
-                if (book == null) {
-                    throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Associated book not found");
-                }
-                if ("RETURNED".equalsIgnoreCase(updated.getStatus())) {
-                    book.setAvailable(true);
-                    bookRepo.save(book);
-                } else if ("ACTIVE".equalsIgnoreCase(updated.getStatus())) {
-                    if (book.isAvailable()) {
-                        book.setAvailable(false);
-                        bookRepo.save(book);
-                    }
-                }
-            }
-
-            Loan saved = loanRepo.save(loan);
+            LoanView saved = loanService.updateLoan(id, updated);
             return ResponseEntity.ok(saved);
         } catch (ResponseStatusException e) {
             throw e;
+        } catch (LoanNotFoundException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Loan not found");
+        } catch (BookNotAvailableException e) {
+            logger.warn("Cannot reopen loan {}, no copy of its book is available", id);
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
         } catch (Exception e) {
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to update loan");
         }
@@ -246,21 +321,12 @@ public class LoanController {
                 throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid loan ID");
             }
 
-            Loan loan = loanRepo.findById(id)
-                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Loan not found"));
-
-            if (loan.getStatus() != null && loan.getStatus().equalsIgnoreCase("ACTIVE")) {
-                Book book = loan.getBook();
-                if (book != null) {
-                    book.setAvailable(true);
-                    bookRepo.save(book);
-                }
-            }
-
-            loanRepo.deleteById(id);
+            loanService.deleteLoan(id);
             return ResponseEntity.noContent().build();
         } catch (ResponseStatusException e) {
             throw e;
+        } catch (LoanNotFoundException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Loan not found");
         } catch (Exception e) {
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to delete loan");
         }
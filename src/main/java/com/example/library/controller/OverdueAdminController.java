@@ -0,0 +1,55 @@
+package com.example.library.controller;
+
+import com.example.library.dto.OverdueRunStatus;
+import com.example.library.service.OverdueLoanService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/admin/overdue")
+@CrossOrigin(origins = "*")
+public class OverdueAdminController {
+    private static final Logger logger = LoggerFactory.getLogger(OverdueAdminController.class);
+    private final OverdueLoanService overdueLoanService;
+
+    public OverdueAdminController(OverdueLoanService overdueLoanService) {
+        this.overdueLoanService = overdueLoanService;
+    }
+
+    // Recent overdue runs with their throughput, newest first (admin only)
+    @GetMapping("/runs")
+    public ResponseEntity<List<OverdueRunStatus>> runs() {
+        logger.info("GET request: Fetching overdue runs");
+        try {
+            List<OverdueRunStatus> runs = overdueLoanService.getRuns();
+            logger.info("Successfully retrieved {} overdue runs", runs.size());
+            return ResponseEntity.ok(runs);
+        } catch (Exception e) {
+            logger.error("Error retrieving overdue runs", e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to retrieve overdue runs");
+        }
+    }
+
+    // Start an overdue run now instead of waiting for the schedule (admin only)
+    @PostMapping("/runs")
+    public ResponseEntity<OverdueRunStatus> start() {
+        logger.info("POST request: Starting overdue run");
+        try {
+            OverdueRunStatus run = overdueLoanService.start();
+            logger.info("Overdue run {} started", run.getRunId());
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(run);
+        } catch (IllegalStateException e) {
+            logger.warn("Overdue run not started: {}", e.getMessage());
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error starting overdue run", e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to start overdue run");
+        }
+    }
+}
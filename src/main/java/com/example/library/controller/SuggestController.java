@@ -0,0 +1,48 @@
+package com.example.library.controller;
+
+import com.example.library.dto.Suggestion;
+import com.example.library.search.SuggestIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/suggest")
+@CrossOrigin(origins = "*")
+public class SuggestController {
+    private static final Logger logger = LoggerFactory.getLogger(SuggestController.class);
+    private final SuggestIndex suggestIndex;
+
+    public SuggestController(SuggestIndex suggestIndex) {
+        this.suggestIndex = suggestIndex;
+    }
+
+    // Typeahead completions over book titles and author names, most borrowed first (in memory, no database access)
+    @GetMapping
+    public ResponseEntity<List<Suggestion>> suggest(
+            @RequestParam String prefix,
+            @RequestParam(defaultValue = "10") int limit) {
+        logger.debug("GET request: Suggesting completions - prefix: {}, limit: {}", prefix, limit);
+        try {
+            if (prefix.isBlank()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Prefix must not be empty");
+            }
+            if (limit < 1 || limit > suggestIndex.getMaxResults()) {
+                logger.warn("Invalid suggestion limit: {}", limit);
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Limit must be between 1 and " + suggestIndex.getMaxResults());
+            }
+            return ResponseEntity.ok(suggestIndex.suggest(prefix, limit));
+        } catch (ResponseStatusException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error suggesting completions", e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to suggest completions");
+        }
+    }
+}
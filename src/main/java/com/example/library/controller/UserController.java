@@ -1,11 +1,21 @@
 package com.example.library.controller;
 
+import com.example.library.dto.CursorPage;
+import com.example.library.dto.LoanView;
+import com.example.library.exception.ServiceOverloadedException;
+import com.example.library.exception.UserNotFoundException;
+import com.example.library.model.LoanStatus;
 import com.example.library.model.User;
+import com.example.library.repository.KeysetPaginator;
 import com.example.library.repository.UserRepository;
 import com.example.library.dto.LoginRequest;
 import com.example.library.dto.LoginResponse;
+import com.example.library.service.ExportService;
+import com.example.library.service.LoanService;
+import com.example.library.service.PasswordService;
 import com.example.library.util.JwtUtil;
 import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -13,11 +23,13 @@ import org.springframework.data.domain.Sort;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpStatus;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
 import java.util.Optional;
 
 @RestController
@@ -25,38 +37,94 @@ import java.util.Optional;
 @CrossOrigin(origins = "*")
 public class UserController {
     private static final Logger logger = LoggerFactory.getLogger(UserController.class);
+    // Index-backed columns allowed as keyset sort keys
+    private static final List<String> CURSOR_SORT_FIELDS = List.of("uid", "email");
     private final UserRepository repo;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordService passwordService;
     private final JwtUtil jwtUtil;
+    private final KeysetPaginator keysetPaginator;
+    private final ExportService exportService;
+    private final LoanService loanService;
+    private final int maxPageSize;
 
-    public UserController(UserRepository repo, PasswordEncoder passwordEncoder, JwtUtil jwtUtil) {
+    public UserController(UserRepository repo, PasswordService passwordService, JwtUtil jwtUtil,
+                          KeysetPaginator keysetPaginator, ExportService exportService, LoanService loanService,
+                          @Value("${library.pagination.max-page-size:100}") int maxPageSize) {
         this.repo = repo;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordService = passwordService;
         this.jwtUtil = jwtUtil;
+        this.keysetPaginator = keysetPaginator;
+        this.exportService = exportService;
+        this.loanService = loanService;
+        this.maxPageSize = maxPageSize;
     }
 
     // Get all users with pagination
     @GetMapping
-    public ResponseEntity<Page<User>> all(
+    public ResponseEntity<?> all(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "id") String sortBy,
-            @RequestParam(defaultValue = "ASC") String sortDirection) {
+            @RequestParam(defaultValue = "ASC") String sortDirection,
+            @RequestParam(required = false) String after) {
         logger.info("GET request: Fetching users - page: {}, size: {}, sortBy: {}, direction: {}", 
                     page, size, sortBy, sortDirection);
         try {
+            if (size < 1 || size > maxPageSize) {
+                logger.warn("Invalid page size: {}", size);
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Page size must be between 1 and " + maxPageSize + "; use /api/users/export for bulk access");
+            }
             Sort.Direction direction = sortDirection.equalsIgnoreCase("DESC") ? Sort.Direction.DESC : Sort.Direction.ASC;
+            if (after != null) {
+                String sortField = "id".equals(sortBy) ? "uid" : sortBy;
+                if (!CURSOR_SORT_FIELDS.contains(sortField)) {
+                    logger.warn("Unsupported sort field for cursor pagination: {}", sortBy);
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                            "Cursor pagination supports sortBy: " + String.join(", ", CURSOR_SORT_FIELDS));
+                }
+                KeysetPaginator.KeysetSlice slice = keysetPaginator.seek(User.class, "uid", sortField, direction,
+                        after, size, null);
+                CursorPage<User> users = keysetPaginator.load(slice, repo::findAllById, User::getUid);
+                logger.info("Successfully retrieved {} users by cursor (hasNext: {})",
+                            users.getNumberOfElements(), users.isHasNext());
+                return ResponseEntity.ok(users);
+            }
+
             Pageable pageable = PageRequest.of(page, size, Sort.by(direction, sortBy));
             Page<User> users = repo.findAll(pageable);
             logger.info("Successfully retrieved page {} with {} users (total: {})", 
                         page, users.getNumberOfElements(), users.getTotalElements());
             return ResponseEntity.ok(users);
+        } catch (ResponseStatusException e) {
+            throw e;
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid pagination request: {}", e.getMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
         } catch (Exception e) {
             logger.error("Error retrieving users", e);
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to retrieve users");
         }
     }
 
+    // Stream all users as NDJSON or CSV (admin only), use instead of paging through the whole table
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = "ndjson") String format) {
+        logger.info("GET request: Exporting users as {}", format);
+        try {
+            ExportService.Format exportFormat = ExportService.Format.from(format);
+            StreamingResponseBody body = out -> exportService.exportUsers(exportFormat, out);
+            return ResponseEntity.ok()
+                    .contentType(exportFormat.getMediaType())
+                    .header(HttpHeaders.CONTENT_DISPOSITION,
+                            "attachment; filename=\"users." + exportFormat.getExtension() + "\"")
+                    .body(body);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid export request: {}", e.getMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
     // Create user
     @PostMapping
     public ResponseEntity<User> create(@Valid @RequestBody User user) {
@@ -67,11 +135,11 @@ public class UserController {
                 throw new ResponseStatusException(HttpStatus.CONFLICT, "Email already exists");
             }
 
-            user.setPassword(passwordEncoder.encode(user.getPassword()));
+            user.setPassword(passwordService.encode(user.getPassword()));
             User saved = repo.save(user);
             logger.info("Successfully created user with ID: {} and email: {}", saved.getUid(), saved.getEmail());
             return ResponseEntity.status(HttpStatus.CREATED).body(saved);
-        } catch (ResponseStatusException e) {
+        } catch (ResponseStatusException | ServiceOverloadedException e) {
             throw e;
         } catch (IllegalArgumentException e) {
             logger.error("Invalid user data provided", e);
@@ -94,7 +162,7 @@ public class UserController {
                 throw new ResponseStatusException(HttpStatus.CONFLICT, "Email already exists");
             }
 
-            user.setPassword(passwordEncoder.encode(user.getPassword()));
+            user.setPassword(passwordService.encode(user.getPassword()));
             User saved = repo.save(user);
             logger.info("User registered successfully with ID: {} and email: {}", saved.getUid(), saved.getEmail());
 
@@ -113,7 +181,7 @@ public class UserController {
                     token);
 
             return ResponseEntity.status(HttpStatus.CREATED).body(response);
-        } catch (ResponseStatusException e) {
+        } catch (ResponseStatusException | ServiceOverloadedException e) {
             throw e;
         } catch (IllegalArgumentException e) {
             logger.error("Invalid user data during registration", e);
@@ -151,11 +219,22 @@ public class UserController {
 
             User user = userOpt.get();
 
-            if (!passwordEncoder.matches(loginRequest.getPassword(), user.getPassword())) {
+            if (!passwordService.matches(loginRequest.getPassword(), user.getPassword())) {
                 logger.warn("Login failed: Invalid password for user: {}", loginRequest.getEmail());
                 throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid email or password");
             }
 
+            // Transparently move the stored hash to the configured BCrypt cost
+            if (passwordService.needsRehash(user.getPassword())) {
+                try {
+                    user.setPassword(passwordService.encode(loginRequest.getPassword()));
+                    user = repo.save(user);
+                    logger.info("Password hash upgraded to current cost for user: {}", user.getEmail());
+                } catch (ServiceOverloadedException e) {
+                    logger.warn("Skipping password rehash for user {}: {}", user.getEmail(), e.getMessage());
+                }
+            }
+
             String token = jwtUtil.generateToken(user.getUid(), user.getEmail(), user.getRole().name());
             logger.info("User login successful: {} (ID: {})", loginRequest.getEmail(), user.getUid());
             logger.debug("JWT token generated for login: {}", loginRequest.getEmail());
@@ -171,7 +250,7 @@ public class UserController {
                     token);
 
             return ResponseEntity.ok(response);
-        } catch (ResponseStatusException e) {
+        } catch (ResponseStatusException | ServiceOverloadedException e) {
             throw e;
         } catch (Exception e) {
             logger.error("Error during login process", e);
@@ -204,6 +283,39 @@ public class UserController {
         }
     }
 
+    // Loans of one user, newest first, by cursor; the user themself or an admin
+    @GetMapping("/{uid}/loans")
+    public ResponseEntity<CursorPage<LoanView>> loans(
+            @PathVariable String uid,
+            @RequestParam(required = false) String status,
+            @RequestParam(defaultValue = "") String after,
+            @RequestParam(defaultValue = "10") int size) {
+        logger.info("GET request: Fetching loans of user {} - status: {}, size: {}", uid, status, size);
+        try {
+            if (size < 1 || size > maxPageSize) {
+                logger.warn("Invalid page size: {}", size);
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Page size must be between 1 and " + maxPageSize);
+            }
+            LoanStatus loanStatus = status != null && !status.isBlank() ? LoanStatus.from(status) : null;
+            CursorPage<LoanView> loans = loanService.getLoansOfUser(uid, loanStatus, after, size);
+            logger.info("Successfully retrieved {} loans of user {} (hasNext: {})",
+                        loans.getNumberOfElements(), uid, loans.isHasNext());
+            return ResponseEntity.ok(loans);
+        } catch (ResponseStatusException e) {
+            throw e;
+        } catch (UserNotFoundException e) {
+            logger.warn("User not found with uid: {}", uid);
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found");
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid loan history request: {}", e.getMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error retrieving loans of user {}", uid, e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to retrieve loans");
+        }
+    }
+
     // update user
     @PutMapping("/{uid}")
     public ResponseEntity<User> update(@PathVariable String uid, @Valid @RequestBody User updated) {
@@ -246,13 +358,13 @@ public class UserController {
             if (updated.getPassword() != null && !updated.getPassword().isEmpty()
                     && updated.getPassword().length() >= 6) {
                 logger.info("Password updated for user: {}", uid);
-                user.setPassword(passwordEncoder.encode(updated.getPassword()));
+                user.setPassword(passwordService.encode(updated.getPassword()));
             }
 
             User saved = repo.save(user);
             logger.info("User updated successfully: {} (ID: {})", saved.getEmail(), saved.getUid());
             return ResponseEntity.ok(saved);
-        } catch (ResponseStatusException e) {
+        } catch (ResponseStatusException | ServiceOverloadedException e) {
             throw e;
         } catch (IllegalArgumentException e) {
             logger.error("Invalid user data for update", e);
@@ -0,0 +1,20 @@
+package com.example.library.dto;
+
+import com.example.library.model.Author;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuthorSummary {
+    private Integer id;
+    private String firstName;
+    private String lastName;
+    private String nationality;
+
+    public static AuthorSummary from(Author author) {
+        return new AuthorSummary(author.getId(), author.getFirstName(), author.getLastName(), author.getNationality());
+    }
+}
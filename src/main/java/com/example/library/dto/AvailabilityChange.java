@@ -0,0 +1,14 @@
+package com.example.library.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Data of an "availability" event on /api/books/availability/stream
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AvailabilityChange {
+    private Integer bookId;
+    private boolean available;
+}
@@ -0,0 +1,21 @@
+package com.example.library.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchBorrowRequest {
+    @NotBlank(message = "User ID is required")
+    private String userId;
+
+    @NotEmpty(message = "At least one book ID is required")
+    private List<@NotNull(message = "Book ID is required") Integer> bookIds;
+}
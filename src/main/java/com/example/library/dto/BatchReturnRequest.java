@@ -0,0 +1,17 @@
+package com.example.library.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchReturnRequest {
+    @NotEmpty(message = "At least one loan ID is required")
+    private List<@NotNull(message = "Loan ID is required") Integer> loanIds;
+}
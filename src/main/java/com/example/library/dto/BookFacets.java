@@ -0,0 +1,21 @@
+package com.example.library.dto;
+
+import lombok.Data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Number of books per facet value. Each facet is counted with the filters of the other facets,
+ * so every choice of a facet keeps its count while one of them is selected.
+ */
+@Data
+public class BookFacets {
+    // "true" / "false"
+    private Map<String, Long> available = new LinkedHashMap<>();
+    // First year of the decade -> count
+    private Map<Integer, Long> decade = new TreeMap<>();
+    // Normalized nationality of any author of the book -> count, most frequent first
+    private Map<String, Long> nationality = new LinkedHashMap<>();
+}
@@ -0,0 +1,19 @@
+package com.example.library.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Optional filters of the book listing, null fields are not applied
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookFilter {
+    private Boolean available;
+    private Integer yearFrom;
+    private Integer yearTo;
+    private Integer authorId;
+    private String nationality;
+}
@@ -0,0 +1,40 @@
+package com.example.library.dto;
+
+import com.example.library.model.Book;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Full book as returned by the API. Built inside the service transaction, so serialization
+ * never touches a lazy association.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookResponse {
+    private Integer id;
+    private String title;
+    private String author;
+    private String content;
+    private int publicationYear;
+    private String isbn;
+    private boolean available;
+    private int totalCopies;
+    private int availableCopies;
+    private List<AuthorSummary> authors;
+
+    public static BookResponse from(Book book) {
+        List<AuthorSummary> authors = book.getAuthors().stream()
+                .map(AuthorSummary::from)
+                .sorted(Comparator.comparing(AuthorSummary::getLastName, Comparator.nullsLast(Comparator.<String>naturalOrder()))
+                        .thenComparing(AuthorSummary::getFirstName, Comparator.nullsLast(Comparator.<String>naturalOrder())))
+                .toList();
+        return new BookResponse(book.getId(), book.getTitle(), book.getAuthor(), book.getContent(),
+                book.getPublicationYear(), book.getIsbn(), book.isAvailable(),
+                book.getTotalCopies(), book.getAvailableCopies(), authors);
+    }
+}
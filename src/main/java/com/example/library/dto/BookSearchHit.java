@@ -0,0 +1,17 @@
+package com.example.library.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookSearchHit {
+    private Integer id;
+    private String title;
+    private String author;
+    private String isbn;
+    private int publicationYear;
+    private float score;
+}
@@ -0,0 +1,32 @@
+package com.example.library.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Catalogue row of a book listing. Built by a JPQL constructor query, so the TEXT
+ * content column and the authors collection are never loaded.
+ */
+@Data
+@NoArgsConstructor
+public class BookSummary {
+    private Integer id;
+    private String title;
+    private String author;
+    private int publicationYear;
+    private String isbn;
+    private boolean available;
+    private List<String> authorNames = new ArrayList<>();
+
+    public BookSummary(Integer id, String title, String author, int publicationYear, String isbn, boolean available) {
+        this.id = id;
+        this.title = title;
+        this.author = author;
+        this.publicationYear = publicationYear;
+        this.isbn = isbn;
+        this.available = available;
+    }
+}
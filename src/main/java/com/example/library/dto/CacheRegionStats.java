@@ -0,0 +1,21 @@
+package com.example.library.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheRegionStats {
+    private String region;
+    private long hits;
+    private long misses;
+    private float hitPercentage;
+    // Null where the cache does not count them
+    private Long puts;
+    private Long removals;
+    private Long evictions;
+    // Entries held, only known for the in-process caches
+    private Integer size;
+}
@@ -0,0 +1,21 @@
+package com.example.library.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of a keyset (cursor) paginated listing. Unlike Page it carries no total count,
+ * the next page is requested by passing nextCursor as the "after" parameter.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+    private List<T> content;
+    private int numberOfElements;
+    private String nextCursor;
+    private boolean hasNext;
+}
@@ -0,0 +1,18 @@
+package com.example.library.dto;
+
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A page of results with a facets section, serialized as the page itself plus a "facets" field
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FacetedResponse<T> {
+    @JsonUnwrapped
+    private T results;
+    private BookFacets facets;
+}
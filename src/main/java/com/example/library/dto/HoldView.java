@@ -0,0 +1,29 @@
+package com.example.library.dto;
+
+import com.example.library.model.HoldStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HoldView {
+    private Integer id;
+    private String userId;
+    private Integer bookId;
+    private String bookTitle;
+    private HoldStatus status;
+    // Place in the book's queue (1 = next copy) while WAITING
+    private Long position;
+    private LocalDateTime createdAt;
+    private LocalDateTime readyAt;
+    private LocalDateTime expiresAt;
+
+    public HoldView(Integer id, String userId, Integer bookId, String bookTitle, HoldStatus status,
+                    LocalDateTime createdAt, LocalDateTime readyAt, LocalDateTime expiresAt) {
+        this(id, userId, bookId, bookTitle, status, null, createdAt, readyAt, expiresAt);
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.library.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of one item of a batch borrow or return, in request order. result is BORROWED or
+ * RETURNED on success, otherwise NOT_FOUND, NOT_AVAILABLE, ALREADY_RETURNED or DUPLICATE.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanBatchItem {
+    private Integer bookId;
+    private Integer loanId;
+    private String result;
+}
@@ -0,0 +1,16 @@
+package com.example.library.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanBatchResult {
+    private int succeeded;
+    private int failed;
+    private List<LoanBatchItem> items;
+}
@@ -0,0 +1,41 @@
+package com.example.library.dto;
+
+import com.example.library.model.Loan;
+import com.example.library.model.LoanStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Loan as listed to librarians and patrons. Built by a JPQL constructor query joining only the
+ * shown user and book columns, so neither the user's password hash nor the book's TEXT content is
+ * loaded.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanView {
+    private Integer id;
+    private String userId;
+    private String userName;
+    private String userSurname;
+    private Integer bookId;
+    private String bookTitle;
+    private String bookIsbn;
+    private LocalDate loanDate;
+    private LocalDate dueDate;
+    private LocalDate returnDate;
+    private LoanStatus status;
+    private BigDecimal fine;
+
+    // For a loan whose user and book are already loaded
+    public static LoanView from(Loan loan) {
+        return new LoanView(loan.getId(), loan.getUser().getUid(), loan.getUser().getName(),
+                loan.getUser().getSurname(), loan.getBook().getId(), loan.getBook().getTitle(),
+                loan.getBook().getIsbn(), loan.getLoanDate(), loan.getDueDate(), loan.getReturnDate(), loan.getStatus(),
+                loan.getFine());
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.library.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OverdueRunStatus {
+    private String runId;
+    private LocalDate runDate;
+    private String state;
+    // Continued from the checkpoint of an interrupted run of the same day
+    private boolean resumed;
+    private long chunks;
+    private long loansScanned;
+    private long markedOverdue;
+    private long finesUpdated;
+    private long remindersWritten;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private long durationMs;
+    private double loansPerSecond;
+}
@@ -0,0 +1,16 @@
+package com.example.library.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Suggestion {
+    // "book" or "author"
+    private String type;
+    private Integer id;
+    private String text;
+    private long popularity;
+}
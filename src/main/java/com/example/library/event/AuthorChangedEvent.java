@@ -0,0 +1,21 @@
+package com.example.library.event;
+
+import com.example.library.model.Author;
+
+/**
+ * Published by AuthorService after an author was written or deleted
+ */
+public record AuthorChangedEvent(Type type, Integer authorId, String firstName, String lastName) {
+
+    public enum Type {
+        SAVED, DELETED
+    }
+
+    public static AuthorChangedEvent saved(Author author) {
+        return new AuthorChangedEvent(Type.SAVED, author.getId(), author.getFirstName(), author.getLastName());
+    }
+
+    public static AuthorChangedEvent deleted(Integer authorId) {
+        return new AuthorChangedEvent(Type.DELETED, authorId, null, null);
+    }
+}
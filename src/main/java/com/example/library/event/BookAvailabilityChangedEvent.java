@@ -0,0 +1,7 @@
+package com.example.library.event;
+
+/**
+ * Published when a loan made a book available or unavailable
+ */
+public record BookAvailabilityChangedEvent(Integer bookId, boolean available) {
+}
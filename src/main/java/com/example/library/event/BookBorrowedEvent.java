@@ -0,0 +1,9 @@
+package com.example.library.event;
+
+import java.util.List;
+
+/**
+ * Published after a loan was created, with the authors of the borrowed book
+ */
+public record BookBorrowedEvent(Integer bookId, List<Integer> authorIds) {
+}
@@ -0,0 +1,24 @@
+package com.example.library.event;
+
+import com.example.library.model.Book;
+
+/**
+ * Published by BookService after a book was written or deleted. Carries the indexed fields,
+ * so listeners do not have to read the book back from the database.
+ */
+public record BookChangedEvent(Type type, Integer bookId, String title, String author, String isbn,
+                               int publicationYear, String content) {
+
+    public enum Type {
+        SAVED, DELETED
+    }
+
+    public static BookChangedEvent saved(Book book) {
+        return new BookChangedEvent(Type.SAVED, book.getId(), book.getTitle(), book.getAuthor(), book.getIsbn(),
+                book.getPublicationYear(), book.getContent());
+    }
+
+    public static BookChangedEvent deleted(Integer bookId) {
+        return new BookChangedEvent(Type.DELETED, bookId, null, null, null, 0, null);
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.library.exception;
+
+public class BookNotAvailableException extends RuntimeException {
+    public BookNotAvailableException(Integer id) {
+        super("Book is not available: " + id);
+    }
+}
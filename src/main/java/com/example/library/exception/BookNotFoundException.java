@@ -0,0 +1,7 @@
+package com.example.library.exception;
+
+public class BookNotFoundException extends RuntimeException {
+    public BookNotFoundException(Integer id) {
+        super("Book not found with id: " + id);
+    }
+}
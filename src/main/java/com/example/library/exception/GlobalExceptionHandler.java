@@ -1,5 +1,6 @@
 package com.example.library.exception;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -64,6 +65,53 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(errorResponse, HttpStatus.CONFLICT);
     }
 
+    /**
+     * Handles missing books, users, loans and holds referenced by a loan operation
+     */
+    @ExceptionHandler({BookNotFoundException.class, UserNotFoundException.class, LoanNotFoundException.class,
+            HoldNotFoundException.class})
+    public ResponseEntity<ErrorResponse> handleLoanTargetNotFoundException(RuntimeException ex) {
+        ErrorResponse errorResponse = new ErrorResponse(
+                HttpStatus.NOT_FOUND.value(),
+                ex.getMessage(),
+                null,
+                LocalDateTime.now());
+
+        return new ResponseEntity<>(errorResponse, HttpStatus.NOT_FOUND);
+    }
+
+    /**
+     * Handles loan operations that lost to a concurrent one (book already lent, loan already returned)
+     * or repeat an earlier one (hold already placed or closed), and borrows over the user's loan limit
+     */
+    @ExceptionHandler({BookNotAvailableException.class, LoanAlreadyReturnedException.class,
+            HoldAlreadyExistsException.class, HoldClosedException.class, LoanQuotaExceededException.class})
+    public ResponseEntity<ErrorResponse> handleLoanConflictException(RuntimeException ex) {
+        ErrorResponse errorResponse = new ErrorResponse(
+                HttpStatus.CONFLICT.value(),
+                ex.getMessage(),
+                null,
+                LocalDateTime.now());
+
+        return new ResponseEntity<>(errorResponse, HttpStatus.CONFLICT);
+    }
+
+    /**
+     * Handles ServiceOverloadedException with 503 and a Retry-After hint
+     */
+    @ExceptionHandler(ServiceOverloadedException.class)
+    public ResponseEntity<ErrorResponse> handleServiceOverloadedException(ServiceOverloadedException ex) {
+        ErrorResponse errorResponse = new ErrorResponse(
+                HttpStatus.SERVICE_UNAVAILABLE.value(),
+                ex.getMessage(),
+                null,
+                LocalDateTime.now());
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(errorResponse);
+    }
+
     /**
      * Handles ResponseStatusException thrown from controllers
      */
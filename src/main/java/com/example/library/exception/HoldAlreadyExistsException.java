@@ -0,0 +1,7 @@
+package com.example.library.exception;
+
+public class HoldAlreadyExistsException extends RuntimeException {
+    public HoldAlreadyExistsException(Integer id) {
+        super("An open hold already exists for book " + id);
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.library.exception;
+
+public class HoldClosedException extends RuntimeException {
+    public HoldClosedException(Integer id) {
+        super("Hold is no longer open: " + id);
+    }
+}
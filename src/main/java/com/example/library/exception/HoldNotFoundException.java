@@ -0,0 +1,7 @@
+package com.example.library.exception;
+
+public class HoldNotFoundException extends RuntimeException {
+    public HoldNotFoundException(Integer id) {
+        super("Hold not found with id: " + id);
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.library.exception;
+
+public class IdempotencyKeyInProgressException extends RuntimeException {
+    public IdempotencyKeyInProgressException() {
+        super("A request with this Idempotency-Key is still in progress, please retry later");
+    }
+}
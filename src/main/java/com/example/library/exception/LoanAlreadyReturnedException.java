@@ -0,0 +1,7 @@
+package com.example.library.exception;
+
+public class LoanAlreadyReturnedException extends RuntimeException {
+    public LoanAlreadyReturnedException(Integer id) {
+        super("Loan is already returned: " + id);
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.library.exception;
+
+public class LoanNotFoundException extends RuntimeException {
+    public LoanNotFoundException(Integer id) {
+        super("Loan not found with id: " + id);
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.library.exception;
+
+public class LoanQuotaExceededException extends RuntimeException {
+    public LoanQuotaExceededException(String userId, int limit) {
+        super("User " + userId + " already has the maximum of " + limit + " active loans");
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.library.exception;
+
+public class UserNotFoundException extends RuntimeException {
+    public UserNotFoundException(String id) {
+        super("User not found with id: " + id);
+    }
+}
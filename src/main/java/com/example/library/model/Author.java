@@ -1,5 +1,6 @@
 package com.example.library.model;
 
+import com.example.library.search.TextAnalyzer;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
@@ -9,6 +10,8 @@ import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -19,9 +22,17 @@ import java.util.Set;
 @EqualsAndHashCode(exclude = "books")
 @ToString(exclude = "books")
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "author")
+@Table(indexes = {
+        @Index(name = "idx_author_first_name", columnList = "first_name"),
+        @Index(name = "idx_author_last_name", columnList = "last_name"),
+        @Index(name = "idx_author_nationality_key", columnList = "nationality_key")
+})
 public class Author {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "author_seq")
+    @SequenceGenerator(name = "author_seq", sequenceName = "author_seq", allocationSize = 50)
     private Integer id;
 
     @NotBlank(message = "First name is required")
@@ -41,10 +52,25 @@ public class Author {
     @Size(max = 100, message = "Nationality must not exceed 100 characters")
     private String nationality;
 
+    // Trimmed, lower-cased, accent-free nationality, so the filter is an index lookup on equality
+    @JsonIgnore
+    @Column(name = "nationality_key", length = 100)
+    private String nationalityKey;
+
     @ManyToMany(mappedBy = "authors", fetch = FetchType.LAZY)
     @JsonIgnore
     private Set<Book> books = new HashSet<>();
 
+    @PrePersist
+    @PreUpdate
+    void updateNationalityKey() {
+        nationalityKey = normalizeNationality(nationality);
+    }
+
+    public static String normalizeNationality(String nationality) {
+        return nationality == null || nationality.isBlank() ? null : TextAnalyzer.fold(nationality.trim());
+    }
+
     public String getFullName() {
         return firstName + " " + lastName;
     }
@@ -1,6 +1,9 @@
 package com.example.library.model;
 
+import com.example.library.util.IsbnUtil;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
@@ -11,19 +14,35 @@ import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.util.HashSet;
+import java.util.Objects;
 import java.util.Set;
 
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@EqualsAndHashCode(exclude = "authors")
-@ToString(exclude = "authors")
+@EqualsAndHashCode(exclude = {"authors", "loadedIsbn"})
+@ToString(exclude = {"authors", "loadedIsbn"})
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "book")
+@Table(indexes = {
+        @Index(name = "idx_book_title", columnList = "title"),
+        @Index(name = "idx_book_publication_year", columnList = "publication_year"),
+        // Listing filtered by availability, optionally with a year range
+        @Index(name = "idx_book_available_year", columnList = "available, publication_year"),
+        @Index(name = "uk_book_isbn_key", columnList = "isbn_key", unique = true)
+})
 public class Book {
+    // Pooled sequence (a table on MySQL) instead of IDENTITY, so inserts can be JDBC-batched
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "book_seq")
+    @SequenceGenerator(name = "book_seq", sequenceName = "book_seq", allocationSize = 50)
     private Integer id;
 
     @NotBlank(message = "Title is required")
@@ -47,10 +66,65 @@ public class Book {
     @Size(min = 10, max = 17, message = "ISBN must be between 10 and 17 characters")
     private String isbn;
 
+    // Canonical ISBN-13 (see IsbnUtil), derived from isbn on every write and used for lookups and upserts
+    @JsonIgnore
+    @Column(name = "isbn_key", length = 17)
+    private String isbnKey;
+
+    // Physical copies of the title. After the insert both counts are only changed by the conditional
+    // UPDATEs of BookRepositoryCustom, so saving a stale entity can never overwrite a concurrent loan.
+    @Min(value = 1, message = "Total copies must be at least 1")
+    @Column(name = "total_copies", nullable = false, updatable = false)
+    @ColumnDefault("1")
+    private Integer totalCopies;
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @Column(name = "available_copies", nullable = false, updatable = false)
+    @ColumnDefault("1")
+    private int availableCopies;
+
+    // Derived: availableCopies > 0. Stored for the listing index and kept for API compatibility
+    @Column(updatable = false)
     private boolean available = true;
 
     @ManyToMany(fetch = FetchType.LAZY, cascade = { CascadeType.PERSIST, CascadeType.MERGE })
-    @JoinTable(name = "book_author", joinColumns = @JoinColumn(name = "book_id"), inverseJoinColumns = @JoinColumn(name = "author_id"))
+    // The primary key (book_id, author_id) serves lookups by book, the index serves the author filters
+    @JoinTable(name = "book_author", joinColumns = @JoinColumn(name = "book_id"), inverseJoinColumns = @JoinColumn(name = "author_id"),
+            indexes = @Index(name = "idx_book_author_author", columnList = "author_id, book_id"))
     @JsonIgnoreProperties("books")
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "book-authors")
+    // Initializing one collection loads those of up to 50 other books in the session with one IN query
+    @BatchSize(size = 50)
     private Set<Author> authors = new HashSet<>();
+
+    // ISBN as read from the database, an update derives a new key only when the number changed
+    @Transient
+    @JsonIgnore
+    private String loadedIsbn;
+
+    @PrePersist
+    void initialize() {
+        // A new title has every copy on the shelf, or none when it is created as unavailable
+        if (totalCopies == null) {
+            totalCopies = 1;
+        }
+        availableCopies = available ? totalCopies : 0;
+        isbnKey = IsbnUtil.canonical(isbn);
+    }
+
+    @PostLoad
+    void rememberIsbn() {
+        loadedIsbn = isbn;
+    }
+
+    // A book the backfill left without a key (duplicate ISBN) keeps none until its ISBN is edited,
+    // so other edits of it do not run into the unique index
+    @PreUpdate
+    void updateIsbnKey() {
+        String key = IsbnUtil.canonical(isbn);
+        if (!Objects.equals(key, IsbnUtil.canonical(loadedIsbn))) {
+            isbnKey = key;
+            loadedIsbn = isbn;
+        }
+    }
 }
@@ -0,0 +1,47 @@
+package com.example.library.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "book_hold", indexes = {
+        // Head of a book's queue: first WAITING hold by id
+        @Index(name = "idx_hold_book_status", columnList = "book_id, status, id"),
+        // Pickup windows that ran out
+        @Index(name = "idx_hold_status_expires", columnList = "status, expires_at"),
+        @Index(name = "idx_hold_user_status", columnList = "user_id, status")
+})
+public class Hold {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "hold_seq")
+    @SequenceGenerator(name = "hold_seq", sequenceName = "hold_seq", allocationSize = 50)
+    private Integer id;
+
+    @NotNull
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id")
+    private User user;
+
+    @NotNull
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "book_id")
+    private Book book;
+
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private HoldStatus status;
+
+    private LocalDateTime createdAt;
+    private LocalDateTime readyAt;
+    // End of the pickup window of a READY hold
+    private LocalDateTime expiresAt;
+}
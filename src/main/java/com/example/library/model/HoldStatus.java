@@ -0,0 +1,17 @@
+package com.example.library.model;
+
+public enum HoldStatus {
+    // In the queue for the next copy that comes back
+    WAITING,
+    // A copy is set aside for the patron until the hold expires
+    READY,
+    // The patron borrowed the set-aside copy
+    FULFILLED,
+    CANCELLED,
+    // Not picked up in time, the copy went to the next hold or the shelf
+    EXPIRED;
+
+    public boolean isOpen() {
+        return this == WAITING || this == READY;
+    }
+}
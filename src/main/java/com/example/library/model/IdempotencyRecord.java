@@ -0,0 +1,42 @@
+package com.example.library.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * First response to a request sent with an Idempotency-Key. The row is inserted before the request
+ * runs (status null, expiring after a short lease) and completed with the response afterwards;
+ * the insert is what decides which of several instances runs a request.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "idempotency_record", indexes = @Index(name = "idx_idempotency_expires", columnList = "expires_at"))
+public class IdempotencyRecord {
+    // SHA-256 of the caller, method, path and key; keys of different callers never collide
+    @Id
+    @Column(length = 64)
+    private String id;
+
+    // SHA-256 of the request body, a key reused for a different request is rejected
+    @Column(length = 64, nullable = false)
+    private String requestHash;
+
+    private Integer status;
+
+    @Column(length = 100)
+    private String contentType;
+
+    @Column(columnDefinition = "TEXT")
+    private String body;
+
+    private LocalDateTime createdAt;
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,40 @@
+package com.example.library.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Progress of a chunked background job, one row per job. Advanced after every finished chunk, so a
+ * run interrupted by a restart continues behind the last chunk instead of starting over.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+public class JobCheckpoint {
+    @Id
+    @Column(length = 64)
+    private String jobName;
+
+    private LocalDate runDate;
+
+    // Loan status being scanned and the (due date, id) key of the last finished chunk
+    @Convert(converter = LoanStatusConverter.class)
+    @Column(length = 16)
+    private LoanStatus phase;
+    private LocalDate lastDueDate;
+    private Integer lastId;
+
+    private boolean running;
+    private LocalDateTime updatedAt;
+
+    public JobCheckpoint(String jobName) {
+        this.jobName = jobName;
+    }
+}
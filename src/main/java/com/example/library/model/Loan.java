@@ -1,36 +1,58 @@
 package com.example.library.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
-import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_loan_loan_date", columnList = "loan_date"),
+        // A patron's loans by status, newest first
+        @Index(name = "idx_loan_user_status_date", columnList = "user_id, status, loan_date"),
+        // Who has a book (open loans of it)
+        @Index(name = "idx_loan_book_status", columnList = "book_id, status"),
+        // Overdue job: loans of a status past their due date, in due date order
+        @Index(name = "idx_loan_status_due", columnList = "status, due_date")
+})
 public class Loan {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "loan_seq")
+    @SequenceGenerator(name = "loan_seq", sequenceName = "loan_seq", allocationSize = 50)
     private Integer id;
 
     @NotNull(message = "User is required")
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
     private User user;
 
     @NotNull(message = "Book is required")
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "book_id")
+    @JsonIgnoreProperties("authors")
     private Book book;
 
     private LocalDate loanDate;
+    private LocalDate dueDate;
     private LocalDate returnDate;
 
-    @NotBlank(message = "Status is required")
-    private String status;
+    @NotNull(message = "Status is required")
+    @Convert(converter = LoanStatusConverter.class)
+    @Column(length = 16)
+    private LoanStatus status;
+
+    // Accrued late fee, recomputed by the overdue job while the loan is overdue
+    @Column(precision = 10, scale = 2)
+    private BigDecimal fine;
+
+    // Run date of the overdue job that last assessed the fine; a resumed run skips loans already done
+    private LocalDate fineAssessedOn;
 }
@@ -0,0 +1,24 @@
+package com.example.library.model;
+
+import java.util.Locale;
+
+public enum LoanStatus {
+    ACTIVE,
+    // Past its due date and not returned, set by the overdue job
+    OVERDUE,
+    RETURNED;
+
+    // The borrower still holds a copy of the book
+    public boolean isOpen() {
+        return this != RETURNED;
+    }
+
+    // Case-insensitive lookup for request parameters and legacy column values
+    public static LoanStatus from(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown loan status: " + value);
+        }
+    }
+}
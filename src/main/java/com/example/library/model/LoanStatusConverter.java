@@ -0,0 +1,22 @@
+package com.example.library.model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Stores LoanStatus by name. Reads ignore case: before the enum, status was free text and rows
+ * written as "active" or "returned" may still exist.
+ */
+@Converter
+public class LoanStatusConverter implements AttributeConverter<LoanStatus, String> {
+
+    @Override
+    public String convertToDatabaseColumn(LoanStatus status) {
+        return status != null ? status.name() : null;
+    }
+
+    @Override
+    public LoanStatus convertToEntityAttribute(String value) {
+        return value != null ? LoanStatus.from(value) : null;
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.library.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Reminder for an overdue loan, written in the same transaction as the loan's fine. Rows are an
+ * outbox: a mailer picks up those without sentAt and stamps them, the job never sends anything.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "reminder_outbox", indexes = @Index(name = "idx_reminder_outbox_sent", columnList = "sent_at"))
+public class OverdueReminder {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "reminder_seq")
+    @SequenceGenerator(name = "reminder_seq", sequenceName = "reminder_seq", allocationSize = 50)
+    private Integer id;
+
+    private Integer loanId;
+
+    @Column(length = 36)
+    private String userId;
+
+    private LocalDate dueDate;
+    private int daysOverdue;
+
+    @Column(precision = 10, scale = 2)
+    private BigDecimal fine;
+
+    private LocalDateTime createdAt;
+    private LocalDateTime sentAt;
+}
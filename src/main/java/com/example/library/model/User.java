@@ -1,10 +1,14 @@
 package com.example.library.model;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -12,11 +16,13 @@ import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity(name = "library_user")
+@Table(indexes = @Index(name = "idx_user_email", columnList = "email"))
 public class User {
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
@@ -49,4 +55,11 @@ public class User {
     @NotNull(message = "Role is required")
     @Enumerated(EnumType.STRING)
     private Role role;
+
+    // Open loans, kept by conditional updates on borrow and return (never written through the entity,
+    // so saving a stale user cannot overwrite it); the reconciliation job repairs drift
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @Column(name = "active_loans", nullable = false, insertable = false, updatable = false)
+    @ColumnDefault("0")
+    private int activeLoans;
 }
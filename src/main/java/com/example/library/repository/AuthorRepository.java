@@ -9,8 +9,9 @@ import org.springframework.data.repository.query.Param;
 
 public interface AuthorRepository extends JpaRepository<Author, Integer> {
 
+    // Full scan; only used while the in-memory AuthorNameIndex is loading or for sorts it cannot serve
     @Query("SELECT a FROM Author a WHERE LOWER(a.firstName) LIKE LOWER(CONCAT('%', :name, '%')) OR LOWER(a.lastName) LIKE LOWER(CONCAT('%', :name, '%'))")
     Page<Author> findByName(@Param("name") String name, Pageable pageable);
 
-    Page<Author> findByNationality(String nationality, Pageable pageable);
+    Page<Author> findByNationalityKey(String nationalityKey, Pageable pageable);
 }
@@ -1,7 +1,49 @@
 package com.example.library.repository;
 
+import com.example.library.dto.BookSummary;
 import com.example.library.model.Book;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
-public interface BookRepository extends JpaRepository<Book, Integer> {
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface BookRepository extends JpaRepository<Book, Integer>, JpaSpecificationExecutor<Book>,
+        BookRepositoryCustom {
+
+    @Query("SELECT new com.example.library.dto.BookSummary(b.id, b.title, b.author, b.publicationYear, b.isbn, b.available) FROM Book b WHERE b.id IN :ids")
+    List<BookSummary> findSummariesByIdIn(@Param("ids") Collection<Integer> ids);
+
+    // (book id, author full name) pairs for a page of books, one query instead of a lazy load per book
+    @Query("SELECT b.id, CONCAT(a.firstName, ' ', a.lastName) FROM Book b JOIN b.authors a WHERE b.id IN :ids ORDER BY a.lastName, a.firstName")
+    List<Object[]> findAuthorNamesByBookIds(@Param("ids") Collection<Integer> ids);
+
+    @Query("SELECT a.id FROM Book b JOIN b.authors a WHERE b.id = :bookId")
+    List<Integer> findAuthorIdsByBookId(@Param("bookId") Integer bookId);
+
+    // (book id, author id) pairs for several books
+    @Query("SELECT b.id, a.id FROM Book b JOIN b.authors a WHERE b.id IN :ids")
+    List<Object[]> findAuthorIdsByBookIds(@Param("ids") Collection<Integer> ids);
+
+    Optional<Book> findByIsbnKey(String isbnKey);
+
+    List<Book> findByIsbnKeyIn(Collection<String> isbnKeys);
+
+    boolean existsByIsbnKey(String isbnKey);
+
+    // Rows stored before the copy counts existed got the column default of one copy on the shelf,
+    // which is wrong for the ones that were lent out at the time
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE book SET available_copies = 0 WHERE available = FALSE AND available_copies > 0", nativeQuery = true)
+    int clearCopiesOfUnavailableBooks();
+
+    // Rows written before isbn_key existed, walked in id order by the backfill
+    List<Book> findByIsbnKeyIsNullAndIdGreaterThanOrderByIdAsc(Integer id, Pageable pageable);
 }
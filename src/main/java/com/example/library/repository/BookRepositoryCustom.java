@@ -0,0 +1,33 @@
+package com.example.library.repository;
+
+import com.example.library.dto.BookSummary;
+import com.example.library.model.Book;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+public interface BookRepositoryCustom {
+
+    // Summary projection (no content column) of the books matching the filter
+    Page<BookSummary> findSummaries(Specification<Book> filter, Pageable pageable);
+
+    /**
+     * Takes one copy off the shelf if any is left; a single conditional UPDATE, so of concurrent
+     * callers for the last copy exactly one gets true. Also keeps the derived available flag.
+     */
+    boolean claimCopy(Integer bookId);
+
+    // Counterpart of claimCopy: puts a copy back unless all copies are already on the shelf
+    boolean releaseCopy(Integer bookId);
+
+    // claimCopy for several distinct books in one JDBC batch; element i tells whether bookIds[i] got a copy
+    boolean[] claimCopies(List<Integer> bookIds);
+
+    // releaseCopy for several books in one JDBC batch, a book listed twice gets two copies back
+    boolean[] releaseCopies(List<Integer> bookIds);
+
+    // Changes the number of copies by the same delta on the shelf; false if more copies are on loan than the new total
+    boolean resizeCopies(Integer bookId, int totalCopies);
+}
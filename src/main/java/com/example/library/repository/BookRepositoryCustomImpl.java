@@ -0,0 +1,147 @@
+package com.example.library.repository;
+
+import com.example.library.dto.BookSummary;
+import com.example.library.model.Book;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+class BookRepositoryCustomImpl implements BookRepositoryCustom {
+    // available is assigned first: MySQL evaluates SET left to right with already updated values,
+    // standard SQL with the old ones, listed first it sees the old counts on both
+    private static final String CLAIM_SQL = "UPDATE book SET available = (available_copies > 1), "
+            + "available_copies = available_copies - 1 WHERE id = ? AND available_copies > 0";
+    private static final String RELEASE_SQL = "UPDATE book SET available = TRUE, "
+            + "available_copies = available_copies + 1 WHERE id = ? AND available_copies < total_copies";
+    private static final String RESIZE_SQL = "UPDATE book SET available = (available_copies + ? - total_copies > 0), "
+            + "available_copies = available_copies + ? - total_copies, total_copies = ? "
+            + "WHERE id = ? AND available_copies + ? - total_copies >= 0";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Page<BookSummary> findSummaries(Specification<Book> filter, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<BookSummary> query = cb.createQuery(BookSummary.class);
+        Root<Book> root = query.from(Book.class);
+        query.select(cb.construct(BookSummary.class, root.get("id"), root.get("title"), root.get("author"),
+                root.get("publicationYear"), root.get("isbn"), root.get("available")));
+        Predicate predicate = filter.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, cb));
+
+        List<BookSummary> content = entityManager.createQuery(query)
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize())
+                .getResultList();
+        // The count is skipped when the page itself shows the total (first or last page)
+        return PageableExecutionUtils.getPage(content, pageable, () -> count(filter));
+    }
+
+    private long count(Specification<Book> filter) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Book> root = query.from(Book.class);
+        query.select(cb.count(root));
+        Predicate predicate = filter.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    @Override
+    @Transactional
+    public boolean claimCopy(Integer bookId) {
+        return updateCopies(CLAIM_SQL, List.of(bookId), List.<Object[]>of(new Object[] {bookId}))[0];
+    }
+
+    @Override
+    @Transactional
+    public boolean releaseCopy(Integer bookId) {
+        return updateCopies(RELEASE_SQL, List.of(bookId), List.<Object[]>of(new Object[] {bookId}))[0];
+    }
+
+    @Override
+    @Transactional
+    public boolean[] claimCopies(List<Integer> bookIds) {
+        return updateCopies(CLAIM_SQL, bookIds, idRows(bookIds));
+    }
+
+    @Override
+    @Transactional
+    public boolean[] releaseCopies(List<Integer> bookIds) {
+        return updateCopies(RELEASE_SQL, bookIds, idRows(bookIds));
+    }
+
+    @Override
+    @Transactional
+    public boolean resizeCopies(Integer bookId, int totalCopies) {
+        return updateCopies(RESIZE_SQL, List.of(bookId), List.<Object[]>of(
+                new Object[] {totalCopies, totalCopies, totalCopies, bookId, totalCopies}))[0];
+    }
+
+    private static List<Object[]> idRows(List<Integer> bookIds) {
+        return bookIds.stream().map(id -> new Object[] {id}).toList();
+    }
+
+    /**
+     * Runs the conditional UPDATE once per book, as one JDBC batch. Plain SQL rather than a JPQL bulk
+     * update, which would clear the whole book cache region; only the changed books' entries are
+     * evicted, again after completion in case a concurrent reader put the old state back meanwhile.
+     */
+    private boolean[] updateCopies(String sql, List<Integer> bookIds, List<Object[]> rows) {
+        Session session = entityManager.unwrap(Session.class);
+        boolean[] changed = ConditionalUpdates.executeBatch(session, sql, rows);
+        // Copies already loaded into this session would still show the old counts; looked up without
+        // creating proxies, which would end up in the JSON of a loan
+        SessionImplementor implementor = session.unwrap(SessionImplementor.class);
+        EntityPersister persister = implementor.getFactory().getMappingMetamodel().getEntityDescriptor(Book.class);
+        Set<Integer> evicted = new HashSet<>();
+        for (int i = 0; i < changed.length; i++) {
+            if (changed[i] && evicted.add(bookIds.get(i))) {
+                Object loaded = implementor.getPersistenceContextInternal()
+                        .getEntity(implementor.generateEntityKey(bookIds.get(i), persister));
+                if (loaded != null) {
+                    session.refresh(loaded);
+                }
+            }
+        }
+        if (evicted.isEmpty()) {
+            return changed;
+        }
+        Cache cache = entityManager.getEntityManagerFactory().getCache();
+        evicted.forEach(bookId -> cache.evict(Book.class, bookId));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evicted.forEach(bookId -> cache.evict(Book.class, bookId));
+                }
+            });
+        }
+        return changed;
+    }
+}
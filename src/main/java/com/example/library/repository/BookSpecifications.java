@@ -0,0 +1,76 @@
+package com.example.library.repository;
+
+import com.example.library.dto.BookFilter;
+import com.example.library.model.Author;
+import com.example.library.model.Book;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Criteria predicates for the book listing filters. Author conditions are correlated EXISTS
+ * subqueries over book_author, so a book with several matching authors is still listed once
+ * and the count query needs no DISTINCT.
+ */
+public final class BookSpecifications {
+
+    private BookSpecifications() {
+    }
+
+    public static Specification<Book> matching(BookFilter filter) {
+        List<Specification<Book>> specifications = new ArrayList<>();
+        if (filter.getAvailable() != null) {
+            specifications.add(available(filter.getAvailable()));
+        }
+        if (filter.getYearFrom() != null) {
+            specifications.add(publishedFrom(filter.getYearFrom()));
+        }
+        if (filter.getYearTo() != null) {
+            specifications.add(publishedTo(filter.getYearTo()));
+        }
+        if (filter.getAuthorId() != null) {
+            specifications.add(writtenBy(filter.getAuthorId()));
+        }
+        if (filter.getNationality() != null && !filter.getNationality().isBlank()) {
+            specifications.add(byAuthorOfNationality(filter.getNationality()));
+        }
+        return Specification.allOf(specifications);
+    }
+
+    public static Specification<Book> available(boolean available) {
+        return (root, query, cb) -> cb.equal(root.get("available"), available);
+    }
+
+    public static Specification<Book> publishedFrom(int year) {
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("publicationYear"), year);
+    }
+
+    public static Specification<Book> publishedTo(int year) {
+        return (root, query, cb) -> cb.lessThanOrEqualTo(root.get("publicationYear"), year);
+    }
+
+    public static Specification<Book> writtenBy(int authorId) {
+        return (root, query, cb) -> {
+            Subquery<Integer> authors = query.subquery(Integer.class);
+            Root<Book> book = authors.correlate(root);
+            Join<Book, Author> author = book.join("authors");
+            authors.select(author.get("id")).where(cb.equal(author.get("id"), authorId));
+            return cb.exists(authors);
+        };
+    }
+
+    public static Specification<Book> byAuthorOfNationality(String nationality) {
+        String nationalityKey = Author.normalizeNationality(nationality);
+        return (root, query, cb) -> {
+            Subquery<Integer> authors = query.subquery(Integer.class);
+            Root<Book> book = authors.correlate(root);
+            Join<Book, Author> author = book.join("authors");
+            authors.select(author.get("id")).where(cb.equal(author.get("nationalityKey"), nationalityKey));
+            return cb.exists(authors);
+        };
+    }
+}
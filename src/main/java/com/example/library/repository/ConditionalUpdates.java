@@ -0,0 +1,77 @@
+package com.example.library.repository;
+
+import org.hibernate.Session;
+import org.hibernate.engine.jdbc.spi.JdbcCoordinator;
+import org.hibernate.engine.spi.SessionImplementor;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Runs conditional UPDATEs (WHERE clauses that only match while the change is still allowed) on
+ * the session's connection, inside the current transaction. Statements are prepared through
+ * Hibernate, so they are logged and counted like its own. Pending entity changes are flushed first,
+ * the statements bypass auto-flush.
+ */
+final class ConditionalUpdates {
+
+    private ConditionalUpdates() {
+    }
+
+    // True if the row matched the condition and was changed
+    static boolean execute(Session session, String sql, Object... parameters) {
+        return executeBatch(session, sql, List.<Object[]>of(parameters))[0];
+    }
+
+    /**
+     * One JDBC batch, one parameter row per statement; element i tells whether row i matched.
+     * Drivers that cannot report per-statement counts fail the batch, the outcome would be unknown.
+     */
+    static boolean[] executeBatch(Session session, String sql, List<Object[]> rows) {
+        boolean[] changed = new boolean[rows.size()];
+        if (rows.isEmpty()) {
+            return changed;
+        }
+        session.flush();
+        JdbcCoordinator jdbc = session.unwrap(SessionImplementor.class).getJdbcCoordinator();
+        PreparedStatement statement = jdbc.getStatementPreparer().prepareStatement(sql);
+        try {
+            int[] counts;
+            if (rows.size() == 1) {
+                bind(statement, rows.get(0));
+                counts = new int[] {jdbc.getResultSetReturn().executeUpdate(statement, sql)};
+            } else {
+                for (Object[] row : rows) {
+                    bind(statement, row);
+                    statement.addBatch();
+                }
+                counts = statement.executeBatch();
+            }
+            if (counts.length != rows.size()) {
+                throw new IllegalStateException("Driver returned " + counts.length + " update counts for "
+                        + rows.size() + " statements");
+            }
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == Statement.SUCCESS_NO_INFO) {
+                    throw new IllegalStateException("Driver did not report update counts for: " + sql);
+                }
+                changed[i] = counts[i] > 0;
+            }
+            return changed;
+        } catch (SQLException e) {
+            throw session.unwrap(SessionImplementor.class).getJdbcServices().getSqlExceptionHelper()
+                    .convert(e, "Could not execute conditional update", sql);
+        } finally {
+            jdbc.getLogicalConnection().getResourceRegistry().release(statement);
+            jdbc.afterStatementExecution();
+        }
+    }
+
+    private static void bind(PreparedStatement statement, Object[] parameters) throws SQLException {
+        for (int i = 0; i < parameters.length; i++) {
+            statement.setObject(i + 1, parameters[i]);
+        }
+    }
+}
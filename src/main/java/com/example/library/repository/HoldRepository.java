@@ -0,0 +1,43 @@
+package com.example.library.repository;
+
+import com.example.library.dto.HoldView;
+import com.example.library.model.Hold;
+import com.example.library.model.HoldStatus;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface HoldRepository extends JpaRepository<Hold, Integer>, HoldRepositoryCustom {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT h FROM Hold h WHERE h.id = :id")
+    Optional<Hold> findForUpdateById(@Param("id") Integer id);
+
+    boolean existsByUserUidAndBookIdAndStatusIn(String userId, Integer bookId, Collection<HoldStatus> statuses);
+
+    // Holds ahead of the given one in its book's queue
+    @Query("SELECT COUNT(h) FROM Hold h WHERE h.book.id = :bookId AND h.status = :status AND h.id < :holdId")
+    long countAhead(@Param("bookId") Integer bookId, @Param("status") HoldStatus status, @Param("holdId") Integer holdId);
+
+    @Query("SELECT DISTINCT h.book.id FROM Hold h WHERE h.book.id IN :bookIds AND h.status = :status")
+    List<Integer> findBookIdsWithStatus(@Param("bookIds") Collection<Integer> bookIds, @Param("status") HoldStatus status);
+
+    @Query("SELECT h.id FROM Hold h WHERE h.status = :status AND h.expiresAt < :now ORDER BY h.expiresAt")
+    List<Integer> findIdsExpiredBefore(@Param("status") HoldStatus status, @Param("now") LocalDateTime now, Limit limit);
+
+    // Books with a queue although a copy is on the shelf (a return that raced a new hold)
+    @Query("SELECT DISTINCT h.book.id FROM Hold h WHERE h.status = :status AND h.book.availableCopies > 0")
+    List<Integer> findBookIdsWithStatusAndCopiesOnShelf(@Param("status") HoldStatus status);
+
+    @Query("SELECT new com.example.library.dto.HoldView(h.id, h.user.uid, b.id, b.title, h.status, h.createdAt, "
+            + "h.readyAt, h.expiresAt) FROM Hold h JOIN h.book b WHERE h.id = :id")
+    Optional<HoldView> findViewById(@Param("id") Integer id);
+}
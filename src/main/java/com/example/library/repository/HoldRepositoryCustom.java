@@ -0,0 +1,18 @@
+package com.example.library.repository;
+
+import com.example.library.model.Hold;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface HoldRepositoryCustom {
+
+    /**
+     * Locks and returns the first WAITING hold of the book. Rows locked by a concurrent allocation
+     * are skipped, so simultaneous returns of a title each take the next hold without waiting.
+     */
+    Optional<Hold> lockHead(Integer bookId);
+
+    // Conditional READY -> FULFILLED of the user's holds in one JDBC batch; element i tells whether bookIds[i] had one
+    boolean[] fulfillReady(String userId, List<Integer> bookIds);
+}
@@ -0,0 +1,41 @@
+package com.example.library.repository;
+
+import com.example.library.model.Hold;
+import com.example.library.model.HoldStatus;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.LockOptions;
+import org.hibernate.Session;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+class HoldRepositoryCustomImpl implements HoldRepositoryCustom {
+    private static final String FULFILL_SQL = "UPDATE book_hold SET status = 'FULFILLED' "
+            + "WHERE user_id = ? AND book_id = ? AND status = 'READY'";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Optional<Hold> lockHead(Integer bookId) {
+        return entityManager.createQuery("SELECT h FROM Hold h WHERE h.book.id = :bookId AND h.status = :status "
+                        + "ORDER BY h.id", Hold.class)
+                .setParameter("bookId", bookId)
+                .setParameter("status", HoldStatus.WAITING)
+                .setMaxResults(1)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .setHint("jakarta.persistence.lock.timeout", LockOptions.SKIP_LOCKED)
+                .getResultStream()
+                .findFirst();
+    }
+
+    @Override
+    @Transactional
+    public boolean[] fulfillReady(String userId, List<Integer> bookIds) {
+        List<Object[]> rows = bookIds.stream().map(bookId -> new Object[] {userId, bookId}).toList();
+        return ConditionalUpdates.executeBatch(entityManager.unwrap(Session.class), FULFILL_SQL, rows);
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.library.repository;
+
+import com.example.library.model.IdempotencyRecord;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    // Plain insert rather than save(), which would merge: a second claim of the key must fail on the primary key
+    @Modifying
+    @Query(value = "INSERT INTO idempotency_record (id, request_hash, created_at, expires_at) "
+            + "VALUES (:id, :requestHash, :createdAt, :expiresAt)", nativeQuery = true)
+    void insertClaim(@Param("id") String id, @Param("requestHash") String requestHash,
+                     @Param("createdAt") LocalDateTime createdAt, @Param("expiresAt") LocalDateTime expiresAt);
+
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.status = :status, r.contentType = :contentType, r.body = :body, "
+            + "r.expiresAt = :expiresAt WHERE r.id = :id AND r.status IS NULL")
+    int complete(@Param("id") String id, @Param("status") int status, @Param("contentType") String contentType,
+                 @Param("body") String body, @Param("expiresAt") LocalDateTime expiresAt);
+
+    // Gives up a claim still in progress, the request failed and may be retried
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.id = :id AND r.status IS NULL")
+    int deleteClaim(@Param("id") String id);
+
+    // Drops a claim still in progress whose lease ran out, its instance went away during the request
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.id = :id AND r.status IS NULL AND r.expiresAt < :now")
+    int deleteExpiredClaim(@Param("id") String id, @Param("now") LocalDateTime now);
+
+    @Query("SELECT r.id FROM IdempotencyRecord r WHERE r.expiresAt < :now")
+    List<String> findIdsExpiredBefore(@Param("now") LocalDateTime now, Limit limit);
+}
@@ -0,0 +1,172 @@
+package com.example.library.repository;
+
+import com.example.library.dto.CursorPage;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Keyset (seek) pagination over any entity. Instead of OFFSET the next page starts right
+ * after the last (sort value, id) pair of the previous one, so every page is an index range
+ * scan and no COUNT query is needed. The position is handed to clients as an opaque cursor.
+ */
+@Component
+public class KeysetPaginator {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Ids of the next page in sort order, plus the cursor for the page after it
+     */
+    public record KeysetSlice(List<Object> ids, String nextCursor, boolean hasNext) {
+    }
+
+    /**
+     * Select the ids of the next page. Only the sort column and the id are read, so the
+     * query can be answered from the index on the sort column.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public <T> KeysetSlice seek(Class<T> entityType, String idAttribute, String sortBy, Sort.Direction direction,
+                                String after, int size, Specification<T> filter) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<T> root = query.from(entityType);
+        Path sortPath = root.get(sortBy);
+        Path idPath = root.get(idAttribute);
+        boolean sortById = sortBy.equals(idAttribute);
+        boolean ascending = direction.isAscending();
+
+        List<Predicate> predicates = new ArrayList<>();
+        if (filter != null) {
+            Predicate predicate = filter.toPredicate(root, query, cb);
+            if (predicate != null) {
+                predicates.add(predicate);
+            }
+        }
+
+        if (after != null && !after.isBlank()) {
+            Cursor cursor = Cursor.decode(after);
+            if (!cursor.sortBy().equals(sortBy) || cursor.direction() != direction) {
+                throw new IllegalArgumentException("Cursor does not match the requested sort order");
+            }
+            Comparable lastId = convert(cursor.id(), idPath.getJavaType());
+            if (sortById) {
+                predicates.add(beyond(cb, idPath, lastId, ascending));
+            } else {
+                Comparable lastValue = convert(cursor.value(), sortPath.getJavaType());
+                predicates.add(cb.or(
+                        beyond(cb, sortPath, lastValue, ascending),
+                        cb.and(cb.equal(sortPath, lastValue), beyond(cb, idPath, lastId, ascending))));
+            }
+        }
+
+        List<Order> orders = new ArrayList<>();
+        if (!sortById) {
+            orders.add(ascending ? cb.asc(sortPath) : cb.desc(sortPath));
+        }
+        orders.add(ascending ? cb.asc(idPath) : cb.desc(idPath));
+
+        query.multiselect(sortPath, idPath)
+                .where(predicates.toArray(new Predicate[0]))
+                .orderBy(orders);
+
+        // One extra row tells whether another page exists without counting
+        List<Tuple> rows = entityManager.createQuery(query)
+                .setMaxResults(size + 1)
+                .getResultList();
+
+        boolean hasNext = rows.size() > size;
+        List<Tuple> page = hasNext ? rows.subList(0, size) : rows;
+        List<Object> ids = page.stream().map(row -> row.get(1)).collect(Collectors.toList());
+
+        String nextCursor = null;
+        if (hasNext) {
+            Tuple last = page.get(page.size() - 1);
+            nextCursor = new Cursor(sortBy, direction, String.valueOf(last.get(1)), String.valueOf(last.get(0))).encode();
+        }
+        return new KeysetSlice(ids, nextCursor, hasNext);
+    }
+
+    /**
+     * Load the rows of a slice with the given loader and return them in slice order
+     */
+    @SuppressWarnings("unchecked")
+    public <R, ID> CursorPage<R> load(KeysetSlice slice, Function<List<ID>, List<R>> loader, Function<R, ID> idOf) {
+        List<ID> ids = (List<ID>) (List<?>) slice.ids();
+        List<R> content = List.of();
+        if (!ids.isEmpty()) {
+            Map<ID, R> byId = loader.apply(ids).stream()
+                    .collect(Collectors.toMap(idOf, Function.identity(), (first, second) -> first));
+            content = ids.stream().map(byId::get).filter(Objects::nonNull).collect(Collectors.toList());
+        }
+        return new CursorPage<>(content, content.size(), slice.nextCursor(), slice.hasNext());
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Predicate beyond(CriteriaBuilder cb, Path path, Comparable value, boolean ascending) {
+        return ascending ? cb.greaterThan(path, value) : cb.lessThan(path, value);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Comparable convert(String raw, Class<?> type) {
+        try {
+            if (type == String.class) {
+                return raw;
+            } else if (type == Integer.class || type == int.class) {
+                return Integer.valueOf(raw);
+            } else if (type == Long.class || type == long.class) {
+                return Long.valueOf(raw);
+            } else if (type == LocalDate.class) {
+                return LocalDate.parse(raw);
+            } else if (type.isEnum()) {
+                return Enum.valueOf((Class) type, raw);
+            }
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+        throw new IllegalArgumentException("Cursor pagination is not supported for type " + type.getSimpleName());
+    }
+
+    private record Cursor(String sortBy, Sort.Direction direction, String id, String value) {
+        private static final String SEPARATOR = "\n";
+
+        String encode() {
+            String raw = sortBy + SEPARATOR + direction.name() + SEPARATOR + id + SEPARATOR + value;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String token) {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split(SEPARATOR, 4);
+            if (parts.length != 4) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new Cursor(parts[0], Sort.Direction.fromString(parts[1]), parts[2], parts[3]);
+        }
+    }
+}
@@ -1,7 +1,40 @@
 package com.example.library.repository;
 
+import com.example.library.dto.LoanView;
 import com.example.library.model.Loan;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
-public interface LoanRepository extends JpaRepository<Loan, Integer> {
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface LoanRepository extends JpaRepository<Loan, Integer>, JpaSpecificationExecutor<Loan>,
+        LoanRepositoryCustom {
+
+    // Before the enum, status was free text; rows written as "active" or "returned" get the enum name.
+    // On a case-insensitive collation nothing matches, and equality on status already finds those rows.
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE loan SET status = UPPER(status) WHERE status <> UPPER(status)", nativeQuery = true)
+    int normalizeStatusCase();
+
+    @Query("SELECT l.book.id FROM Loan l WHERE l.id = :id")
+    Optional<Integer> findBookIdById(@Param("id") Integer id);
+
+    // (loan id, book id) pairs, without loading the loans
+    @Query("SELECT l.id, l.book.id FROM Loan l WHERE l.id IN :ids")
+    List<Object[]> findBookIdsByIdIn(@Param("ids") Collection<Integer> ids);
+
+    @Query("SELECT new com.example.library.dto.LoanView(l.id, u.uid, u.name, u.surname, b.id, b.title, b.isbn, "
+            + "l.loanDate, l.dueDate, l.returnDate, l.status, l.fine) FROM Loan l JOIN l.user u JOIN l.book b WHERE l.id = :id")
+    Optional<LoanView> findViewById(@Param("id") Integer id);
+
+    @Query("SELECT new com.example.library.dto.LoanView(l.id, u.uid, u.name, u.surname, b.id, b.title, b.isbn, "
+            + "l.loanDate, l.dueDate, l.returnDate, l.status, l.fine) FROM Loan l JOIN l.user u JOIN l.book b WHERE l.id IN :ids")
+    List<LoanView> findViewsByIdIn(@Param("ids") Collection<Integer> ids);
 }
@@ -0,0 +1,34 @@
+package com.example.library.repository;
+
+import com.example.library.dto.LoanView;
+import com.example.library.model.Loan;
+import com.example.library.model.LoanStatus;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+public interface LoanRepositoryCustom {
+
+    // View projection (user and book joined for the shown columns only) of the loans matching the filter
+    Page<LoanView> findViews(Specification<Loan> filter, Pageable pageable);
+
+    // Conditional return of several loans in one JDBC batch; element i tells whether loanIds[i] was still open
+    boolean[] markAllReturned(List<Integer> loanIds, LocalDate returnDate);
+
+    /**
+     * Next chunk of (id, due date, user id) of loans with the status that were due before the given
+     * date, in (due date, id) order after the given key; both key parts null for the first chunk.
+     */
+    List<Object[]> findOverdueKeys(LoanStatus status, LocalDate dueBefore, LocalDate afterDueDate, Integer afterId,
+                                   int limit);
+
+    /**
+     * Conditional fine assessment in one JDBC batch: ACTIVE loans are marked OVERDUE, OVERDUE loans get
+     * their fine updated unless already assessed on runDate. Element i tells whether loanIds[i] changed.
+     */
+    boolean[] assessOverdue(LoanStatus status, List<Integer> loanIds, List<BigDecimal> fines, LocalDate runDate);
+}
@@ -0,0 +1,119 @@
+package com.example.library.repository;
+
+import com.example.library.dto.LoanView;
+import com.example.library.model.Book;
+import com.example.library.model.Loan;
+import com.example.library.model.LoanStatus;
+import com.example.library.model.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.Session;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+class LoanRepositoryCustomImpl implements LoanRepositoryCustom {
+    private static final String RETURN_SQL = "UPDATE loan SET status = 'RETURNED', return_date = ? "
+            + "WHERE id = ? AND status <> 'RETURNED'";
+    // Both re-check the due date, it may have been extended since the chunk was read
+    private static final String MARK_OVERDUE_SQL = "UPDATE loan SET status = 'OVERDUE', fine = ?, fine_assessed_on = ? "
+            + "WHERE id = ? AND status = 'ACTIVE' AND due_date < ?";
+    private static final String UPDATE_FINE_SQL = "UPDATE loan SET fine = ?, fine_assessed_on = ? "
+            + "WHERE id = ? AND status = 'OVERDUE' AND due_date < ? "
+            + "AND (fine_assessed_on IS NULL OR fine_assessed_on < ?)";
+    private static final String OVERDUE_KEYS_QUERY = "SELECT l.id, l.dueDate, l.user.uid FROM Loan l "
+            + "WHERE l.status = :status AND l.dueDate < :dueBefore";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Page<LoanView> findViews(Specification<Loan> filter, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<LoanView> query = cb.createQuery(LoanView.class);
+        Root<Loan> root = query.from(Loan.class);
+        Join<Loan, User> user = root.join("user");
+        Join<Loan, Book> book = root.join("book");
+        query.select(cb.construct(LoanView.class, root.get("id"), user.get("uid"), user.get("name"),
+                user.get("surname"), book.get("id"), book.get("title"), book.get("isbn"), root.get("loanDate"),
+                root.get("dueDate"), root.get("returnDate"), root.get("status"), root.get("fine")));
+        Predicate predicate = filter.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, cb));
+
+        List<LoanView> content = entityManager.createQuery(query)
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize())
+                .getResultList();
+        // The count is skipped when the page itself shows the total (first or last page)
+        return PageableExecutionUtils.getPage(content, pageable, () -> count(filter));
+    }
+
+    private long count(Specification<Loan> filter) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Loan> root = query.from(Loan.class);
+        query.select(cb.count(root));
+        Predicate predicate = filter.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    @Override
+    @Transactional
+    public boolean[] markAllReturned(List<Integer> loanIds, LocalDate returnDate) {
+        List<Object[]> rows = loanIds.stream().map(id -> new Object[] {returnDate, id}).toList();
+        return ConditionalUpdates.executeBatch(entityManager.unwrap(Session.class), RETURN_SQL, rows);
+    }
+
+    @Override
+    public List<Object[]> findOverdueKeys(LoanStatus status, LocalDate dueBefore, LocalDate afterDueDate,
+                                          Integer afterId, int limit) {
+        // Seeks within idx_loan_status_due instead of skipping rows, each chunk costs the same
+        String keyset = afterDueDate != null
+                ? " AND (l.dueDate > :afterDueDate OR (l.dueDate = :afterDueDate AND l.id > :afterId))" : "";
+        TypedQuery<Object[]> query = entityManager.createQuery(OVERDUE_KEYS_QUERY + keyset + " ORDER BY l.dueDate, l.id", Object[].class)
+                .setParameter("status", status)
+                .setParameter("dueBefore", dueBefore)
+                .setMaxResults(limit);
+        if (afterDueDate != null) {
+            query.setParameter("afterDueDate", afterDueDate).setParameter("afterId", afterId);
+        }
+        return query.getResultList();
+    }
+
+    @Override
+    @Transactional
+    public boolean[] assessOverdue(LoanStatus status, List<Integer> loanIds, List<BigDecimal> fines,
+                                   LocalDate runDate) {
+        if (!status.isOpen()) {
+            throw new IllegalArgumentException("Only active and overdue loans can be assessed");
+        }
+        List<Object[]> rows = new ArrayList<>(loanIds.size());
+        for (int i = 0; i < loanIds.size(); i++) {
+            rows.add(status == LoanStatus.ACTIVE
+                    ? new Object[] {fines.get(i), runDate, loanIds.get(i), runDate}
+                    : new Object[] {fines.get(i), runDate, loanIds.get(i), runDate, runDate});
+        }
+        String sql = status == LoanStatus.ACTIVE ? MARK_OVERDUE_SQL : UPDATE_FINE_SQL;
+        return ConditionalUpdates.executeBatch(entityManager.unwrap(Session.class), sql, rows);
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.library.repository;
+
+import com.example.library.model.Loan;
+import com.example.library.model.LoanStatus;
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * Criteria predicates for loan listings. The user and book conditions compare the foreign key
+ * columns, no join is made; together with a status they are seeks on idx_loan_user_status_date
+ * and idx_loan_book_status.
+ */
+public final class LoanSpecifications {
+
+    private LoanSpecifications() {
+    }
+
+    public static Specification<Loan> ofUser(String uid) {
+        return (root, query, cb) -> cb.equal(root.get("user").get("uid"), uid);
+    }
+
+    public static Specification<Loan> ofBook(Integer bookId) {
+        return (root, query, cb) -> cb.equal(root.get("book").get("id"), bookId);
+    }
+
+    // Matches every loan when status is null
+    public static Specification<Loan> withStatus(LoanStatus status) {
+        return (root, query, cb) -> status != null ? cb.equal(root.get("status"), status) : null;
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.library.repository;
+
+import com.example.library.model.OverdueReminder;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface OverdueReminderRepository extends JpaRepository<OverdueReminder, Integer> {
+}
@@ -1,10 +1,19 @@
 package com.example.library.repository;
 
 import com.example.library.model.User;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.Optional;
 
-public interface UserRepository extends JpaRepository<User, String> {
+public interface UserRepository extends JpaRepository<User, String>, UserRepositoryCustom {
     Optional<User> findByEmail(String email);
+
+    // Serializes check-then-insert steps of one user, such as placing a hold
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT u FROM library_user u WHERE u.uid = :uid")
+    Optional<User> findForUpdateByUid(@Param("uid") String uid);
 }
@@ -0,0 +1,32 @@
+package com.example.library.repository;
+
+import java.util.List;
+
+/**
+ * The open loan counter of users. Unlike the copy counts of books, users loaded into the session
+ * are not refreshed after a change: that would cost every borrow a select, and nothing reads the
+ * counter back in the transaction that changed it.
+ */
+public interface UserRepositoryCustom {
+
+    // Conditional increment of the user's open loan counter; false if it would go over the limit
+    boolean reserveLoans(String userId, int count, int limit);
+
+    // Unconditional adjustment of the counter, which never goes below zero
+    void addActiveLoans(String userId, int delta);
+
+    // One decrement per loan, of the counter of the loan's borrower, in one JDBC batch
+    void releaseLoansOf(List<Integer> loanIds);
+
+    /**
+     * Next chunk of (uid, stored counter, open loan count) in uid order after the given uid (null for
+     * the first chunk). Both numbers come from one statement, so they belong to the same snapshot.
+     */
+    List<Object[]> findLoanCounters(String afterUid, int limit);
+
+    /**
+     * Sets counters to the counted values in one JDBC batch, each only if it still holds the value
+     * read with the count. Element i tells whether userIds[i] was corrected.
+     */
+    boolean[] correctActiveLoans(List<String> userIds, List<Integer> expected, List<Integer> actual);
+}
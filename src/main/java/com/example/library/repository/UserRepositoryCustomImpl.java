@@ -0,0 +1,73 @@
+package com.example.library.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class UserRepositoryCustomImpl implements UserRepositoryCustom {
+    private static final String RESERVE_SQL = "UPDATE library_user SET active_loans = active_loans + ? "
+            + "WHERE uid = ? AND active_loans + ? <= ?";
+    private static final String ADD_SQL = "UPDATE library_user SET active_loans = "
+            + "CASE WHEN active_loans + ? > 0 THEN active_loans + ? ELSE 0 END WHERE uid = ?";
+    private static final String RELEASE_SQL = "UPDATE library_user SET active_loans = active_loans - 1 "
+            + "WHERE active_loans > 0 AND uid = (SELECT l.user_id FROM loan l WHERE l.id = ?)";
+    private static final String CORRECT_SQL = "UPDATE library_user SET active_loans = ? WHERE uid = ? AND active_loans = ?";
+    // Counts along idx_loan_user_status_date
+    private static final String COUNTERS_SQL = "SELECT u.uid, u.active_loans, (SELECT COUNT(*) FROM loan l "
+            + "WHERE l.user_id = u.uid AND l.status <> 'RETURNED') FROM library_user u ";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public boolean reserveLoans(String userId, int count, int limit) {
+        return ConditionalUpdates.execute(session(), RESERVE_SQL, count, userId, count, limit);
+    }
+
+    @Override
+    @Transactional
+    public void addActiveLoans(String userId, int delta) {
+        ConditionalUpdates.execute(session(), ADD_SQL, delta, delta, userId);
+    }
+
+    @Override
+    @Transactional
+    public void releaseLoansOf(List<Integer> loanIds) {
+        List<Object[]> rows = loanIds.stream().map(loanId -> new Object[] {loanId}).toList();
+        ConditionalUpdates.executeBatch(session(), RELEASE_SQL, rows);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Object[]> findLoanCounters(String afterUid, int limit) {
+        List<Object[]> rows = (afterUid == null
+                ? entityManager.createNativeQuery(COUNTERS_SQL + "ORDER BY u.uid")
+                : entityManager.createNativeQuery(COUNTERS_SQL + "WHERE u.uid > ? ORDER BY u.uid")
+                        .setParameter(1, afterUid))
+                .setMaxResults(limit)
+                .getResultList();
+        // Drivers differ in the numeric types they return for the column and the count
+        return rows.stream()
+                .map(row -> new Object[] {row[0], ((Number) row[1]).intValue(), ((Number) row[2]).intValue()})
+                .toList();
+    }
+
+    @Override
+    @Transactional
+    public boolean[] correctActiveLoans(List<String> userIds, List<Integer> expected, List<Integer> actual) {
+        List<Object[]> rows = new ArrayList<>(userIds.size());
+        for (int i = 0; i < userIds.size(); i++) {
+            rows.add(new Object[] {actual.get(i), userIds.get(i), expected.get(i)});
+        }
+        return ConditionalUpdates.executeBatch(session(), CORRECT_SQL, rows);
+    }
+
+    private Session session() {
+        return entityManager.unwrap(Session.class);
+    }
+}
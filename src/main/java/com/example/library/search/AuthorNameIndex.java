@@ -0,0 +1,241 @@
+package com.example.library.search;
+
+import com.example.library.event.AuthorChangedEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntConsumer;
+
+/**
+ * Trigram index over author first and last names for case- and accent-insensitive substring search.
+ * A query is answered from the posting list of its rarest trigram, each candidate is then checked
+ * with a plain contains on the folded names. Queries shorter than three characters scan the names.
+ * Postings are append-only; ids left behind by renames and deletes fail the contains check and are
+ * dropped at the next rebuild.
+ */
+@Component
+public class AuthorNameIndex {
+    private static final Set<String> SORTABLE = Set.of("id", "firstName", "lastName");
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, Name> names = new HashMap<>();
+    private final Map<String, IntList> postings = new HashMap<>();
+    private Set<Integer> changedDuringRebuild;
+    private volatile boolean ready;
+
+    private record Name(int id, String first, String last) {
+        boolean contains(String query) {
+            return first.contains(query) || last.contains(query);
+        }
+    }
+
+    /**
+     * Ids of one page of matches, in the requested order, and the total number of matches
+     */
+    public record Matches(List<Integer> pageIds, long total) {
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onAuthorChanged(AuthorChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (changedDuringRebuild != null) {
+                changedDuringRebuild.add(event.authorId());
+            }
+            if (event.type() == AuthorChangedEvent.Type.DELETED) {
+                names.remove(event.authorId());
+            } else {
+                addLocked(event.authorId(), event.firstName(), event.lastName());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Whether the index is loaded and can order results by the given sort
+     */
+    public boolean canServe(Sort sort) {
+        return ready && sort.stream().allMatch(order -> SORTABLE.contains(order.getProperty()));
+    }
+
+    public Matches search(String query, Pageable pageable) {
+        String needle = TextAnalyzer.fold(query.trim());
+        Comparator<Name> ordering = ordering(pageable.getSort());
+        long wanted = pageable.getOffset() + pageable.getPageSize();
+
+        lock.readLock().lock();
+        try {
+            // Max-heap on the requested order holding the best offset + size matches
+            PriorityQueue<Name> top = new PriorityQueue<>(ordering.reversed());
+            long[] total = {0};
+            IntConsumer candidate = id -> {
+                Name name = names.get(id);
+                if (name == null || !name.contains(needle)) {
+                    return;
+                }
+                total[0]++;
+                if (top.size() < wanted) {
+                    top.add(name);
+                } else if (ordering.compare(name, top.peek()) < 0) {
+                    top.poll();
+                    top.add(name);
+                }
+            };
+
+            if (needle.length() < 3) {
+                names.keySet().forEach(candidate::accept);
+            } else {
+                IntList rarest = null;
+                for (String trigram : trigrams(needle)) {
+                    IntList posting = postings.get(trigram);
+                    if (posting == null) {
+                        return new Matches(List.of(), 0);
+                    }
+                    if (rarest == null || posting.size < rarest.size) {
+                        rarest = posting;
+                    }
+                }
+                // Renaming back to an earlier name can list an id twice
+                Set<Integer> seen = new HashSet<>();
+                rarest.forEach(id -> {
+                    if (seen.add(id)) {
+                        candidate.accept(id);
+                    }
+                });
+            }
+
+            List<Integer> pageIds = top.stream()
+                    .sorted(ordering)
+                    .skip(pageable.getOffset())
+                    .map(Name::id)
+                    .toList();
+            return new Matches(pageIds, total[0]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void beginRebuild() {
+        lock.writeLock().lock();
+        try {
+            ready = false;
+            names.clear();
+            postings.clear();
+            changedDuringRebuild = new HashSet<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void putFromRebuild(int id, String firstName, String lastName) {
+        lock.writeLock().lock();
+        try {
+            if (!changedDuringRebuild.contains(id)) {
+                addLocked(id, firstName, lastName);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void endRebuild() {
+        lock.writeLock().lock();
+        try {
+            changedDuringRebuild = null;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return names.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void addLocked(int id, String firstName, String lastName) {
+        Name name = new Name(id, fold(firstName), fold(lastName));
+        Name previous = names.put(id, name);
+        Set<String> grams = new HashSet<>(trigrams(name.first()));
+        grams.addAll(trigrams(name.last()));
+        if (previous != null) {
+            // The id is already listed under the trigrams of its previous name
+            trigrams(previous.first()).forEach(grams::remove);
+            trigrams(previous.last()).forEach(grams::remove);
+        }
+        for (String gram : grams) {
+            postings.computeIfAbsent(gram, key -> new IntList()).add(id);
+        }
+    }
+
+    private static String fold(String value) {
+        return value == null ? "" : TextAnalyzer.fold(value);
+    }
+
+    private static List<String> trigrams(String text) {
+        if (text.length() < 3) {
+            return List.of();
+        }
+        String[] grams = new String[text.length() - 2];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = text.substring(i, i + 3);
+        }
+        return Arrays.asList(grams);
+    }
+
+    private static Comparator<Name> ordering(Sort sort) {
+        Comparator<Name> ordering = null;
+        for (Sort.Order order : sort) {
+            Comparator<Name> next = switch (order.getProperty()) {
+                case "firstName" -> Comparator.comparing(Name::first);
+                case "lastName" -> Comparator.comparing(Name::last);
+                default -> Comparator.comparingInt(Name::id);
+            };
+            if (order.isDescending()) {
+                next = next.reversed();
+            }
+            ordering = ordering == null ? next : ordering.thenComparing(next);
+        }
+        Comparator<Name> byId = Comparator.comparingInt(Name::id);
+        return ordering == null ? byId : ordering.thenComparing(byId);
+    }
+
+    /**
+     * Growable int array, a boxed List per trigram would triple the index size
+     */
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void forEach(IntConsumer action) {
+            for (int i = 0; i < size; i++) {
+                action.accept(values[i]);
+            }
+        }
+    }
+}
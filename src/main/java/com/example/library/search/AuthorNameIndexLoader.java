@@ -0,0 +1,90 @@
+package com.example.library.search;
+
+import com.example.library.model.Author;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Loads the author name index at startup by streaming (id, first name, last name) rows.
+ * The same pass finds nationalities stored before nationality_key existed and fills the key
+ * with one bulk update per distinct nationality.
+ */
+@Component
+public class AuthorNameIndexLoader implements ApplicationRunner {
+    private static final Logger logger = LoggerFactory.getLogger(AuthorNameIndexLoader.class);
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final AuthorNameIndex index;
+    private final TransactionTemplate readOnlyTransaction;
+    private final TransactionTemplate writeTransaction;
+    private final int fetchSize;
+
+    public AuthorNameIndexLoader(AuthorNameIndex index, PlatformTransactionManager transactionManager,
+                                 @Value("${library.search.fetch-size:500}") int fetchSize) {
+        this.index = index;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.fetchSize = fetchSize;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long started = System.currentTimeMillis();
+        Set<String> unkeyedNationalities = new HashSet<>();
+        index.beginRebuild();
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> {
+                Session session = entityManager.unwrap(Session.class);
+                try (ScrollableResults<Object[]> rows = session.createSelectionQuery(
+                                "SELECT a.id, a.firstName, a.lastName, a.nationality, a.nationalityKey FROM Author a",
+                                Object[].class)
+                        .setFetchSize(fetchSize)
+                        .setReadOnly(true)
+                        .setCacheMode(CacheMode.IGNORE)
+                        .scroll(ScrollMode.FORWARD_ONLY)) {
+                    while (rows.next()) {
+                        Object[] row = rows.get();
+                        index.putFromRebuild((Integer) row[0], (String) row[1], (String) row[2]);
+                        if (row[3] != null && row[4] == null) {
+                            unkeyedNationalities.add((String) row[3]);
+                        }
+                    }
+                }
+            });
+        } finally {
+            index.endRebuild();
+        }
+        logger.info("Search: Indexed {} author names in {} ms", index.size(), System.currentTimeMillis() - started);
+
+        int updated = 0;
+        for (String nationality : unkeyedNationalities) {
+            updated += writeTransaction.execute(status -> entityManager
+                    .createQuery("UPDATE Author a SET a.nationalityKey = :nationalityKey "
+                            + "WHERE a.nationality = :nationality AND a.nationalityKey IS NULL")
+                    .setParameter("nationalityKey", Author.normalizeNationality(nationality))
+                    .setParameter("nationality", nationality)
+                    .executeUpdate());
+        }
+        if (updated > 0) {
+            logger.info("Search: Filled nationality key for {} authors", updated);
+        }
+    }
+}
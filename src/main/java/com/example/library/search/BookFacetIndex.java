@@ -0,0 +1,299 @@
+package com.example.library.search;
+
+import com.example.library.dto.BookFacets;
+import com.example.library.dto.BookFilter;
+import com.example.library.event.BookAvailabilityChangedEvent;
+import com.example.library.model.Author;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Facet counts for the catalog from compressed (Roaring) bitmaps of book ids: one for available
+ * books, one per publication year, author and author nationality. A count is the cardinality of an
+ * intersection, so no query runs per request. Loaded and kept current by BookFacetIndexLoader,
+ * availability is flipped directly from loan events.
+ */
+@Component
+public class BookFacetIndex {
+    private static final RoaringBitmap EMPTY = new RoaringBitmap();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final RoaringBitmap all = new RoaringBitmap();
+    private final RoaringBitmap available = new RoaringBitmap();
+    private final Map<Integer, RoaringBitmap> byYear = new HashMap<>();
+    // Same books as byYear, grouped by the first year of the decade, so counting needs 10x fewer intersections
+    private final Map<Integer, RoaringBitmap> byDecade = new HashMap<>();
+    private final Map<Integer, RoaringBitmap> byAuthor = new HashMap<>();
+    private final Map<String, RoaringBitmap> byNationality = new HashMap<>();
+    // Bitmaps each book is listed in, needed to take it out again on update or delete
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    private Set<Integer> changedDuringRebuild;
+
+    /**
+     * Facet values of one book; available is only read when the entry is added
+     */
+    public record Entry(int bookId, int publicationYear, boolean available, int[] authorIds,
+                        String[] nationalityKeys) {
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onAvailabilityChanged(BookAvailabilityChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (!entries.containsKey(event.bookId())) {
+                return;
+            }
+            if (event.available()) {
+                available.add(event.bookId());
+            } else {
+                available.remove(event.bookId());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void put(Entry entry) {
+        lock.writeLock().lock();
+        try {
+            markChangedLocked(entry.bookId());
+            removeLocked(entry.bookId());
+            addLocked(entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int bookId) {
+        lock.writeLock().lock();
+        try {
+            markChangedLocked(bookId);
+            removeLocked(bookId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ids of the books currently listed under the author
+     */
+    public int[] booksOf(int authorId) {
+        lock.readLock().lock();
+        try {
+            return byAuthor.getOrDefault(authorId, EMPTY).toArray();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return all.getCardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Facet counts of the books matching the filter, optionally only among the given book ids
+     * (the matches of a search)
+     */
+    public BookFacets count(BookFilter filter, RoaringBitmap within) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap base = within != null ? RoaringBitmap.and(within, all) : all;
+            RoaringBitmap availability = filter.getAvailable() == null ? null
+                    : filter.getAvailable() ? available : RoaringBitmap.andNot(all, available);
+            boolean yearRange = filter.getYearFrom() != null || filter.getYearTo() != null;
+            RoaringBitmap author = filter.getAuthorId() == null ? null
+                    : byAuthor.getOrDefault(filter.getAuthorId(), EMPTY);
+            RoaringBitmap nationality = filter.getNationality() == null || filter.getNationality().isBlank() ? null
+                    : byNationality.getOrDefault(Author.normalizeNationality(filter.getNationality()), EMPTY);
+
+            BookFacets facets = new BookFacets();
+            RoaringBitmap forAvailability = select(base, yearRange ? filter : null, author, nationality);
+            long availableCount = cardinality(forAvailability, available);
+            facets.getAvailable().put("true", availableCount);
+            facets.getAvailable().put("false", forAvailability.getLongCardinality() - availableCount);
+
+            RoaringBitmap forDecade = select(base, null, availability, author, nationality);
+            new TreeMap<>(byDecade).forEach((decade, books) -> {
+                long count = cardinality(forDecade, books);
+                if (count > 0) {
+                    facets.getDecade().put(decade, count);
+                }
+            });
+
+            RoaringBitmap forNationality = select(base, yearRange ? filter : null, availability, author);
+            List<Map.Entry<String, Long>> nationalities = new ArrayList<>();
+            for (Map.Entry<String, RoaringBitmap> value : byNationality.entrySet()) {
+                long count = cardinality(forNationality, value.getValue());
+                if (count > 0) {
+                    nationalities.add(Map.entry(value.getKey(), count));
+                }
+            }
+            nationalities.sort(Map.Entry.<String, Long>comparingByValue().reversed()
+                    .thenComparing(Map.Entry.comparingByKey()));
+            nationalities.forEach(value -> facets.getNationality().put(value.getKey(), value.getValue()));
+            return facets;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void beginRebuild() {
+        lock.writeLock().lock();
+        try {
+            changedDuringRebuild = new HashSet<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void putFromRebuild(List<Entry> batch) {
+        lock.writeLock().lock();
+        try {
+            for (Entry entry : batch) {
+                if (!changedDuringRebuild.contains(entry.bookId())) {
+                    removeLocked(entry.bookId());
+                    addLocked(entry);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void endRebuild() {
+        lock.writeLock().lock();
+        try {
+            changedDuringRebuild = null;
+            // Switch dense ranges of ids to run-length containers
+            all.runOptimize();
+            available.runOptimize();
+            byYear.values().forEach(RoaringBitmap::runOptimize);
+            byDecade.values().forEach(RoaringBitmap::runOptimize);
+            byAuthor.values().forEach(RoaringBitmap::runOptimize);
+            byNationality.values().forEach(RoaringBitmap::runOptimize);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void markChangedLocked(int bookId) {
+        if (changedDuringRebuild != null) {
+            changedDuringRebuild.add(bookId);
+        }
+    }
+
+    private void addLocked(Entry entry) {
+        int id = entry.bookId();
+        entries.put(id, entry);
+        all.add(id);
+        if (entry.available()) {
+            available.add(id);
+        }
+        byYear.computeIfAbsent(entry.publicationYear(), key -> new RoaringBitmap()).add(id);
+        byDecade.computeIfAbsent(decadeOf(entry.publicationYear()), key -> new RoaringBitmap()).add(id);
+        for (int authorId : entry.authorIds()) {
+            byAuthor.computeIfAbsent(authorId, key -> new RoaringBitmap()).add(id);
+        }
+        for (String nationalityKey : entry.nationalityKeys()) {
+            byNationality.computeIfAbsent(nationalityKey, key -> new RoaringBitmap()).add(id);
+        }
+    }
+
+    private void removeLocked(int bookId) {
+        Entry entry = entries.remove(bookId);
+        if (entry == null) {
+            return;
+        }
+        all.remove(bookId);
+        available.remove(bookId);
+        removeFrom(byYear, entry.publicationYear(), bookId);
+        removeFrom(byDecade, decadeOf(entry.publicationYear()), bookId);
+        for (int authorId : entry.authorIds()) {
+            removeFrom(byAuthor, authorId, bookId);
+        }
+        for (String nationalityKey : entry.nationalityKeys()) {
+            removeFrom(byNationality, nationalityKey, bookId);
+        }
+    }
+
+    private static int decadeOf(int year) {
+        return year - Math.floorMod(year, 10);
+    }
+
+    private static <K> void removeFrom(Map<K, RoaringBitmap> bitmaps, K key, int bookId) {
+        RoaringBitmap bitmap = bitmaps.get(key);
+        if (bitmap != null) {
+            bitmap.remove(bookId);
+            if (bitmap.isEmpty()) {
+                bitmaps.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Books of the base that pass every given filter and, when yearRange is set, its year range.
+     * Returns the base itself when nothing narrows it, the shared bitmaps are never modified.
+     */
+    private RoaringBitmap select(RoaringBitmap base, BookFilter yearRange, RoaringBitmap... filters) {
+        // Smallest first, every further intersection then works on fewer ids
+        List<RoaringBitmap> narrowing = new ArrayList<>();
+        for (RoaringBitmap filter : filters) {
+            if (filter != null) {
+                narrowing.add(filter);
+            }
+        }
+        narrowing.sort(Comparator.comparingLong(RoaringBitmap::getLongCardinality));
+        RoaringBitmap result = base;
+        for (RoaringBitmap filter : narrowing) {
+            result = result == all ? filter : RoaringBitmap.and(result, filter);
+        }
+        if (yearRange == null) {
+            return result;
+        }
+        int from = yearRange.getYearFrom() != null ? yearRange.getYearFrom() : Integer.MIN_VALUE;
+        int to = yearRange.getYearTo() != null ? yearRange.getYearTo() : Integer.MAX_VALUE;
+        // Decades inside the range are taken whole, single years only at its edges
+        List<RoaringBitmap> parts = new ArrayList<>();
+        for (Map.Entry<Integer, RoaringBitmap> decade : byDecade.entrySet()) {
+            int first = decade.getKey();
+            if (first >= from && first + 9 <= to) {
+                parts.add(decade.getValue());
+            } else if (first + 9 >= from && first <= to) {
+                for (int year = Math.max(first, from); year <= Math.min(first + 9, to); year++) {
+                    RoaringBitmap books = byYear.get(year);
+                    if (books != null) {
+                        parts.add(books);
+                    }
+                }
+            }
+        }
+        List<RoaringBitmap> selected = new ArrayList<>(parts.size());
+        for (RoaringBitmap part : parts) {
+            selected.add(result == all ? part : RoaringBitmap.and(result, part));
+        }
+        return selected.isEmpty() ? EMPTY : FastAggregation.or(selected.iterator());
+    }
+
+    private long cardinality(RoaringBitmap selection, RoaringBitmap facetValue) {
+        return selection == all ? facetValue.getLongCardinality() : RoaringBitmap.andCardinality(selection, facetValue);
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.library.search;
+
+import com.example.library.event.AuthorChangedEvent;
+import com.example.library.event.BookChangedEvent;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Loads the facet bitmaps at startup with one streamed query over books and their authors, and
+ * re-reads the facet values of single books after book or author writes. Events do not carry the
+ * authors and nationalities of a book, so they are read back instead.
+ */
+@Component
+public class BookFacetIndexLoader implements ApplicationRunner {
+    private static final Logger logger = LoggerFactory.getLogger(BookFacetIndexLoader.class);
+    private static final String FACET_QUERY = "SELECT b.id, b.publicationYear, b.available, a.id, a.nationalityKey "
+            + "FROM Book b LEFT JOIN b.authors a";
+    private static final int BATCH_SIZE = 1000;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final BookFacetIndex index;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int fetchSize;
+
+    public BookFacetIndexLoader(BookFacetIndex index, PlatformTransactionManager transactionManager,
+                                @Value("${library.search.fetch-size:500}") int fetchSize) {
+        this.index = index;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        // Listeners run after the commit of the writing transaction, they must not join it
+        this.readOnlyTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.fetchSize = fetchSize;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long started = System.currentTimeMillis();
+        index.beginRebuild();
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> {
+                Session session = entityManager.unwrap(Session.class);
+                try (ScrollableResults<Object[]> rows = session.createSelectionQuery(FACET_QUERY + " ORDER BY b.id",
+                                Object[].class)
+                        .setFetchSize(fetchSize)
+                        .setReadOnly(true)
+                        .setCacheMode(CacheMode.IGNORE)
+                        .scroll(ScrollMode.FORWARD_ONLY)) {
+                    List<BookFacetIndex.Entry> batch = new ArrayList<>(BATCH_SIZE);
+                    EntryBuilder builder = new EntryBuilder(entry -> {
+                        batch.add(entry);
+                        if (batch.size() >= BATCH_SIZE) {
+                            index.putFromRebuild(batch);
+                            batch.clear();
+                        }
+                    });
+                    while (rows.next()) {
+                        builder.accept(rows.get());
+                    }
+                    builder.finish();
+                    index.putFromRebuild(batch);
+                }
+            });
+        } finally {
+            index.endRebuild();
+        }
+        logger.info("Search: Indexed facets of {} books in {} ms", index.size(), System.currentTimeMillis() - started);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        if (event.type() == BookChangedEvent.Type.DELETED) {
+            index.remove(event.bookId());
+        } else {
+            refresh(List.of(event.bookId()));
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onAuthorChanged(AuthorChangedEvent event) {
+        // A new author has no books yet; links made later arrive as book changes
+        int[] bookIds = index.booksOf(event.authorId());
+        if (bookIds.length > 0) {
+            refresh(Arrays.stream(bookIds).boxed().toList());
+        }
+    }
+
+    /**
+     * Re-read the facet values of the given books; books that no longer exist are dropped
+     */
+    void refresh(List<Integer> bookIds) {
+        for (int from = 0; from < bookIds.size(); from += BATCH_SIZE) {
+            List<Integer> chunk = bookIds.subList(from, Math.min(from + BATCH_SIZE, bookIds.size()));
+            Set<Integer> missing = new HashSet<>(chunk);
+            List<Object[]> rows = readOnlyTransaction.execute(status -> entityManager
+                    .createQuery(FACET_QUERY + " WHERE b.id IN :ids ORDER BY b.id", Object[].class)
+                    .setParameter("ids", chunk)
+                    .getResultList());
+            EntryBuilder builder = new EntryBuilder(entry -> {
+                missing.remove(entry.bookId());
+                index.put(entry);
+            });
+            rows.forEach(builder::accept);
+            builder.finish();
+            missing.forEach(index::remove);
+        }
+    }
+
+    /**
+     * Folds the (book, author) rows of one book, which arrive consecutively, into one entry
+     */
+    private static final class EntryBuilder {
+        private final Consumer<BookFacetIndex.Entry> sink;
+        private Object[] book;
+        private final Set<Integer> authorIds = new LinkedHashSet<>();
+        private final Set<String> nationalityKeys = new LinkedHashSet<>();
+
+        EntryBuilder(Consumer<BookFacetIndex.Entry> sink) {
+            this.sink = sink;
+        }
+
+        void accept(Object[] row) {
+            if (book != null && !book[0].equals(row[0])) {
+                finish();
+            }
+            book = row;
+            if (row[3] != null) {
+                authorIds.add((Integer) row[3]);
+            }
+            if (row[4] != null) {
+                nationalityKeys.add(((String) row[4]).intern());
+            }
+        }
+
+        void finish() {
+            if (book == null) {
+                return;
+            }
+            sink.accept(new BookFacetIndex.Entry((Integer) book[0], (Integer) book[1], (Boolean) book[2],
+                    authorIds.stream().mapToInt(Integer::intValue).toArray(), nationalityKeys.toArray(new String[0])));
+            book = null;
+            authorIds.clear();
+            nationalityKeys.clear();
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.example.library.search;
+
+import com.example.library.dto.BookSearchHit;
+import com.example.library.event.BookChangedEvent;
+import com.example.library.util.IsbnUtil;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over book title, author, ISBN and content, ranked with BM25.
+ * A term found in the title counts more than the same term in the content (field boosts).
+ * Kept current from BookChangedEvent after each commit and rebuilt at startup by BookSearchIndexLoader.
+ */
+@Component
+public class BookSearchIndex {
+    private static final float TITLE_BOOST = 3.0f;
+    private static final float AUTHOR_BOOST = 2.0f;
+    private static final float ISBN_BOOST = 5.0f;
+    private static final float CONTENT_BOOST = 1.0f;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // term -> (book id -> boosted term frequency)
+    private final Map<String, Map<Integer, Float>> postings = new HashMap<>();
+    private final Map<Integer, Document> documents = new HashMap<>();
+    private double totalLength;
+    // Books changed by events while a rebuild is running; the rebuild must not overwrite them with older rows
+    private Set<Integer> changedDuringRebuild;
+
+    /**
+     * Analyzed form of one book, built outside the lock
+     */
+    public record Document(Integer id, String title, String author, String isbn, int publicationYear,
+                           Map<String, Float> termFrequencies, float length) {
+    }
+
+    public static Document document(Integer id, String title, String author, String isbn, int publicationYear,
+                                    String content) {
+        Map<String, Float> frequencies = new HashMap<>();
+        float length = 0;
+        length += addTerms(frequencies, TextAnalyzer.analyze(title), TITLE_BOOST);
+        length += addTerms(frequencies, TextAnalyzer.analyze(author), AUTHOR_BOOST);
+        length += addTerms(frequencies, TextAnalyzer.analyze(content), CONTENT_BOOST);
+        String isbnKey = IsbnUtil.canonical(isbn);
+        if (isbnKey != null) {
+            length += addTerms(frequencies, List.of(TextAnalyzer.fold(isbnKey)), ISBN_BOOST);
+        }
+        return new Document(id, title, author, isbn, publicationYear, frequencies, length);
+    }
+
+    private static float addTerms(Map<String, Float> frequencies, List<String> terms, float boost) {
+        for (String term : terms) {
+            frequencies.merge(term, boost, Float::sum);
+        }
+        return terms.size() * boost;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        if (event.type() == BookChangedEvent.Type.DELETED) {
+            remove(event.bookId());
+        } else {
+            put(document(event.bookId(), event.title(), event.author(), event.isbn(), event.publicationYear(),
+                    event.content()));
+        }
+    }
+
+    public void put(Document document) {
+        lock.writeLock().lock();
+        try {
+            if (changedDuringRebuild != null) {
+                changedDuringRebuild.add(document.id());
+            }
+            removeLocked(document.id());
+            addLocked(document);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Integer bookId) {
+        lock.writeLock().lock();
+        try {
+            if (changedDuringRebuild != null) {
+                changedDuringRebuild.add(bookId);
+            }
+            removeLocked(bookId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void beginRebuild() {
+        lock.writeLock().lock();
+        try {
+            changedDuringRebuild = new HashSet<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add documents loaded by a rebuild, skipping books that events changed in the meantime
+     */
+    void putFromRebuild(List<Document> batch) {
+        lock.writeLock().lock();
+        try {
+            for (Document document : batch) {
+                if (changedDuringRebuild == null || !changedDuringRebuild.contains(document.id())) {
+                    removeLocked(document.id());
+                    addLocked(document);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void endRebuild() {
+        lock.writeLock().lock();
+        try {
+            changedDuringRebuild = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ranked search; a book matches when it contains at least one query term
+     */
+    public Page<BookSearchHit> search(String query, Pageable pageable) {
+        Set<String> terms = queryTerms(query);
+
+        lock.readLock().lock();
+        try {
+            if (terms.isEmpty() || documents.isEmpty()) {
+                return new PageImpl<>(List.of(), pageable, 0);
+            }
+            int documentCount = documents.size();
+            double averageLength = totalLength / documentCount;
+            Map<Integer, Double> scores = new HashMap<>();
+            for (String term : terms) {
+                Map<Integer, Float> matches = postings.get(term);
+                if (matches == null) {
+                    continue;
+                }
+                double idf = Math.log(1 + (documentCount - matches.size() + 0.5) / (matches.size() + 0.5));
+                for (Map.Entry<Integer, Float> match : matches.entrySet()) {
+                    double tf = match.getValue();
+                    double norm = 1 - B + B * documents.get(match.getKey()).length() / averageLength;
+                    scores.merge(match.getKey(), idf * tf * (K1 + 1) / (tf + K1 * norm), Double::sum);
+                }
+            }
+
+            // Keep only the best offset + size entries instead of sorting every match
+            Comparator<Map.Entry<Integer, Double>> ranking = Map.Entry.<Integer, Double>comparingByValue()
+                    .thenComparing(Map.Entry.<Integer, Double>comparingByKey().reversed());
+            long wanted = pageable.getOffset() + pageable.getPageSize();
+            PriorityQueue<Map.Entry<Integer, Double>> top = new PriorityQueue<>(ranking);
+            for (Map.Entry<Integer, Double> entry : scores.entrySet()) {
+                if (top.size() < wanted) {
+                    top.add(entry);
+                } else if (ranking.compare(entry, top.peek()) > 0) {
+                    top.poll();
+                    top.add(entry);
+                }
+            }
+            List<BookSearchHit> page = top.stream()
+                    .sorted(ranking.reversed())
+                    .skip(pageable.getOffset())
+                    .map(entry -> {
+                        Document document = documents.get(entry.getKey());
+                        return new BookSearchHit(document.id(), document.title(), document.author(),
+                                document.isbn(), document.publicationYear(), entry.getValue().floatValue());
+                    })
+                    .toList();
+            return new PageImpl<>(page, pageable, scores.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ids of all books matching the query, in no particular order
+     */
+    public int[] matchingIds(String query) {
+        Set<String> terms = queryTerms(query);
+        lock.readLock().lock();
+        try {
+            Set<Integer> ids = new HashSet<>();
+            for (String term : terms) {
+                Map<Integer, Float> matches = postings.get(term);
+                if (matches != null) {
+                    ids.addAll(matches.keySet());
+                }
+            }
+            return ids.stream().mapToInt(Integer::intValue).toArray();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static Set<String> queryTerms(String query) {
+        Set<String> terms = new LinkedHashSet<>(TextAnalyzer.analyze(query));
+        String isbnKey = IsbnUtil.canonical(query);
+        if (isbnKey != null && isbnKey.length() == 13 && isbnKey.chars().allMatch(Character::isDigit)) {
+            terms.add(isbnKey);
+        }
+        return terms;
+    }
+
+    private void addLocked(Document document) {
+        documents.put(document.id(), document);
+        totalLength += document.length();
+        for (Map.Entry<String, Float> term : document.termFrequencies().entrySet()) {
+            postings.computeIfAbsent(term.getKey(), key -> new HashMap<>()).put(document.id(), term.getValue());
+        }
+    }
+
+    private void removeLocked(Integer bookId) {
+        Document previous = documents.remove(bookId);
+        if (previous == null) {
+            return;
+        }
+        totalLength -= previous.length();
+        for (String term : previous.termFrequencies().keySet()) {
+            Map<Integer, Float> matches = postings.get(term);
+            if (matches != null) {
+                matches.remove(bookId);
+                if (matches.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.library.search;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Builds the search index at startup. The id range is split into slices that are read
+ * (scalar columns, read-only transaction) and analyzed on a temporary pool in parallel.
+ */
+@Component
+public class BookSearchIndexLoader implements ApplicationRunner {
+    private static final Logger logger = LoggerFactory.getLogger(BookSearchIndexLoader.class);
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final BookSearchIndex index;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int threads;
+    private final int sliceSize;
+
+    public BookSearchIndexLoader(BookSearchIndex index, PlatformTransactionManager transactionManager,
+                                 @Value("${library.search.rebuild-threads:0}") int threads,
+                                 @Value("${library.search.rebuild-slice-size:2000}") int sliceSize) {
+        this.index = index;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.sliceSize = sliceSize;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        long started = System.currentTimeMillis();
+        Object[] range = readOnlyTransaction.execute(status -> entityManager
+                .createQuery("SELECT MIN(b.id), MAX(b.id) FROM Book b", Object[].class)
+                .getSingleResult());
+        if (range == null || range[0] == null) {
+            logger.info("Search: No books to index");
+            return;
+        }
+        int minId = (Integer) range[0];
+        int maxId = (Integer) range[1];
+
+        index.beginRebuild();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("search-index-"));
+        try {
+            List<Future<?>> slices = new ArrayList<>();
+            for (long from = minId; from <= maxId; from += sliceSize) {
+                int lo = (int) from;
+                int hi = (int) Math.min(from + sliceSize - 1, maxId);
+                slices.add(executor.submit(() -> index.putFromRebuild(loadSlice(lo, hi))));
+            }
+            for (Future<?> slice : slices) {
+                slice.get();
+            }
+        } finally {
+            executor.shutdownNow();
+            index.endRebuild();
+        }
+        logger.info("Search: Indexed {} books with {} threads in {} ms", index.size(), threads,
+                System.currentTimeMillis() - started);
+    }
+
+    private List<BookSearchIndex.Document> loadSlice(int fromId, int toId) {
+        List<Object[]> rows = readOnlyTransaction.execute(status -> entityManager
+                .createQuery("SELECT b.id, b.title, b.author, b.isbn, b.publicationYear, b.content FROM Book b "
+                        + "WHERE b.id BETWEEN :fromId AND :toId", Object[].class)
+                .setParameter("fromId", fromId)
+                .setParameter("toId", toId)
+                .getResultList());
+        List<BookSearchIndex.Document> documents = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            documents.add(BookSearchIndex.document((Integer) row[0], (String) row[1], (String) row[2],
+                    (String) row[3], (Integer) row[4], (String) row[5]));
+        }
+        return documents;
+    }
+}
@@ -0,0 +1,508 @@
+package com.example.library.search;
+
+import com.example.library.dto.Suggestion;
+import com.example.library.event.AuthorChangedEvent;
+import com.example.library.event.BookBorrowedEvent;
+import com.example.library.event.BookChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Typeahead index over book titles and author full names, weighted by popularity (loans of the
+ * book, or of all books by the author). Every word start of a name is a key in a path-compressed
+ * trie, so "tolk" completes to "John Tolkien". A node whose subtree holds more than k keys caches
+ * its k most popular entries; smaller subtrees are collected on lookup. A new or more popular entry
+ * is offered to the cached lists along its paths; only a node that listed a removed entry rebuilds
+ * its list, from the lists of its children.
+ */
+@Component
+public class SuggestIndex {
+    public static final String BOOK = "book";
+    public static final String AUTHOR = "author";
+
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    // Word starts indexed per name, later words of long titles are rarely typed first
+    private static final int MAX_WORD_STARTS = 8;
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final Comparator<Entry> BY_POPULARITY = Comparator.comparingLong((Entry entry) -> entry.popularity)
+            .reversed()
+            .thenComparingInt(entry -> entry.text.length())
+            .thenComparing(entry -> entry.text)
+            .thenComparing(entry -> entry.type)
+            .thenComparingInt(entry -> entry.id);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final int topK;
+    private final int maxKeyLength;
+    private Node root = new Node("");
+    private Set<String> changedDuringRebuild;
+
+    public SuggestIndex(@Value("${library.suggest.max-results:10}") int topK,
+                        @Value("${library.suggest.max-key-length:32}") int maxKeyLength) {
+        this.topK = topK;
+        this.maxKeyLength = maxKeyLength;
+    }
+
+    private static final class Entry {
+        private final String type;
+        private final int id;
+        private final String text;
+        private final List<String> keys;
+        private long popularity;
+
+        Entry(String type, int id, String text, List<String> keys, long popularity) {
+            this.type = type;
+            this.id = id;
+            this.text = text;
+            this.keys = keys;
+            this.popularity = popularity;
+        }
+    }
+
+    private static final class Node {
+        private String label;
+        // Sorted by the first character of their label
+        private Node[] children = NO_CHILDREN;
+        // Entries whose key ends at this node
+        private List<Entry> here;
+        // Keys in this subtree
+        private int count;
+        // Most popular entries of the subtree, only kept while count > k
+        private ArrayList<Entry> top;
+
+        Node(String label) {
+            this.label = label;
+        }
+
+        int indexOf(char first) {
+            int low = 0;
+            int high = children.length - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                char label = children[middle].label.charAt(0);
+                if (label < first) {
+                    low = middle + 1;
+                } else if (label > first) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -(low + 1);
+        }
+
+        void insertChild(int index, Node child) {
+            Node[] grown = new Node[children.length + 1];
+            System.arraycopy(children, 0, grown, 0, index);
+            grown[index] = child;
+            System.arraycopy(children, index, grown, index + 1, children.length - index);
+            children = grown;
+        }
+
+        void removeChild(Node child) {
+            int index = indexOf(child.label.charAt(0));
+            Node[] shrunk = new Node[children.length - 1];
+            System.arraycopy(children, 0, shrunk, 0, index);
+            System.arraycopy(children, index + 1, shrunk, index, children.length - index - 1);
+            children = shrunk;
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        if (event.type() == BookChangedEvent.Type.DELETED) {
+            remove(BOOK, event.bookId());
+        } else {
+            put(BOOK, event.bookId(), event.title());
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onAuthorChanged(AuthorChangedEvent event) {
+        if (event.type() == AuthorChangedEvent.Type.DELETED) {
+            remove(AUTHOR, event.authorId());
+        } else {
+            put(AUTHOR, event.authorId(), event.firstName() + " " + event.lastName());
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBookBorrowed(BookBorrowedEvent event) {
+        lock.writeLock().lock();
+        try {
+            addPopularityLocked(BOOK, event.bookId());
+            event.authorIds().forEach(authorId -> addPopularityLocked(AUTHOR, authorId));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Most popular books and authors with a word starting with the prefix, at most k of them
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        String needle = normalize(prefix);
+        if (needle.length() > maxKeyLength) {
+            needle = needle.substring(0, maxKeyLength);
+        }
+        if (needle.isEmpty()) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            Node node = find(needle);
+            if (node == null) {
+                return List.of();
+            }
+            return top(node).stream()
+                    .limit(limit)
+                    .map(entry -> new Suggestion(entry.type, entry.id, entry.text, entry.popularity))
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getMaxResults() {
+        return topK;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void beginRebuild() {
+        lock.writeLock().lock();
+        try {
+            root = new Node("");
+            entries.clear();
+            changedDuringRebuild = new HashSet<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add a name loaded by a rebuild, unless an event changed it in the meantime. Loans made during
+     * the rebuild may be missed in the popularity, it is a ranking hint and not a count to rely on.
+     */
+    void putFromRebuild(String type, int id, String text, long popularity) {
+        lock.writeLock().lock();
+        try {
+            if (!changedDuringRebuild.contains(entryKey(type, id))) {
+                putLocked(type, id, text, popularity);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void endRebuild() {
+        lock.writeLock().lock();
+        try {
+            // Cached lists are not maintained while loading, compute them once for the finished trie
+            rebuildTop(root);
+            changedDuringRebuild = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void put(String type, Integer id, String text) {
+        lock.writeLock().lock();
+        try {
+            markChangedLocked(type, id);
+            Entry previous = entries.get(entryKey(type, id));
+            if (previous != null && previous.text.equals(text)) {
+                return;
+            }
+            putLocked(type, id, text, previous != null ? previous.popularity : 0);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void remove(String type, Integer id) {
+        lock.writeLock().lock();
+        try {
+            markChangedLocked(type, id);
+            removeLocked(entries.remove(entryKey(type, id)));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void markChangedLocked(String type, Integer id) {
+        if (changedDuringRebuild != null) {
+            changedDuringRebuild.add(entryKey(type, id));
+        }
+    }
+
+    private void putLocked(String type, int id, String text, long popularity) {
+        if (text == null) {
+            return;
+        }
+        Entry entry = new Entry(type, id, text, keys(text), popularity);
+        removeLocked(entries.put(entryKey(type, id), entry));
+        for (String key : entry.keys) {
+            insert(key, entry);
+        }
+    }
+
+    private void removeLocked(Entry entry) {
+        if (entry == null) {
+            return;
+        }
+        for (String key : entry.keys) {
+            List<Node> path = path(key);
+            if (path == null) {
+                continue;
+            }
+            Node node = path.get(path.size() - 1);
+            if (node.here == null || !node.here.remove(entry)) {
+                continue;
+            }
+            if (node.here.isEmpty()) {
+                node.here = null;
+            }
+            path.forEach(onPath -> onPath.count--);
+            if (node.count == 0 && path.size() > 1) {
+                path.get(path.size() - 2).removeChild(node);
+                path.remove(path.size() - 1);
+            }
+            if (changedDuringRebuild == null) {
+                withdraw(path, entry);
+            }
+        }
+    }
+
+    private void addPopularityLocked(String type, Integer id) {
+        Entry entry = entries.get(entryKey(type, id));
+        if (entry == null) {
+            return;
+        }
+        entry.popularity++;
+        if (changedDuringRebuild != null) {
+            return;
+        }
+        for (String key : entry.keys) {
+            List<Node> path = path(key);
+            if (path != null) {
+                offer(path, entry);
+            }
+        }
+    }
+
+    private void insert(String key, Entry entry) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int i = 0;
+        while (i < key.length()) {
+            int index = node.indexOf(key.charAt(i));
+            if (index < 0) {
+                Node leaf = new Node(key.substring(i));
+                node.insertChild(-index - 1, leaf);
+                node = leaf;
+                path.add(node);
+                break;
+            }
+            Node child = node.children[index];
+            int common = commonPrefixLength(child.label, key, i);
+            if (common < child.label.length()) {
+                // The key leaves the edge part way, split it so the key can end or branch there
+                Node split = new Node(child.label.substring(0, common));
+                child.label = child.label.substring(common);
+                split.children = new Node[]{child};
+                split.count = child.count;
+                split.top = child.top != null ? new ArrayList<>(child.top) : null;
+                node.children[index] = split;
+                child = split;
+            }
+            node = child;
+            path.add(node);
+            i += common;
+        }
+        if (node.here == null) {
+            node.here = new ArrayList<>(1);
+        }
+        node.here.add(entry);
+        path.forEach(onPath -> onPath.count++);
+        if (changedDuringRebuild == null) {
+            offer(path, entry);
+        }
+    }
+
+    /**
+     * Nodes from the root to the node where the key ends, or null when the key is not in the trie
+     */
+    private List<Node> path(String key) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int i = 0;
+        while (i < key.length()) {
+            int index = node.indexOf(key.charAt(i));
+            if (index < 0 || !key.startsWith(node.children[index].label, i)) {
+                return null;
+            }
+            node = node.children[index];
+            path.add(node);
+            i += node.label.length();
+        }
+        return path;
+    }
+
+    /**
+     * Node at or just below the end of the prefix
+     */
+    private Node find(String prefix) {
+        Node node = root;
+        int i = 0;
+        while (i < prefix.length()) {
+            int index = node.indexOf(prefix.charAt(i));
+            if (index < 0) {
+                return null;
+            }
+            Node child = node.children[index];
+            int remaining = prefix.length() - i;
+            if (child.label.length() >= remaining) {
+                return child.label.regionMatches(0, prefix, i, remaining) ? child : null;
+            }
+            if (!prefix.startsWith(child.label, i)) {
+                return null;
+            }
+            node = child;
+            i += child.label.length();
+        }
+        return node;
+    }
+
+    /**
+     * Update the cached lists on a path after the entry was added or became more popular
+     */
+    private void offer(List<Node> path, Entry entry) {
+        for (Node node : path) {
+            if (node.count <= topK) {
+                node.top = null;
+            } else if (node.top == null) {
+                node.top = best(collect(node, new ArrayList<>()));
+            } else if (node.top.contains(entry)) {
+                node.top.sort(BY_POPULARITY);
+            } else if (node.top.size() < topK || BY_POPULARITY.compare(entry, node.top.get(node.top.size() - 1)) < 0) {
+                node.top.add(entry);
+                node.top.sort(BY_POPULARITY);
+                if (node.top.size() > topK) {
+                    node.top.remove(topK);
+                }
+            }
+        }
+    }
+
+    /**
+     * Update the cached lists on a path after one key of the entry was removed, bottom-up
+     */
+    private void withdraw(List<Node> path, Entry entry) {
+        for (int i = path.size() - 1; i >= 0; i--) {
+            Node node = path.get(i);
+            if (node.count <= topK) {
+                node.top = null;
+            } else if (node.top == null || node.top.contains(entry)) {
+                node.top = bestOfChildren(node);
+            }
+        }
+    }
+
+    private void rebuildTop(Node node) {
+        for (Node child : node.children) {
+            rebuildTop(child);
+        }
+        node.top = node.count > topK ? bestOfChildren(node) : null;
+    }
+
+    // The k best of a subtree are among the k best of each child subtree
+    private ArrayList<Entry> bestOfChildren(Node node) {
+        List<Entry> candidates = node.here != null ? new ArrayList<>(node.here) : new ArrayList<>();
+        for (Node child : node.children) {
+            candidates.addAll(top(child));
+        }
+        return best(candidates);
+    }
+
+    private List<Entry> top(Node node) {
+        if (node.top != null) {
+            return node.top;
+        }
+        return best(collect(node, new ArrayList<>()));
+    }
+
+    private List<Entry> collect(Node node, List<Entry> into) {
+        if (node.here != null) {
+            into.addAll(node.here);
+        }
+        for (Node child : node.children) {
+            collect(child, into);
+        }
+        return into;
+    }
+
+    // A name is listed under each of its word starts, so the same entry can come from several children
+    private ArrayList<Entry> best(List<Entry> candidates) {
+        return candidates.stream()
+                .distinct()
+                .sorted(BY_POPULARITY)
+                .limit(topK)
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    private List<String> keys(String text) {
+        String normalized = normalize(text);
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < normalized.length() && keys.size() < MAX_WORD_STARTS; i++) {
+            if (i == 0 || normalized.charAt(i - 1) == ' ') {
+                String key = normalized.substring(i, Math.min(normalized.length(), i + maxKeyLength));
+                if (!keys.contains(key)) {
+                    keys.add(key);
+                }
+            }
+        }
+        return keys;
+    }
+
+    private static String normalize(String text) {
+        return NON_WORD.matcher(TextAnalyzer.fold(text)).replaceAll(" ").trim();
+    }
+
+    private static int commonPrefixLength(String label, String key, int from) {
+        int length = 0;
+        while (length < label.length() && from + length < key.length()
+                && label.charAt(length) == key.charAt(from + length)) {
+            length++;
+        }
+        return length;
+    }
+
+    private static String entryKey(String type, int id) {
+        return type + ":" + id;
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.library.search;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Loads the suggestion index at startup by streaming book titles and author names together with
+ * their loan counts, one grouped query each.
+ */
+@Component
+public class SuggestIndexLoader implements ApplicationRunner {
+    private static final Logger logger = LoggerFactory.getLogger(SuggestIndexLoader.class);
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final SuggestIndex index;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int fetchSize;
+
+    public SuggestIndexLoader(SuggestIndex index, PlatformTransactionManager transactionManager,
+                              @Value("${library.search.fetch-size:500}") int fetchSize) {
+        this.index = index;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.fetchSize = fetchSize;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long started = System.currentTimeMillis();
+        index.beginRebuild();
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> {
+                load(SuggestIndex.BOOK, "SELECT b.id, b.title, COUNT(l.id) FROM Book b "
+                        + "LEFT JOIN Loan l ON l.book = b GROUP BY b.id, b.title");
+                load(SuggestIndex.AUTHOR, "SELECT a.id, CONCAT(a.firstName, ' ', a.lastName), COUNT(l.id) FROM Author a "
+                        + "LEFT JOIN a.books b LEFT JOIN Loan l ON l.book = b GROUP BY a.id, a.firstName, a.lastName");
+            });
+        } finally {
+            index.endRebuild();
+        }
+        logger.info("Search: Indexed {} suggestions in {} ms", index.size(), System.currentTimeMillis() - started);
+    }
+
+    private void load(String type, String query) {
+        Session session = entityManager.unwrap(Session.class);
+        try (ScrollableResults<Object[]> rows = session.createSelectionQuery(query, Object[].class)
+                .setFetchSize(fetchSize)
+                .setReadOnly(true)
+                .setCacheMode(CacheMode.IGNORE)
+                .scroll(ScrollMode.FORWARD_ONLY)) {
+            while (rows.next()) {
+                Object[] row = rows.get();
+                index.putFromRebuild(type, (Integer) row[0], (String) row[1], (Long) row[2]);
+            }
+        }
+    }
+}
@@ -34,16 +34,16 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         try {
             String token = extractTokenFromRequest(request);
 
-            if (token != null && jwtUtil.validateToken(token)) {
-                String userId = jwtUtil.getUserIdFromToken(token);
-                String role = jwtUtil.getRoleFromToken(token);
+            if (token != null) {
+                // Parsed once and cached by JwtUtil, repeated requests skip signature verification
+                jwtUtil.parseToken(token).ifPresent(principal -> {
+                    UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                            principal.userId(),
+                            null,
+                            Collections.singletonList(new SimpleGrantedAuthority(principal.role())));
 
-                UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
-                        userId,
-                        null,
-                        Collections.singletonList(new SimpleGrantedAuthority(role)));
-
-                SecurityContextHolder.getContext().setAuthentication(authentication);
+                    SecurityContextHolder.getContext().setAuthentication(authentication);
+                });
             }
         } catch (Exception e) {
             logger.error("Cannot set user authentication: {}", e);
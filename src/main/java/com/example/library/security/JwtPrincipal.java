@@ -0,0 +1,9 @@
+package com.example.library.security;
+
+import java.time.Instant;
+
+/**
+ * Immutable view of a verified JWT. Built once per token and reused for repeated requests.
+ */
+public record JwtPrincipal(String userId, String email, String role, Instant expiresAt) {
+}
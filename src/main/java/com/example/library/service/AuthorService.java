@@ -1,50 +1,91 @@
 package com.example.library.service;
 
+import com.example.library.dto.CursorPage;
+import com.example.library.event.AuthorChangedEvent;
 import com.example.library.exception.AuthorNotFoundException;
 import com.example.library.model.Author;
 import com.example.library.repository.AuthorRepository;
+import com.example.library.repository.KeysetPaginator;
+import com.example.library.search.AuthorNameIndex;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class AuthorService {
     private final AuthorRepository authorRepository;
+    private final KeysetPaginator keysetPaginator;
+    private final AuthorNameIndex nameIndex;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public AuthorService(AuthorRepository authorRepository) {
+    public AuthorService(AuthorRepository authorRepository, KeysetPaginator keysetPaginator,
+                         AuthorNameIndex nameIndex, ApplicationEventPublisher eventPublisher) {
         this.authorRepository = authorRepository;
+        this.keysetPaginator = keysetPaginator;
+        this.nameIndex = nameIndex;
+        this.eventPublisher = eventPublisher;
     }
 
     public Page<Author> getAllAuthors(Pageable pageable) {
         return authorRepository.findAll(pageable);
     }
 
+    public CursorPage<Author> getAuthorsAfter(String sortBy, Sort.Direction direction, String after, int size) {
+        KeysetPaginator.KeysetSlice slice = keysetPaginator.seek(Author.class, "id", sortBy, direction, after, size, null);
+        return keysetPaginator.load(slice, authorRepository::findAllById, Author::getId);
+    }
+
     public Optional<Author> getAuthorById(Integer id) {
         return authorRepository.findById(id);
     }
 
+    /**
+     * Case- and accent-insensitive substring match on first or last name, answered by the trigram
+     * index; only the page itself is read from the database
+     */
     public Page<Author> searchAuthorsByName(String name, Pageable pageable) {
-        return authorRepository.findByName(name, pageable);
+        if (!nameIndex.canServe(pageable.getSort())) {
+            return authorRepository.findByName(name, pageable);
+        }
+        AuthorNameIndex.Matches matches = nameIndex.search(name, pageable);
+        Map<Integer, Author> byId = authorRepository.findAllById(matches.pageIds()).stream()
+                .collect(Collectors.toMap(Author::getId, Function.identity()));
+        List<Author> content = matches.pageIds().stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .toList();
+        return new PageImpl<>(content, pageable, matches.total());
     }
 
     public Page<Author> getAuthorsByNationality(String nationality, Pageable pageable) {
-        return authorRepository.findByNationality(nationality, pageable);
+        return authorRepository.findByNationalityKey(Author.normalizeNationality(nationality), pageable);
     }
 
     @Transactional
     public Author createAuthor(Author author) {
         author.setId(null); // Ensure we're creating a new author
-        return authorRepository.save(author);
+        Author savedAuthor = authorRepository.save(author);
+        eventPublisher.publishEvent(AuthorChangedEvent.saved(savedAuthor));
+        return savedAuthor;
     }
 
     @Transactional
     public List<Author> createAuthors(List<Author> authors) {
         authors.forEach(author -> author.setId(null));
-        return authorRepository.saveAll(authors);
+        List<Author> savedAuthors = authorRepository.saveAll(authors);
+        savedAuthors.forEach(author -> eventPublisher.publishEvent(AuthorChangedEvent.saved(author)));
+        return savedAuthors;
     }
 
     @Transactional
@@ -57,13 +98,18 @@ public class AuthorService {
         author.setBiography(authorDetails.getBiography());
         author.setNationality(authorDetails.getNationality());
 
-        return authorRepository.save(author);
+        Author savedAuthor = authorRepository.save(author);
+        eventPublisher.publishEvent(AuthorChangedEvent.saved(savedAuthor));
+        return savedAuthor;
     }
 
     @Transactional
     public void deleteAuthor(Integer id) {
         Author author = authorRepository.findById(id)
                 .orElseThrow(() -> new AuthorNotFoundException(id));
+        // Unlink through the owning side so the book_author rows and the cached Book.authors collections go too
+        author.getBooks().forEach(book -> book.getAuthors().remove(author));
         authorRepository.delete(author);
+        eventPublisher.publishEvent(AuthorChangedEvent.deleted(id));
     }
 }
@@ -0,0 +1,338 @@
+package com.example.library.service;
+
+import com.example.library.dto.AvailabilityChange;
+import com.example.library.event.BookAvailabilityChangedEvent;
+import com.example.library.exception.ServiceOverloadedException;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pushes book availability changes to Server-Sent Event subscribers. Publishing never writes to a
+ * connection: a change is put into the pending buffer of each interested subscriber and the
+ * subscriber is queued for a small sender pool. A subscriber holds no thread while idle, only its
+ * emitter and an empty buffer.
+ *
+ * The buffer keeps the latest state per book, so repeated changes of a book coalesce into one
+ * event. When a slow subscriber has more distinct books pending than the buffer holds, the buffer
+ * is dropped and a "resync" event tells the client to re-read availability.
+ *
+ * A write to a stalled connection blocks its sender until the container's write timeout. A write
+ * that takes longer than send-timeout-ms drops its subscriber, and the pool gets a sender in place
+ * of the blocked one until the write returns, so stalled clients cannot hold up the others.
+ */
+@Service
+public class AvailabilityStreamService {
+    private static final Logger logger = LoggerFactory.getLogger(AvailabilityStreamService.class);
+    // Values of Subscriber.writingSince other than the start time of a write
+    private static final long NOT_WRITING = Long.MIN_VALUE;
+    private static final long STALLED = Long.MIN_VALUE + 1;
+
+    // Unfiltered subscribers, and filtered ones by each book they follow
+    private final Set<Subscriber> everyBook = ConcurrentHashMap.newKeySet();
+    private final Map<Integer, Set<Subscriber>> byBook = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    // Subscribers with a write in progress, checked against the send timeout
+    private final Set<Subscriber> writing = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor senders;
+    private final long timeoutMs;
+    private final int maxSubscribers;
+    private final int bufferSize;
+    private final int maxBookIds;
+    private final int senderThreads;
+    private final long sendTimeoutNanos;
+    private final int maxStalledSenders;
+    // Senders blocked in a stalled write that the pool has replaced, guarded by this
+    private int replacedSenders;
+
+    public AvailabilityStreamService(@Value("${library.availability-stream.timeout-ms:1800000}") long timeoutMs,
+                                     @Value("${library.availability-stream.max-subscribers:10000}") int maxSubscribers,
+                                     @Value("${library.availability-stream.buffer-size:256}") int bufferSize,
+                                     @Value("${library.availability-stream.max-book-ids:100}") int maxBookIds,
+                                     @Value("${library.availability-stream.sender-threads:2}") int senderThreads,
+                                     @Value("${library.availability-stream.send-timeout-ms:5000}") long sendTimeoutMs,
+                                     @Value("${library.availability-stream.max-stalled-senders:32}") int maxStalledSenders) {
+        this.timeoutMs = timeoutMs;
+        this.maxSubscribers = maxSubscribers;
+        this.bufferSize = bufferSize;
+        this.maxBookIds = maxBookIds;
+        this.senderThreads = senderThreads;
+        this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+        this.maxStalledSenders = maxStalledSenders;
+        // Each subscriber is queued at most once at a time, so the queue never outgrows the subscribers
+        this.senders = new ThreadPoolExecutor(senderThreads, senderThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new CustomizableThreadFactory("availability-sse-"));
+    }
+
+    /**
+     * Open a stream of changes of the given books, or of all books when bookIds is empty
+     */
+    public SseEmitter subscribe(Set<Integer> bookIds) {
+        if (bookIds.size() > maxBookIds) {
+            throw new IllegalArgumentException("At most " + maxBookIds + " book ids can be followed per stream");
+        }
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            throw new ServiceOverloadedException("Too many availability subscribers, please retry later", 30);
+        }
+        // EventSource clients reconnect by themselves when the stream times out
+        SseEmitter emitter = createEmitter(timeoutMs);
+        Subscriber subscriber = new Subscriber(emitter, Set.copyOf(bookIds));
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(error -> subscriber.close());
+        if (subscriber.bookIds.isEmpty()) {
+            everyBook.add(subscriber);
+        } else {
+            // Added inside compute, so a concurrent close of the last subscriber cannot drop the new set
+            subscriber.bookIds.forEach(bookId -> byBook.compute(bookId, (key, subscribers) -> {
+                Set<Subscriber> following = subscribers != null ? subscribers : ConcurrentHashMap.newKeySet();
+                following.add(subscriber);
+                return following;
+            }));
+        }
+        logger.debug("Service: Availability subscriber added for {} books (subscribers: {})",
+                subscriber.bookIds.isEmpty() ? "all" : subscriber.bookIds.size(), subscriberCount.get());
+        return emitter;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onAvailabilityChanged(BookAvailabilityChangedEvent event) {
+        AvailabilityChange change = new AvailabilityChange(event.bookId(), event.available());
+        everyBook.forEach(subscriber -> subscriber.offer(change));
+        Set<Subscriber> following = byBook.get(event.bookId());
+        if (following != null) {
+            following.forEach(subscriber -> subscriber.offer(change));
+        }
+    }
+
+    // Comment lines keep proxies from closing idle streams and reveal clients that went away
+    @Scheduled(fixedDelayString = "${library.availability-stream.heartbeat-ms:30000}")
+    public void sendHeartbeats() {
+        everyBook.forEach(Subscriber::heartbeat);
+        byBook.values().forEach(subscribers -> subscribers.forEach(Subscriber::heartbeat));
+    }
+
+    /**
+     * Drops subscribers whose write has taken longer than the send timeout and replaces the senders
+     * blocked in those writes. Never touches the emitters, which the blocked writes keep locked.
+     */
+    @Scheduled(fixedDelayString = "${library.availability-stream.send-check-ms:1000}")
+    public void dropStalledSubscribers() {
+        long now = System.nanoTime();
+        for (Subscriber subscriber : writing) {
+            long since = subscriber.writingSince.get();
+            if (since != NOT_WRITING && since != STALLED && now - since > sendTimeoutNanos) {
+                subscriber.markStalled(since);
+            }
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    // Overridden by tests to stand in for a slow or failing connection
+    SseEmitter createEmitter(long timeoutMs) {
+        return new SseEmitter(timeoutMs);
+    }
+
+    private synchronized boolean replaceSender() {
+        if (replacedSenders >= maxStalledSenders) {
+            return false;
+        }
+        replacedSenders++;
+        // Raising the core size starts a thread for the subscribers queued behind the blocked one
+        senders.setMaximumPoolSize(senderThreads + replacedSenders);
+        senders.setCorePoolSize(senderThreads + replacedSenders);
+        return true;
+    }
+
+    private synchronized void restoreSender() {
+        replacedSenders--;
+        senders.setCorePoolSize(senderThreads + replacedSenders);
+        senders.setMaximumPoolSize(senderThreads + replacedSenders);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        senders.shutdownNow();
+        List<Subscriber> open = new ArrayList<>(everyBook);
+        byBook.values().forEach(open::addAll);
+        open.forEach(subscriber -> subscriber.emitter.complete());
+    }
+
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final Set<Integer> bookIds;
+        private final AtomicBoolean queued = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        // Start of the write in progress, NOT_WRITING, or STALLED once the write ran out of time
+        private final AtomicLong writingSince = new AtomicLong(NOT_WRITING);
+        // Guarded by the service
+        private boolean replaced;
+        // Latest availability per book not yet sent, guarded by this
+        private Map<Integer, Boolean> pending;
+        private boolean overflowed;
+        private boolean heartbeatDue;
+
+        Subscriber(SseEmitter emitter, Set<Integer> bookIds) {
+            this.emitter = emitter;
+            this.bookIds = bookIds;
+        }
+
+        void offer(AvailabilityChange change) {
+            synchronized (this) {
+                if (pending == null) {
+                    pending = new LinkedHashMap<>();
+                }
+                if (!pending.containsKey(change.getBookId()) && pending.size() >= bufferSize) {
+                    pending.clear();
+                    overflowed = true;
+                } else {
+                    pending.put(change.getBookId(), change.isAvailable());
+                }
+            }
+            schedule();
+        }
+
+        void heartbeat() {
+            synchronized (this) {
+                heartbeatDue = true;
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (!closed.get() && queued.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this::send);
+                } catch (RejectedExecutionException e) {
+                    queued.set(false);
+                }
+            }
+        }
+
+        // Runs on a sender thread; writes until nothing is pending
+        private void send() {
+            try {
+                while (true) {
+                    Map<Integer, Boolean> changes;
+                    boolean resync;
+                    boolean ping;
+                    synchronized (this) {
+                        boolean idle = (pending == null || pending.isEmpty()) && !overflowed && !heartbeatDue;
+                        if (idle || closed.get()) {
+                            // Released inside the lock, so an offer either sees the flag cleared or its change is sent
+                            pending = null;
+                            queued.set(false);
+                            return;
+                        }
+                        changes = pending;
+                        pending = null;
+                        resync = overflowed;
+                        ping = heartbeatDue;
+                        overflowed = false;
+                        heartbeatDue = false;
+                    }
+                    if (resync) {
+                        write(SseEmitter.event().name("resync").data("Changes were dropped, re-read availability"));
+                    }
+                    if (changes != null) {
+                        for (Map.Entry<Integer, Boolean> change : changes.entrySet()) {
+                            write(SseEmitter.event()
+                                    .name("availability")
+                                    .data(new AvailabilityChange(change.getKey(), change.getValue()),
+                                            MediaType.APPLICATION_JSON));
+                        }
+                    }
+                    if (ping) {
+                        write(SseEmitter.event().comment("keep-alive"));
+                    }
+                }
+            } catch (IOException | IllegalStateException e) {
+                logger.debug("Service: Availability subscriber gone: {}", e.getMessage());
+                close();
+                queued.set(false);
+                emitter.completeWithError(e);
+            }
+        }
+
+        private void write(SseEmitter.SseEventBuilder event) throws IOException {
+            long since = System.nanoTime();
+            writingSince.set(since);
+            writing.add(this);
+            boolean stalled;
+            try {
+                emitter.send(event);
+            } finally {
+                writing.remove(this);
+                // Either the write ends in time or the check marks it stalled, never both
+                stalled = !writingSince.compareAndSet(since, NOT_WRITING);
+                if (stalled) {
+                    synchronized (AvailabilityStreamService.this) {
+                        if (replaced) {
+                            restoreSender();
+                        }
+                    }
+                }
+            }
+            if (stalled) {
+                throw new IOException("Write took longer than the send timeout");
+            }
+        }
+
+        private void markStalled(long since) {
+            synchronized (AvailabilityStreamService.this) {
+                if (!writingSince.compareAndSet(since, STALLED)) {
+                    return;
+                }
+                replaced = replaceSender();
+            }
+            logger.warn("Service: Availability subscriber dropped, a write blocked for over {} ms",
+                    TimeUnit.NANOSECONDS.toMillis(sendTimeoutNanos));
+            // No further changes are buffered for it, the blocked write ends on the container's write timeout
+            close();
+        }
+
+        void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            if (bookIds.isEmpty()) {
+                everyBook.remove(this);
+            } else {
+                for (Integer bookId : bookIds) {
+                    byBook.computeIfPresent(bookId, (key, subscribers) -> {
+                        subscribers.remove(this);
+                        return subscribers.isEmpty() ? null : subscribers;
+                    });
+                }
+            }
+            subscriberCount.decrementAndGet();
+        }
+    }
+}
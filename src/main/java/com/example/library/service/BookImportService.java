@@ -0,0 +1,350 @@
+package com.example.library.service;
+
+import com.example.library.dto.ImportJobStatus;
+import com.example.library.dto.ImportRowError;
+import com.example.library.exception.ServiceOverloadedException;
+import com.example.library.model.Book;
+import com.example.library.util.CsvFormatException;
+import com.example.library.util.CsvReader;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Asynchronous catalog import. The upload is spooled to a temporary file, then a worker
+ * parses it record by record and commits books in fixed-size chunks, each chunk in its own
+ * transaction. Memory use depends on the chunk size only, not on the size of the file.
+ */
+@Service
+public class BookImportService {
+    private static final Logger logger = LoggerFactory.getLogger(BookImportService.class);
+
+    public enum Mode {
+        CREATE, UPSERT;
+
+        public static Mode from(String value) {
+            try {
+                return Mode.valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported import mode: " + value + " (use create or upsert)");
+            }
+        }
+    }
+
+    public enum Format {
+        NDJSON, CSV;
+
+        public static Format fromContentType(String contentType) {
+            if (contentType != null && contentType.toLowerCase(Locale.ROOT).contains("csv")) {
+                return CSV;
+            }
+            return NDJSON;
+        }
+    }
+
+    private final BookService bookService;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+    private final int chunkSize;
+    private final int maxErrors;
+    private final int maxRetainedJobs;
+    private final int maxRecordLength;
+
+    public BookImportService(BookService bookService, ObjectMapper objectMapper, Validator validator,
+                             @Value("${library.import.chunk-size:500}") int chunkSize,
+                             @Value("${library.import.threads:2}") int threads,
+                             @Value("${library.import.queue-capacity:10}") int queueCapacity,
+                             @Value("${library.import.max-errors:1000}") int maxErrors,
+                             @Value("${library.import.max-retained-jobs:100}") int maxRetainedJobs,
+                             @Value("${library.import.max-record-length:100000}") int maxRecordLength) {
+        this.bookService = bookService;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.chunkSize = chunkSize;
+        this.maxErrors = maxErrors;
+        this.maxRetainedJobs = maxRetainedJobs;
+        this.maxRecordLength = maxRecordLength;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("book-import-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Spool the upload to disk and queue an import job for it
+     */
+    public ImportJobStatus submit(InputStream body, Format format, Mode mode) throws IOException {
+        Path file = Files.createTempFile("book-import-", "." + format.name().toLowerCase(Locale.ROOT));
+        try {
+            long bytes = Files.copy(body, file, StandardCopyOption.REPLACE_EXISTING);
+            ImportJob job = new ImportJob(UUID.randomUUID().toString(), format, mode);
+            logger.info("Service: Import job {} received {} bytes of {} ({})", job.id, bytes, format, mode);
+
+            pruneFinishedJobs();
+            jobs.put(job.id, job);
+            try {
+                executor.execute(() -> run(job, file));
+            } catch (RejectedExecutionException e) {
+                jobs.remove(job.id);
+                throw new ServiceOverloadedException("Too many import jobs in progress, please retry later", 30);
+            }
+            return job.snapshot();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    /**
+     * Current progress of an import job
+     */
+    public Optional<ImportJobStatus> getJob(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId)).map(ImportJob::snapshot);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run(ImportJob job, Path file) {
+        job.state = "RUNNING";
+        job.startedAt = LocalDateTime.now();
+        logger.info("Service: Import job {} started", job.id);
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            if (job.format == Format.CSV) {
+                importCsv(job, reader);
+            } else {
+                importNdjson(job, reader);
+            }
+            job.state = "COMPLETED";
+        } catch (Exception e) {
+            logger.error("Service: Import job {} failed", job.id, e);
+            job.addError(job.rowsRead.get(), "Import aborted: " + e.getMessage());
+            job.state = "FAILED";
+        } finally {
+            job.finishedAt = LocalDateTime.now();
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.warn("Service: Could not delete import file {}", file, e);
+            }
+            logger.info("Service: Import job {} {} - read: {}, imported: {}, failed: {}", job.id, job.state,
+                    job.rowsRead.get(), job.rowsImported.get(), job.rowsFailed.get());
+        }
+    }
+
+    private void importNdjson(ImportJob job, BufferedReader reader) throws IOException {
+        List<Book> chunk = new ArrayList<>(chunkSize);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            long row = job.rowsRead.incrementAndGet();
+            try {
+                accept(job, chunk, row, objectMapper.readValue(line, Book.class));
+            } catch (JsonProcessingException e) {
+                job.reject(row, "Invalid JSON: " + e.getOriginalMessage());
+            }
+        }
+        commit(job, chunk);
+    }
+
+    private void importCsv(ImportJob job, BufferedReader reader) throws IOException {
+        CsvReader csv = new CsvReader(reader, maxRecordLength);
+        List<String> header = csv.readRecord();
+        if (header == null) {
+            return;
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).trim().replace("_", "").toLowerCase(Locale.ROOT), i);
+        }
+
+        List<Book> chunk = new ArrayList<>(chunkSize);
+        List<String> record;
+        while ((record = readCsvRecord(job, csv, chunk)) != null) {
+            if (record.size() == 1 && record.get(0).isBlank()) {
+                continue;
+            }
+            long row = job.rowsRead.incrementAndGet();
+            try {
+                Book book = new Book();
+                book.setTitle(column(record, columns, "title"));
+                book.setAuthor(column(record, columns, "author"));
+                book.setIsbn(column(record, columns, "isbn"));
+                book.setContent(column(record, columns, "content"));
+                String year = column(record, columns, "publicationyear");
+                if (year != null) {
+                    book.setPublicationYear(Integer.parseInt(year.trim()));
+                }
+                accept(job, chunk, row, book);
+            } catch (NumberFormatException e) {
+                job.reject(row, "Invalid publication year");
+            }
+        }
+        commit(job, chunk);
+    }
+
+    /**
+     * Past a malformed record the reader cannot find the start of the next one, so the rows read
+     * so far are committed, the record is reported as a failed row and the job is aborted
+     */
+    private List<String> readCsvRecord(ImportJob job, CsvReader csv, List<Book> chunk) throws IOException {
+        try {
+            return csv.readRecord();
+        } catch (CsvFormatException e) {
+            commit(job, chunk);
+            long row = job.rowsRead.incrementAndGet();
+            job.reject(row, e.getMessage());
+            throw new IOException("Malformed CSV at row " + row + ", the rest of the file was not read", e);
+        }
+    }
+
+    private String column(List<String> record, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= record.size()) {
+            return null;
+        }
+        String value = record.get(index);
+        return value.isEmpty() ? null : value;
+    }
+
+    private void accept(ImportJob job, List<Book> chunk, long row, Book book) {
+        Set<ConstraintViolation<Book>> violations = validator.validate(book);
+        if (!violations.isEmpty()) {
+            job.reject(row, violations.stream()
+                    .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", ")));
+            return;
+        }
+        book.setId(null);
+        chunk.add(book);
+        job.chunkRows.add(row);
+        if (chunk.size() >= chunkSize) {
+            commit(job, chunk);
+        }
+    }
+
+    /**
+     * Commit one chunk in a single transaction. If it fails, the rows are retried one by one
+     * so a single bad row does not reject the whole chunk. In upsert mode rows with a known
+     * ISBN update the existing book instead of failing on the unique ISBN key.
+     */
+    private void commit(ImportJob job, List<Book> chunk) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        try {
+            if (job.mode == Mode.UPSERT) {
+                bookService.upsertByIsbn(chunk);
+            } else {
+                bookService.createMultipleBooks(chunk);
+            }
+            job.rowsImported.addAndGet(chunk.size());
+        } catch (RuntimeException e) {
+            logger.warn("Service: Import job {} chunk failed, retrying row by row: {}", job.id, e.getMessage());
+            for (int i = 0; i < chunk.size(); i++) {
+                Book book = chunk.get(i);
+                book.setId(null);
+                try {
+                    if (job.mode == Mode.UPSERT) {
+                        bookService.upsertByIsbn(List.of(book));
+                    } else {
+                        bookService.createBook(book);
+                    }
+                    job.rowsImported.incrementAndGet();
+                } catch (RuntimeException rowError) {
+                    job.reject(job.chunkRows.get(i), "Could not be saved: " + rowError.getMessage());
+                }
+            }
+        }
+        chunk.clear();
+        job.chunkRows.clear();
+    }
+
+    private void pruneFinishedJobs() {
+        if (jobs.size() < maxRetainedJobs) {
+            return;
+        }
+        jobs.values().stream()
+                .filter(job -> job.finishedAt != null)
+                .sorted(Comparator.comparing(job -> job.finishedAt))
+                .limit(jobs.size() - maxRetainedJobs + 1L)
+                .forEach(job -> jobs.remove(job.id));
+    }
+
+    private class ImportJob {
+        private final String id;
+        private final Format format;
+        private final Mode mode;
+        private final LocalDateTime submittedAt = LocalDateTime.now();
+        private final AtomicLong rowsRead = new AtomicLong();
+        private final AtomicLong rowsImported = new AtomicLong();
+        private final AtomicLong rowsFailed = new AtomicLong();
+        private final List<ImportRowError> errors = new ArrayList<>();
+        // Source row numbers of the books in the pending chunk, only touched by the worker thread
+        private final List<Long> chunkRows = new ArrayList<>();
+        private volatile String state = "QUEUED";
+        private volatile LocalDateTime startedAt;
+        private volatile LocalDateTime finishedAt;
+
+        ImportJob(String id, Format format, Mode mode) {
+            this.id = id;
+            this.format = format;
+            this.mode = mode;
+        }
+
+        void reject(long row, String message) {
+            rowsFailed.incrementAndGet();
+            addError(row, message);
+        }
+
+        synchronized void addError(long row, String message) {
+            if (errors.size() < maxErrors) {
+                errors.add(new ImportRowError(row, message));
+            }
+        }
+
+        synchronized ImportJobStatus snapshot() {
+            return new ImportJobStatus(id, format.name(), mode.name(), state, rowsRead.get(), rowsImported.get(),
+                    rowsFailed.get(), new ArrayList<>(errors), submittedAt, startedAt, finishedAt);
+        }
+    }
+}
@@ -1,45 +1,142 @@
 package com.example.library.service;
 
+import com.example.library.dto.BookFacets;
+import com.example.library.dto.BookFilter;
+import com.example.library.dto.BookResponse;
+import com.example.library.dto.BookSearchHit;
+import com.example.library.dto.BookSummary;
+import com.example.library.dto.BookUpsertResult;
+import com.example.library.dto.CursorPage;
+import com.example.library.event.BookChangedEvent;
 import com.example.library.model.Author;
 import com.example.library.model.Book;
 import com.example.library.repository.BookRepository;
+import com.example.library.repository.BookSpecifications;
+import com.example.library.repository.KeysetPaginator;
+import com.example.library.search.BookFacetIndex;
+import com.example.library.search.BookSearchIndex;
+import com.example.library.util.ExpiringLruCache;
+import com.example.library.util.IsbnUtil;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.roaringbitmap.RoaringBitmap;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class BookService {
     private static final Logger logger = LoggerFactory.getLogger(BookService.class);
     private final BookRepository bookRepository;
+    private final KeysetPaginator keysetPaginator;
+    // Hot ISBN lookups: canonical ISBN -> book id, the book itself comes from the second-level cache
+    private final ExpiringLruCache<String, Integer> isbnCache;
+    private final BookSearchIndex searchIndex;
+    private final BookFacetIndex facetIndex;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public BookService(BookRepository bookRepository) {
+    public BookService(BookRepository bookRepository, KeysetPaginator keysetPaginator,
+                       BookSearchIndex searchIndex, BookFacetIndex facetIndex, ApplicationEventPublisher eventPublisher,
+                       @Value("${library.books.isbn-cache.max-size:10000}") int isbnCacheSize,
+                       @Value("${library.books.isbn-cache.ttl-ms:600000}") long isbnCacheTtlMillis) {
         this.bookRepository = bookRepository;
+        this.keysetPaginator = keysetPaginator;
+        this.searchIndex = searchIndex;
+        this.facetIndex = facetIndex;
+        this.eventPublisher = eventPublisher;
+        this.isbnCache = new ExpiringLruCache<>(isbnCacheSize, isbnCacheTtlMillis);
     }
 
     /**
-     * Get all books from the database with pagination
+     * Get the books matching the filter with pagination. Authors are batch-loaded for the whole page
+     * (@BatchSize on Book.authors) while the transaction is still open.
      */
-    public Page<Book> getAllBooks(Pageable pageable) {
-        logger.debug("Service: Fetching books with pagination - page: {}, size: {}",
-                pageable.getPageNumber(), pageable.getPageSize());
-        Page<Book> books = bookRepository.findAll(pageable);
+    @Transactional(readOnly = true)
+    public Page<BookResponse> getAllBooks(BookFilter filter, Pageable pageable) {
+        logger.debug("Service: Fetching books with pagination - filter: {}, page: {}, size: {}",
+                filter, pageable.getPageNumber(), pageable.getPageSize());
+        Page<BookResponse> books = bookRepository.findAll(BookSpecifications.matching(filter), pageable)
+                .map(BookResponse::from);
         logger.debug("Service: Retrieved {} books out of {} total",
                 books.getNumberOfElements(), books.getTotalElements());
         return books;
     }
 
+    /**
+     * Get the books matching the filter with keyset pagination, starting after the given cursor
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<BookResponse> getBooksAfter(BookFilter filter, String sortBy, Sort.Direction direction,
+                                                  String after, int size) {
+        logger.debug("Service: Fetching books with cursor - filter: {}, sortBy: {}, direction: {}, size: {}",
+                filter, sortBy, direction, size);
+        KeysetPaginator.KeysetSlice slice = keysetPaginator.seek(Book.class, "id", sortBy, direction, after, size,
+                BookSpecifications.matching(filter));
+        CursorPage<BookResponse> books = keysetPaginator.load(slice,
+                ids -> bookRepository.findAllById(ids).stream().map(BookResponse::from).toList(), BookResponse::getId);
+        logger.debug("Service: Retrieved {} books, hasNext: {}", books.getNumberOfElements(), books.isHasNext());
+        return books;
+    }
+
+    /**
+     * Get a page of summaries (no content column, author names only) of the books matching the filter
+     */
+    public Page<BookSummary> getBookSummaries(BookFilter filter, Pageable pageable) {
+        logger.debug("Service: Fetching book summaries - filter: {}, page: {}, size: {}",
+                filter, pageable.getPageNumber(), pageable.getPageSize());
+        Page<BookSummary> books = bookRepository.findSummaries(BookSpecifications.matching(filter), pageable);
+        attachAuthorNames(books.getContent());
+        logger.debug("Service: Retrieved {} book summaries out of {} total",
+                books.getNumberOfElements(), books.getTotalElements());
+        return books;
+    }
+
+    /**
+     * Get summaries of the books matching the filter with keyset pagination, starting after the given cursor
+     */
+    public CursorPage<BookSummary> getBookSummariesAfter(BookFilter filter, String sortBy, Sort.Direction direction,
+                                                         String after, int size) {
+        logger.debug("Service: Fetching book summaries with cursor - filter: {}, sortBy: {}, direction: {}, size: {}",
+                filter, sortBy, direction, size);
+        KeysetPaginator.KeysetSlice slice = keysetPaginator.seek(Book.class, "id", sortBy, direction, after, size,
+                BookSpecifications.matching(filter));
+        CursorPage<BookSummary> books = keysetPaginator.load(slice, bookRepository::findSummariesByIdIn, BookSummary::getId);
+        attachAuthorNames(books.getContent());
+        logger.debug("Service: Retrieved {} book summaries, hasNext: {}", books.getNumberOfElements(), books.isHasNext());
+        return books;
+    }
+
+    private void attachAuthorNames(List<BookSummary> books) {
+        if (books.isEmpty()) {
+            return;
+        }
+        Map<Integer, BookSummary> byId = books.stream()
+                .collect(Collectors.toMap(BookSummary::getId, Function.identity()));
+        for (Object[] row : bookRepository.findAuthorNamesByBookIds(byId.keySet())) {
+            byId.get((Integer) row[0]).getAuthorNames().add((String) row[1]);
+        }
+    }
+
     /**
      * Get a single book by ID
      */
-    public Optional<Book> getBookById(Integer id) {
+    @Transactional(readOnly = true)
+    public Optional<BookResponse> getBookById(Integer id) {
         logger.debug("Service: Fetching book with id: {}", id);
-        Optional<Book> book = bookRepository.findById(id);
+        Optional<BookResponse> book = bookRepository.findById(id).map(BookResponse::from);
         if (book.isPresent()) {
             logger.debug("Service: Found book: {}", book.get().getTitle());
         } else {
@@ -48,6 +145,97 @@ public class BookService {
         return book;
     }
 
+    /**
+     * Get a book by ISBN-10 or ISBN-13, with or without hyphens
+     */
+    @Transactional(readOnly = true)
+    public Optional<BookResponse> getBookByIsbn(String isbn) {
+        String key = IsbnUtil.canonical(isbn);
+        logger.debug("Service: Fetching book with ISBN: {} (key: {})", isbn, key);
+        if (key == null) {
+            return Optional.empty();
+        }
+        Integer cachedId = isbnCache.get(key);
+        if (cachedId != null) {
+            Optional<Book> cached = bookRepository.findById(cachedId);
+            if (cached.isPresent() && key.equals(cached.get().getIsbnKey())) {
+                return cached.map(BookResponse::from);
+            }
+            // Deleted or re-keyed since it was cached
+            isbnCache.invalidate(key);
+        }
+        Optional<Book> book = bookRepository.findByIsbnKey(key);
+        book.ifPresent(found -> isbnCache.put(key, found.getId()));
+        return book.map(BookResponse::from);
+    }
+
+    /**
+     * Full-text search over title, author, ISBN and content, served from the in-memory index
+     */
+    public Page<BookSearchHit> searchBooks(String query, Pageable pageable) {
+        logger.debug("Service: Searching books - query: {}, page: {}, size: {}",
+                query, pageable.getPageNumber(), pageable.getPageSize());
+        Page<BookSearchHit> hits = searchIndex.search(query, pageable);
+        logger.debug("Service: Search matched {} books", hits.getTotalElements());
+        return hits;
+    }
+
+    /**
+     * Facet counts (availability, decade, author nationality) of the books matching the filter
+     */
+    public BookFacets getFacets(BookFilter filter) {
+        return facetIndex.count(filter, null);
+    }
+
+    /**
+     * Facet counts of all books matching a full-text search
+     */
+    public BookFacets getSearchFacets(String query) {
+        return facetIndex.count(new BookFilter(), RoaringBitmap.bitmapOf(searchIndex.matchingIds(query)));
+    }
+
+    /**
+     * Insert or update books matched by canonical ISBN. Existing rows are fetched with one IN query
+     * and updated in place (availability and authors are kept), new ones are inserted; both are
+     * written in JDBC batches when the transaction commits.
+     */
+    @Transactional
+    public BookUpsertResult upsertByIsbn(List<Book> books) {
+        logger.info("Service: Upserting {} books by ISBN", books.size());
+        Map<String, Book> incoming = new LinkedHashMap<>();
+        for (Book book : books) {
+            String key = IsbnUtil.canonical(book.getIsbn());
+            if (key == null || incoming.put(key, book) != null) {
+                throw new IllegalArgumentException("Missing or duplicate ISBN in upsert: " + book.getIsbn());
+            }
+        }
+
+        Map<String, Book> existing = bookRepository.findByIsbnKeyIn(incoming.keySet()).stream()
+                .collect(Collectors.toMap(Book::getIsbnKey, Function.identity()));
+        List<Book> created = new ArrayList<>();
+        for (Map.Entry<String, Book> entry : incoming.entrySet()) {
+            Book source = entry.getValue();
+            Book book = existing.get(entry.getKey());
+            if (book == null) {
+                source.setId(null);
+                source.setAvailable(true);
+                created.add(source);
+            } else {
+                book.setTitle(source.getTitle());
+                book.setAuthor(source.getAuthor());
+                book.setContent(source.getContent());
+                book.setPublicationYear(source.getPublicationYear());
+                book.setIsbn(source.getIsbn());
+                eventPublisher.publishEvent(BookChangedEvent.saved(book));
+            }
+        }
+        bookRepository.saveAll(created);
+        created.forEach(book -> eventPublisher.publishEvent(BookChangedEvent.saved(book)));
+        BookUpsertResult result = new BookUpsertResult(created.size(), existing.size());
+        logger.info("Service: Upsert finished - created: {}, updated: {}", result.getCreated(), result.getUpdated());
+        return result;
+    }
+
     /**
      * Save a new book to the database
      */
@@ -55,6 +243,7 @@ public class BookService {
         logger.info("Service: Creating new book - Title: {}, Author: {}", book.getTitle(), book.getAuthor());
         book.setAvailable(true);
         Book savedBook = bookRepository.save(book);
+        eventPublisher.publishEvent(BookChangedEvent.saved(savedBook));
         logger.info("Service: Book created successfully with ID: {}", savedBook.getId());
         return savedBook;
     }
@@ -66,6 +255,7 @@ public class BookService {
         logger.info("Service: Creating {} books in bulk", books.size());
         books.forEach(book -> book.setAvailable(true));
         List<Book> savedBooks = bookRepository.saveAll(books);
+        savedBooks.forEach(book -> eventPublisher.publishEvent(BookChangedEvent.saved(book)));
         logger.info("Service: {} books created successfully", savedBooks.size());
         return savedBooks;
     }
@@ -73,7 +263,8 @@ public class BookService {
     /**
      * Update an existing book in the database
      */
-    public Book updateBook(Integer id, Book updatedBook) {
+    @Transactional
+    public BookResponse updateBook(Integer id, Book updatedBook) {
         logger.info("Service: Updating book with id: {}", id);
         Book book = bookRepository.findById(id)
                 .orElseThrow(() -> {
@@ -86,7 +277,12 @@ public class BookService {
         book.setContent(updatedBook.getContent());
         book.setPublicationYear(updatedBook.getPublicationYear());
         book.setIsbn(updatedBook.getIsbn());
-        book.setAvailable(updatedBook.isAvailable());
+        // Availability follows the copy counts; only the total is taken from the request, if given
+        if (updatedBook.getTotalCopies() != null && !updatedBook.getTotalCopies().equals(book.getTotalCopies())
+                && !bookRepository.resizeCopies(id, updatedBook.getTotalCopies())) {
+            throw new IllegalArgumentException("More copies of book " + id + " are on loan than "
+                    + updatedBook.getTotalCopies());
+        }
 
         // Update authors relationship
         if (updatedBook.getAuthors() != null && !updatedBook.getAuthors().isEmpty()) {
@@ -94,7 +290,9 @@ public class BookService {
             book.setAuthors(newAuthors);
         }
 
-        Book savedBook = bookRepository.save(book);
+        Book saved = bookRepository.save(book);
+        eventPublisher.publishEvent(BookChangedEvent.saved(saved));
+        BookResponse savedBook = BookResponse.from(saved);
         logger.info("Service: Book updated successfully with id: {}", id);
         return savedBook;
     }
@@ -109,6 +307,7 @@ public class BookService {
             throw new IllegalArgumentException("Book with id " + id + " not found");
         }
         bookRepository.deleteById(id);
+        eventPublisher.publishEvent(BookChangedEvent.deleted(id));
         logger.info("Service: Book deleted successfully with id: {}", id);
     }
 
@@ -0,0 +1,81 @@
+package com.example.library.service;
+
+import com.example.library.dto.CacheRegionStats;
+import com.example.library.util.JwtUtil;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Statistics and eviction for the Hibernate second-level cache. Region counters are read from
+ * the JCache statistics MBeans that Caffeine registers (monitoring.statistics in application.conf).
+ * The statistics also list the cache of verified JWTs, which is kept whether or not the
+ * second-level cache is enabled.
+ */
+@Service
+public class CacheAdminService {
+    private static final Logger logger = LoggerFactory.getLogger(CacheAdminService.class);
+    private static final String JWT_REGION = "jwt-verified-tokens";
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final JwtUtil jwtUtil;
+    private final boolean enabled;
+
+    public CacheAdminService(EntityManagerFactory entityManagerFactory, JwtUtil jwtUtil,
+                             @Value("${library.cache.enabled:false}") boolean enabled) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.jwtUtil = jwtUtil;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public List<CacheRegionStats> getStatistics() throws JMException {
+        List<CacheRegionStats> stats = new ArrayList<>();
+        stats.add(jwtStatistics());
+        if (!enabled) {
+            return stats;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : server.queryNames(new ObjectName("javax.cache:type=CacheStatistics,*"), null)) {
+            stats.add(new CacheRegionStats(
+                    name.getKeyProperty("Cache"),
+                    (Long) server.getAttribute(name, "CacheHits"),
+                    (Long) server.getAttribute(name, "CacheMisses"),
+                    (Float) server.getAttribute(name, "CacheHitPercentage"),
+                    (Long) server.getAttribute(name, "CachePuts"),
+                    (Long) server.getAttribute(name, "CacheRemovals"),
+                    (Long) server.getAttribute(name, "CacheEvictions"),
+                    null));
+        }
+        stats.sort(Comparator.comparing(CacheRegionStats::getRegion));
+        return stats;
+    }
+
+    private CacheRegionStats jwtStatistics() {
+        long hits = jwtUtil.getCacheHits();
+        long misses = jwtUtil.getCacheMisses();
+        float hitPercentage = hits + misses == 0 ? 0 : hits * 100f / (hits + misses);
+        return new CacheRegionStats(JWT_REGION, hits, misses, hitPercentage, null, null, null, jwtUtil.getCacheSize());
+    }
+
+    /**
+     * Drop every cached entity and collection, e.g. after the tables were changed outside the application
+     */
+    public void evictAll() {
+        logger.info("Service: Evicting all second-level cache regions");
+        entityManagerFactory.getCache().evictAll();
+    }
+}
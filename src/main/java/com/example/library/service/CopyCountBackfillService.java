@@ -0,0 +1,32 @@
+package com.example.library.service;
+
+import com.example.library.repository.BookRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Service;
+
+/**
+ * Aligns the copy counts of books stored before total_copies and available_copies existed. The
+ * schema update gives every old row one copy on the shelf; a book that was lent out at that time
+ * must have none. One idempotent statement at startup, a no-op once the rows are aligned.
+ */
+@Service
+public class CopyCountBackfillService implements ApplicationRunner {
+    private static final Logger logger = LoggerFactory.getLogger(CopyCountBackfillService.class);
+
+    private final BookRepository bookRepository;
+
+    public CopyCountBackfillService(BookRepository bookRepository) {
+        this.bookRepository = bookRepository;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        int updated = bookRepository.clearCopiesOfUnavailableBooks();
+        if (updated > 0) {
+            logger.info("Service: Copy count backfill finished - lent out books: {}", updated);
+        }
+    }
+}
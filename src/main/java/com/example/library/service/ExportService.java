@@ -0,0 +1,148 @@
+package com.example.library.service;
+
+import com.example.library.util.CsvWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Streams whole tables as NDJSON or CSV straight from a forward-only JDBC cursor.
+ * Rows are read as scalar projections in a read-only transaction, so nothing is kept
+ * in the persistence context and heap use stays flat regardless of the table size.
+ */
+@Service
+public class ExportService {
+    private static final Logger logger = LoggerFactory.getLogger(ExportService.class);
+
+    private static final String BOOKS_QUERY =
+            "select b.id, b.title, b.author, b.publicationYear, b.isbn, b.available, b.content from Book b order by b.id";
+    private static final String[] BOOK_COLUMNS =
+            {"id", "title", "author", "publicationYear", "isbn", "available", "content"};
+
+    private static final String LOANS_QUERY =
+            "select l.id, l.user.uid, l.book.id, l.loanDate, l.returnDate, l.status from Loan l order by l.id";
+    private static final String[] LOAN_COLUMNS =
+            {"id", "userId", "bookId", "loanDate", "returnDate", "status"};
+
+    private static final String USERS_QUERY =
+            "select u.uid, u.name, u.surname, u.email, u.address, u.city, u.role from library_user u order by u.uid";
+    private static final String[] USER_COLUMNS =
+            {"uid", "name", "surname", "email", "address", "city", "role"};
+
+    public enum Format {
+        NDJSON(MediaType.APPLICATION_NDJSON, "ndjson"),
+        CSV(new MediaType("text", "csv", StandardCharsets.UTF_8), "csv");
+
+        private final MediaType mediaType;
+        private final String extension;
+
+        Format(MediaType mediaType, String extension) {
+            this.mediaType = mediaType;
+            this.extension = extension;
+        }
+
+        public MediaType getMediaType() {
+            return mediaType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public static Format from(String value) {
+            try {
+                return Format.valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported export format: " + value + " (use ndjson or csv)");
+            }
+        }
+    }
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int fetchSize;
+
+    public ExportService(ObjectMapper objectMapper, PlatformTransactionManager transactionManager,
+                         @Value("${library.export.fetch-size:500}") int fetchSize) {
+        this.objectMapper = objectMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.fetchSize = fetchSize;
+    }
+
+    public void exportBooks(Format format, OutputStream out) {
+        export("books", BOOKS_QUERY, BOOK_COLUMNS, format, out);
+    }
+
+    public void exportLoans(Format format, OutputStream out) {
+        export("loans", LOANS_QUERY, LOAN_COLUMNS, format, out);
+    }
+
+    public void exportUsers(Format format, OutputStream out) {
+        export("users", USERS_QUERY, USER_COLUMNS, format, out);
+    }
+
+    private void export(String name, String query, String[] columns, Format format, OutputStream out) {
+        long started = System.currentTimeMillis();
+        long rowCount = readOnlyTransaction.execute(status -> {
+            Session session = entityManager.unwrap(Session.class);
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            long count = 0;
+            try (ScrollableResults<Object[]> rows = session.createSelectionQuery(query, Object[].class)
+                    .setFetchSize(fetchSize)
+                    .setReadOnly(true)
+                    .setCacheMode(CacheMode.IGNORE)
+                    .scroll(ScrollMode.FORWARD_ONLY)) {
+                CsvWriter csv = new CsvWriter(writer);
+                if (format == Format.CSV) {
+                    csv.writeRecord((Object[]) columns);
+                }
+                while (rows.next()) {
+                    Object[] row = rows.get();
+                    if (format == Format.CSV) {
+                        csv.writeRecord(row);
+                    } else {
+                        Map<String, Object> json = new LinkedHashMap<>();
+                        for (int i = 0; i < columns.length; i++) {
+                            json.put(columns[i], row[i]);
+                        }
+                        writer.write(objectMapper.writeValueAsString(json));
+                        writer.write('\n');
+                    }
+                    count++;
+                }
+                writer.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Export of " + name + " failed", e);
+            }
+            return count;
+        });
+        logger.info("Service: Exported {} {} as {} in {} ms", rowCount, name, format,
+                System.currentTimeMillis() - started);
+    }
+}
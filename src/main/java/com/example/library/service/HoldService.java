@@ -0,0 +1,227 @@
+package com.example.library.service;
+
+import com.example.library.dto.HoldView;
+import com.example.library.event.BookAvailabilityChangedEvent;
+import com.example.library.exception.BookNotFoundException;
+import com.example.library.exception.HoldAlreadyExistsException;
+import com.example.library.exception.HoldClosedException;
+import com.example.library.exception.HoldNotFoundException;
+import com.example.library.exception.UserNotFoundException;
+import com.example.library.model.Hold;
+import com.example.library.model.HoldStatus;
+import com.example.library.model.User;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.HoldRepository;
+import com.example.library.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * FIFO hold queues. A copy that comes back (return, expired or cancelled pickup) goes to the first
+ * WAITING hold of its book instead of the shelf; the hold becomes READY for a pickup window and the
+ * patron's next borrow of the book takes the set-aside copy. Allocation locks only the head row,
+ * skipping heads locked by a concurrent return, so it is one index seek and one update per copy.
+ */
+@Service
+public class HoldService {
+    private static final Logger logger = LoggerFactory.getLogger(HoldService.class);
+    private static final List<HoldStatus> OPEN = List.of(HoldStatus.WAITING, HoldStatus.READY);
+    // Heads that turn out to be taken already are skipped, at most this many per copy
+    private static final int MAX_ALLOCATION_ATTEMPTS = 10;
+
+    private final HoldRepository holdRepository;
+    private final BookRepository bookRepository;
+    private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate sweepTransaction;
+    private final Duration pickupWindow;
+    private final int sweepBatchSize;
+
+    public HoldService(HoldRepository holdRepository, BookRepository bookRepository, UserRepository userRepository,
+                       ApplicationEventPublisher eventPublisher, PlatformTransactionManager transactionManager,
+                       @Value("${library.holds.pickup-hours:48}") long pickupHours,
+                       @Value("${library.holds.sweep-batch-size:100}") int sweepBatchSize) {
+        this.holdRepository = holdRepository;
+        this.bookRepository = bookRepository;
+        this.userRepository = userRepository;
+        this.eventPublisher = eventPublisher;
+        // One short transaction per expired hold, the sweep never holds many row locks at once
+        this.sweepTransaction = new TransactionTemplate(transactionManager);
+        this.sweepTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.pickupWindow = Duration.ofHours(pickupHours);
+        this.sweepBatchSize = sweepBatchSize;
+    }
+
+    /**
+     * Queue the user for the book. A copy that is on the shelf right now is set aside at once.
+     * At most one open hold per user and book.
+     */
+    @Transactional
+    public HoldView placeHold(String userId, Integer bookId) {
+        if (!bookRepository.existsById(bookId)) {
+            throw new BookNotFoundException(bookId);
+        }
+        // Nothing in the schema stops a second open hold, so repeated requests of one user queue up on the user row
+        User user = userRepository.findForUpdateByUid(userId).orElseThrow(() -> new UserNotFoundException(userId));
+        if (holdRepository.existsByUserUidAndBookIdAndStatusIn(userId, bookId, OPEN)) {
+            throw new HoldAlreadyExistsException(bookId);
+        }
+        Hold hold = new Hold();
+        hold.setUser(user);
+        hold.setBook(bookRepository.getReferenceById(bookId));
+        hold.setStatus(HoldStatus.WAITING);
+        hold.setCreatedAt(LocalDateTime.now());
+        holdRepository.saveAndFlush(hold);
+
+        // Taken through the queue, so an earlier waiting patron still comes first
+        if (bookRepository.claimCopy(bookId)) {
+            if (bookRepository.findById(bookId).map(claimed -> !claimed.isAvailable()).orElse(false)) {
+                eventPublisher.publishEvent(new BookAvailabilityChangedEvent(bookId, false));
+            }
+            passCopyOn(bookId);
+        }
+        logger.info("Service: User {} placed hold {} on book {}", userId, hold.getId(), bookId);
+        return getHold(hold.getId());
+    }
+
+    @Transactional(readOnly = true)
+    public HoldView getHold(Integer holdId) {
+        HoldView view = holdRepository.findViewById(holdId).orElseThrow(() -> new HoldNotFoundException(holdId));
+        if (view.getStatus() == HoldStatus.WAITING) {
+            view.setPosition(holdRepository.countAhead(view.getBookId(), HoldStatus.WAITING, holdId) + 1);
+        }
+        return view;
+    }
+
+    /**
+     * Cancel an open hold; a copy set aside for it goes to the next hold or the shelf
+     */
+    @Transactional
+    public HoldView cancelHold(Integer holdId) {
+        Hold hold = holdRepository.findForUpdateById(holdId).orElseThrow(() -> new HoldNotFoundException(holdId));
+        if (!hold.getStatus().isOpen()) {
+            throw new HoldClosedException(holdId);
+        }
+        boolean hadCopy = hold.getStatus() == HoldStatus.READY;
+        hold.setStatus(HoldStatus.CANCELLED);
+        if (hadCopy) {
+            passCopyOn(hold.getBook().getId());
+        }
+        logger.info("Service: Hold {} cancelled", holdId);
+        return getHold(holdId);
+    }
+
+    /**
+     * A copy of the book is free (returned, or set aside and not collected): the head of the queue
+     * gets it, otherwise it goes back on the shelf. Runs in the caller's transaction, which has
+     * already taken the copy off the loan or hold.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void passCopyOn(Integer bookId) {
+        if (allocate(bookId).isPresent()) {
+            return;
+        }
+        if (bookRepository.releaseCopy(bookId)) {
+            eventPublisher.publishEvent(new BookAvailabilityChangedEvent(bookId, true));
+        } else {
+            logger.warn("Service: All copies of book {} were already in when a copy came back", bookId);
+        }
+    }
+
+    /**
+     * Sets the copy aside for the first WAITING hold of the book, if there is one
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Optional<Hold> allocate(Integer bookId) {
+        for (int attempt = 0; attempt < MAX_ALLOCATION_ATTEMPTS; attempt++) {
+            Optional<Hold> head = holdRepository.lockHead(bookId);
+            if (head.isEmpty()) {
+                return Optional.empty();
+            }
+            Hold hold = head.get();
+            // Databases without SKIP LOCKED wait for the lock instead and may hand back a hold just allocated
+            if (hold.getStatus() != HoldStatus.WAITING) {
+                continue;
+            }
+            LocalDateTime now = LocalDateTime.now();
+            hold.setStatus(HoldStatus.READY);
+            hold.setReadyAt(now);
+            hold.setExpiresAt(now.plus(pickupWindow));
+            logger.info("Service: Copy of book {} set aside for hold {} until {}", bookId, hold.getId(),
+                    hold.getExpiresAt());
+            return head;
+        }
+        logger.warn("Service: No hold of book {} could be allocated after {} attempts", bookId, MAX_ALLOCATION_ATTEMPTS);
+        return Optional.empty();
+    }
+
+    /**
+     * Expires READY holds whose pickup window ran out and passes their copies on. Also repairs queues
+     * that wait while a copy is on the shelf, which a return racing a new hold can leave behind.
+     */
+    @Scheduled(fixedDelayString = "${library.holds.sweep-interval-ms:60000}")
+    public void sweep() {
+        int expired = 0;
+        List<Integer> holdIds;
+        do {
+            holdIds = holdRepository.findIdsExpiredBefore(HoldStatus.READY, LocalDateTime.now(), Limit.of(sweepBatchSize));
+            for (Integer holdId : holdIds) {
+                if (Boolean.TRUE.equals(sweepTransaction.execute(status -> expire(holdId)))) {
+                    expired++;
+                }
+            }
+        } while (holdIds.size() == sweepBatchSize);
+
+        int repaired = 0;
+        for (Integer bookId : holdRepository.findBookIdsWithStatusAndCopiesOnShelf(HoldStatus.WAITING)) {
+            if (Boolean.TRUE.equals(sweepTransaction.execute(status -> allocateShelfCopy(bookId)))) {
+                repaired++;
+            }
+        }
+        if (expired > 0 || repaired > 0) {
+            logger.info("Service: Hold sweep - expired: {}, shelf copies given to waiting holds: {}", expired, repaired);
+        }
+    }
+
+    private boolean expire(Integer holdId) {
+        Optional<Hold> locked = holdRepository.findForUpdateById(holdId);
+        if (locked.isEmpty() || locked.get().getStatus() != HoldStatus.READY
+                || !locked.get().getExpiresAt().isBefore(LocalDateTime.now())) {
+            return false;
+        }
+        Hold hold = locked.get();
+        hold.setStatus(HoldStatus.EXPIRED);
+        passCopyOn(hold.getBook().getId());
+        return true;
+    }
+
+    private boolean allocateShelfCopy(Integer bookId) {
+        if (!bookRepository.claimCopy(bookId)) {
+            return false;
+        }
+        if (allocate(bookId).isPresent()) {
+            if (bookRepository.findById(bookId).map(book -> !book.isAvailable()).orElse(false)) {
+                eventPublisher.publishEvent(new BookAvailabilityChangedEvent(bookId, false));
+            }
+            return true;
+        }
+        // Queue emptied meanwhile, put the copy back
+        bookRepository.releaseCopy(bookId);
+        return false;
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.library.service;
+
+import com.example.library.exception.IdempotencyKeyInProgressException;
+import com.example.library.exception.IdempotencyKeyReusedException;
+import com.example.library.model.IdempotencyRecord;
+import com.example.library.repository.IdempotencyRecordRepository;
+import com.example.library.util.ExpiringLruCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs a request sent with an Idempotency-Key once and answers its repeats with the first response.
+ * Completed responses are kept in the idempotency_record table until they expire, fronted by a
+ * bounded in-memory cache. A repeat that arrives while the first request is still running waits
+ * for it: on the future of the running request within this instance, by polling its claim row when
+ * another instance runs it. Requests that fail with an exception or a 5xx are not recorded, a
+ * retry runs them again.
+ */
+@Service
+public class IdempotencyService {
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+    private static final long POLL_INTERVAL_MS = 50;
+
+    public record StoredResponse(String requestHash, int status, String contentType, String body) {
+    }
+
+    private final IdempotencyRecordRepository repository;
+    private final TransactionTemplate transaction;
+    private final ExpiringLruCache<String, StoredResponse> completed;
+    // Requests running in this instance; completed with their response, or null when given up
+    private final ConcurrentHashMap<String, CompletableFuture<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+    private final Duration ttl;
+    private final Duration lease;
+    private final long waitMillis;
+    private final int purgeBatchSize;
+
+    public IdempotencyService(IdempotencyRecordRepository repository, PlatformTransactionManager transactionManager,
+                              @Value("${library.idempotency.ttl-hours:24}") long ttlHours,
+                              @Value("${library.idempotency.cache-size:10000}") int cacheSize,
+                              @Value("${library.idempotency.lease-ms:30000}") long leaseMillis,
+                              @Value("${library.idempotency.wait-ms:10000}") long waitMillis,
+                              @Value("${library.idempotency.purge-batch-size:500}") int purgeBatchSize) {
+        this.repository = repository;
+        // Claims and responses commit on their own, before and after the request's transaction
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.ttl = Duration.ofHours(ttlHours);
+        this.completed = new ExpiringLruCache<>(cacheSize, ttl.toMillis());
+        this.lease = Duration.ofMillis(leaseMillis);
+        this.waitMillis = waitMillis;
+        this.purgeBatchSize = purgeBatchSize;
+    }
+
+    /**
+     * Claims the key for the caller, or returns the first response to it. Null means the caller runs
+     * the request and must call complete or abandon afterwards.
+     *
+     * @throws IdempotencyKeyReusedException if the key was used for a request with a different body
+     * @throws IdempotencyKeyInProgressException if the first request did not finish in time
+     */
+    public StoredResponse claim(String id, String requestHash) {
+        long deadline = System.currentTimeMillis() + waitMillis;
+        while (true) {
+            StoredResponse cached = completed.get(id);
+            if (cached != null) {
+                return replay(cached, requestHash);
+            }
+            CompletableFuture<StoredResponse> mine = new CompletableFuture<>();
+            CompletableFuture<StoredResponse> running = inFlight.putIfAbsent(id, mine);
+            if (running != null) {
+                StoredResponse first = await(running, deadline);
+                if (first != null) {
+                    return replay(first, requestHash);
+                }
+                // The first request failed, the key is free again
+                continue;
+            }
+            StoredResponse stored;
+            try {
+                stored = claimRecord(id, requestHash, deadline);
+            } catch (RuntimeException e) {
+                release(id, mine, null);
+                throw e;
+            }
+            if (stored == null) {
+                return null;
+            }
+            release(id, mine, stored);
+            return replay(stored, requestHash);
+        }
+    }
+
+    /**
+     * Records the response of a claimed request and hands it to the repeats waiting for it
+     */
+    public void complete(String id, String requestHash, int status, String contentType, String body) {
+        StoredResponse response = new StoredResponse(requestHash, status, contentType, body);
+        LocalDateTime expiresAt = LocalDateTime.now().plus(ttl);
+        try {
+            transaction.executeWithoutResult(tx -> repository.complete(id, status, contentType, body, expiresAt));
+            completed.put(id, response, toEpochMillis(expiresAt));
+        } catch (RuntimeException e) {
+            // The request itself succeeded; a retry after the lease ends runs it again
+            logger.warn("Service: Could not record the response to idempotency key {}: {}", id, e.getMessage());
+        } finally {
+            release(id, inFlight.get(id), response);
+        }
+    }
+
+    /**
+     * Gives up the claim of a request that failed, so that a retry runs it again
+     */
+    public void abandon(String id) {
+        try {
+            transaction.executeWithoutResult(tx -> repository.deleteClaim(id));
+        } catch (RuntimeException e) {
+            logger.warn("Service: Could not release idempotency key {}, it is freed when its lease ends: {}",
+                    id, e.getMessage());
+        } finally {
+            release(id, inFlight.get(id), null);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${library.idempotency.purge-interval-ms:600000}")
+    public void purgeExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        int purged = 0;
+        List<String> ids;
+        do {
+            ids = transaction.execute(tx -> {
+                List<String> expired = repository.findIdsExpiredBefore(now, Limit.of(purgeBatchSize));
+                repository.deleteAllByIdInBatch(expired);
+                return expired;
+            });
+            purged += ids.size();
+        } while (ids.size() == purgeBatchSize);
+        if (purged > 0) {
+            logger.info("Service: Purged {} expired idempotency records", purged);
+        }
+    }
+
+    /**
+     * Inserts the claim row. When the key was claimed before, returns its response if it has one,
+     * takes the claim over if its lease ran out, and otherwise polls until the other instance
+     * finishes.
+     */
+    private StoredResponse claimRecord(String id, String requestHash, long deadline) {
+        while (true) {
+            LocalDateTime now = LocalDateTime.now();
+            try {
+                transaction.executeWithoutResult(tx -> repository.insertClaim(id, requestHash, now, now.plus(lease)));
+                return null;
+            } catch (DataIntegrityViolationException e) {
+                // Claimed before, by a finished request or by one running on another instance
+            }
+            Optional<IdempotencyRecord> record = transaction.execute(tx -> repository.findById(id));
+            if (record.isEmpty()) {
+                // Given up or purged meanwhile
+                continue;
+            }
+            IdempotencyRecord claimed = record.get();
+            if (!claimed.getRequestHash().equals(requestHash)) {
+                throw new IdempotencyKeyReusedException();
+            }
+            if (claimed.getStatus() != null) {
+                StoredResponse stored = new StoredResponse(claimed.getRequestHash(), claimed.getStatus(),
+                        claimed.getContentType(), claimed.getBody());
+                completed.put(id, stored, toEpochMillis(claimed.getExpiresAt()));
+                return stored;
+            }
+            if (claimed.getExpiresAt().isBefore(now)
+                    && Integer.valueOf(1).equals(transaction.execute(tx -> repository.deleteExpiredClaim(id, now)))) {
+                logger.warn("Service: Lease of idempotency key {} ran out before its request finished, running it again", id);
+                continue;
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                throw new IdempotencyKeyInProgressException();
+            }
+            try {
+                Thread.sleep(POLL_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IdempotencyKeyInProgressException();
+            }
+        }
+    }
+
+    private StoredResponse await(CompletableFuture<StoredResponse> running, long deadline) {
+        try {
+            return running.get(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new IdempotencyKeyInProgressException();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyKeyInProgressException();
+        } catch (ExecutionException e) {
+            // Never completed exceptionally; treated like a request that was given up
+            return null;
+        }
+    }
+
+    private void release(String id, CompletableFuture<StoredResponse> running, StoredResponse response) {
+        if (running != null) {
+            inFlight.remove(id, running);
+            running.complete(response);
+        }
+    }
+
+    private static StoredResponse replay(StoredResponse stored, String requestHash) {
+        if (!stored.requestHash().equals(requestHash)) {
+            throw new IdempotencyKeyReusedException();
+        }
+        return stored;
+    }
+
+    private static long toEpochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.library.service;
+
+import com.example.library.model.Book;
+import com.example.library.repository.BookRepository;
+import com.example.library.util.IsbnUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Fills isbn_key for books stored before the column existed. Runs once at startup in chunks,
+ * one transaction per chunk. Rows whose ISBN collides with an already keyed book are left
+ * without a key and logged, the unique index would reject them.
+ */
+@Service
+public class IsbnKeyBackfillService implements ApplicationRunner {
+    private static final Logger logger = LoggerFactory.getLogger(IsbnKeyBackfillService.class);
+
+    private final BookRepository bookRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+
+    public IsbnKeyBackfillService(BookRepository bookRepository, PlatformTransactionManager transactionManager,
+                                  @Value("${library.books.isbn-backfill.chunk-size:500}") int chunkSize) {
+        this.bookRepository = bookRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        int lastId = 0;
+        int keyed = 0;
+        int skipped = 0;
+        while (true) {
+            int afterId = lastId;
+            Chunk chunk = transactionTemplate.execute(status -> backfillChunk(afterId));
+            if (chunk == null || chunk.read() == 0) {
+                break;
+            }
+            lastId = chunk.lastId();
+            keyed += chunk.keyed();
+            skipped += chunk.read() - chunk.keyed();
+        }
+        if (keyed > 0 || skipped > 0) {
+            logger.info("Service: ISBN key backfill finished - keyed: {}, duplicates skipped: {}", keyed, skipped);
+        }
+    }
+
+    private Chunk backfillChunk(int afterId) {
+        List<Book> books = bookRepository.findByIsbnKeyIsNullAndIdGreaterThanOrderByIdAsc(afterId,
+                PageRequest.of(0, chunkSize));
+        if (books.isEmpty()) {
+            return new Chunk(0, afterId, 0);
+        }
+        Set<String> taken = books.stream()
+                .map(book -> IsbnUtil.canonical(book.getIsbn()))
+                .filter(Objects::nonNull)
+                .collect(Collectors.collectingAndThen(Collectors.toSet(), bookRepository::findByIsbnKeyIn))
+                .stream()
+                .map(Book::getIsbnKey)
+                .collect(Collectors.toCollection(HashSet::new));
+        int keyed = 0;
+        for (Book book : books) {
+            String key = IsbnUtil.canonical(book.getIsbn());
+            if (key == null || !taken.add(key)) {
+                logger.warn("Service: Book {} has a missing or duplicate ISBN '{}', left without ISBN key",
+                        book.getId(), book.getIsbn());
+                continue;
+            }
+            book.setIsbnKey(key);
+            keyed++;
+        }
+        return new Chunk(books.size(), books.get(books.size() - 1).getId(), keyed);
+    }
+
+    private record Chunk(int read, int lastId, int keyed) {
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.library.service;
+
+import com.example.library.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Repairs the open loan counters that borrow and return keep on the users. Walks the users in uid
+ * chunks, reads each stored counter together with a count of the user's open loans in one
+ * statement, and corrects drifted counters with a compare-and-set: a counter that a borrow or
+ * return changed since the read is left alone and checked again on the next run. Runs at startup,
+ * which also fills the counters of users stored before the column existed, and nightly.
+ */
+@Service
+public class LoanCounterReconciliationService implements ApplicationRunner {
+    private static final Logger logger = LoggerFactory.getLogger(LoanCounterReconciliationService.class);
+
+    private final UserRepository userRepository;
+    private final TransactionTemplate chunkTransaction;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final int chunkSize;
+
+    public LoanCounterReconciliationService(UserRepository userRepository, PlatformTransactionManager transactionManager,
+                                            @Value("${library.loans.counter-reconcile.chunk-size:500}") int chunkSize) {
+        this.userRepository = userRepository;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        reconcile();
+    }
+
+    @Scheduled(cron = "${library.loans.counter-reconcile.cron:0 0 4 * * *}")
+    public void runScheduled() {
+        reconcile();
+    }
+
+    /**
+     * One pass over all users
+     *
+     * @return the number of counters corrected, or -1 if a pass was already running
+     */
+    public int reconcile() {
+        if (!running.compareAndSet(false, true)) {
+            logger.warn("Service: Loan counter reconciliation skipped, a pass is still in progress");
+            return -1;
+        }
+        try {
+            String lastUid = null;
+            int checked = 0;
+            int corrected = 0;
+            while (true) {
+                String afterUid = lastUid;
+                Chunk chunk = chunkTransaction.execute(status -> reconcileChunk(afterUid));
+                if (chunk == null || chunk.read() == 0) {
+                    break;
+                }
+                lastUid = chunk.lastUid();
+                checked += chunk.read();
+                corrected += chunk.corrected();
+            }
+            if (corrected > 0) {
+                logger.info("Service: Loan counter reconciliation finished - users: {}, corrected: {}", checked, corrected);
+            }
+            return corrected;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private Chunk reconcileChunk(String afterUid) {
+        List<Object[]> counters = userRepository.findLoanCounters(afterUid, chunkSize);
+        if (counters.isEmpty()) {
+            return new Chunk(0, afterUid, 0);
+        }
+        List<String> userIds = new ArrayList<>();
+        List<Integer> expected = new ArrayList<>();
+        List<Integer> actual = new ArrayList<>();
+        for (Object[] row : counters) {
+            if (!row[1].equals(row[2])) {
+                logger.warn("Service: Loan counter of user {} was {}, user has {} open loans", row[0], row[1], row[2]);
+                userIds.add((String) row[0]);
+                expected.add((Integer) row[1]);
+                actual.add((Integer) row[2]);
+            }
+        }
+        int corrected = 0;
+        for (boolean changed : userRepository.correctActiveLoans(userIds, expected, actual)) {
+            if (changed) {
+                corrected++;
+            }
+        }
+        return new Chunk(counters.size(), (String) counters.get(counters.size() - 1)[0], corrected);
+    }
+
+    private record Chunk(int read, String lastUid, int corrected) {
+    }
+}
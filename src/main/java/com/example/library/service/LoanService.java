@@ -0,0 +1,363 @@
+package com.example.library.service;
+
+import com.example.library.dto.CursorPage;
+import com.example.library.dto.LoanBatchItem;
+import com.example.library.dto.LoanBatchResult;
+import com.example.library.dto.LoanView;
+import com.example.library.event.BookAvailabilityChangedEvent;
+import com.example.library.event.BookBorrowedEvent;
+import com.example.library.exception.BookNotAvailableException;
+import com.example.library.exception.BookNotFoundException;
+import com.example.library.exception.LoanAlreadyReturnedException;
+import com.example.library.exception.LoanNotFoundException;
+import com.example.library.exception.LoanQuotaExceededException;
+import com.example.library.exception.UserNotFoundException;
+import com.example.library.model.Book;
+import com.example.library.model.HoldStatus;
+import com.example.library.model.Loan;
+import com.example.library.model.LoanStatus;
+import com.example.library.model.Role;
+import com.example.library.model.User;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.HoldRepository;
+import com.example.library.repository.KeysetPaginator;
+import com.example.library.repository.LoanRepository;
+import com.example.library.repository.LoanSpecifications;
+import com.example.library.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Borrowing and returning. Each operation is one transaction whose first statement is a conditional
+ * UPDATE (a copy left for a borrow, status not RETURNED for a return): of concurrent requests for
+ * the last copy or the same loan exactly one changes the row, the others see 0 rows and fail without
+ * waiting on a lock held across a read-modify-write. Any later failure rolls the claim back.
+ * A copy set aside by a hold is borrowed by fulfilling the hold; a returned copy goes to the head
+ * of the book's hold queue before the shelf (see {@link HoldService}).
+ *
+ * The borrower's open loan counter moves in the same transaction: a borrow reserves with a
+ * conditional increment that fails at the role's limit, returns and deletes decrement it. No
+ * borrow counts loans; {@link LoanCounterReconciliationService} repairs a counter that drifted.
+ */
+@Service
+public class LoanService {
+    private static final Logger logger = LoggerFactory.getLogger(LoanService.class);
+    private static final String BORROWED = "BORROWED";
+    private static final String RETURNED = "RETURNED";
+    private static final String DUPLICATE = "DUPLICATE";
+    private static final String QUOTA_EXCEEDED = "QUOTA_EXCEEDED";
+    private final LoanRepository loanRepository;
+    private final BookRepository bookRepository;
+    private final UserRepository userRepository;
+    private final HoldRepository holdRepository;
+    private final HoldService holdService;
+    private final KeysetPaginator keysetPaginator;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int loanPeriodDays;
+    private final int maxActiveLoansUser;
+    private final int maxActiveLoansAdmin;
+
+    public LoanService(LoanRepository loanRepository, BookRepository bookRepository, UserRepository userRepository,
+                       HoldRepository holdRepository, HoldService holdService, KeysetPaginator keysetPaginator,
+                       ApplicationEventPublisher eventPublisher,
+                       @Value("${library.loans.loan-period-days:21}") int loanPeriodDays,
+                       @Value("${library.loans.max-active.user:10}") int maxActiveLoansUser,
+                       @Value("${library.loans.max-active.admin:50}") int maxActiveLoansAdmin) {
+        this.loanRepository = loanRepository;
+        this.bookRepository = bookRepository;
+        this.userRepository = userRepository;
+        this.holdRepository = holdRepository;
+        this.holdService = holdService;
+        this.keysetPaginator = keysetPaginator;
+        this.eventPublisher = eventPublisher;
+        this.loanPeriodDays = loanPeriodDays;
+        this.maxActiveLoansUser = maxActiveLoansUser;
+        this.maxActiveLoansAdmin = maxActiveLoansAdmin;
+    }
+
+    @Transactional
+    public LoanView borrow(String userId, Integer bookId) {
+        User user = userRepository.findById(userId).orElseThrow(() -> new UserNotFoundException(userId));
+        int limit = maxActiveLoans(user);
+        if (!userRepository.reserveLoans(userId, 1, limit)) {
+            logger.debug("Service: User {} is at the limit of {} active loans", userId, limit);
+            throw new LoanQuotaExceededException(userId, limit);
+        }
+        // A copy set aside for the user's hold is already off the shelf
+        boolean fromHold = holdRepository.fulfillReady(userId, List.of(bookId))[0];
+        if (!fromHold && !bookRepository.claimCopy(bookId)) {
+            if (!bookRepository.existsById(bookId)) {
+                throw new BookNotFoundException(bookId);
+            }
+            logger.debug("Service: All copies of book {} are lent out", bookId);
+            throw new BookNotAvailableException(bookId);
+        }
+        Book book = bookRepository.findById(bookId).orElseThrow(() -> new BookNotFoundException(bookId));
+        Loan savedLoan = loanRepository.save(newLoan(user, book));
+
+        if (!fromHold && !book.isAvailable()) {
+            eventPublisher.publishEvent(new BookAvailabilityChangedEvent(bookId, false));
+        }
+        eventPublisher.publishEvent(new BookBorrowedEvent(bookId, bookRepository.findAuthorIdsByBookId(bookId)));
+        return LoanView.from(savedLoan);
+    }
+
+    @Transactional
+    public LoanView returnLoan(Integer loanId) {
+        if (!loanRepository.markAllReturned(List.of(loanId), LocalDate.now())[0]) {
+            if (!loanRepository.existsById(loanId)) {
+                throw new LoanNotFoundException(loanId);
+            }
+            throw new LoanAlreadyReturnedException(loanId);
+        }
+        userRepository.releaseLoansOf(List.of(loanId));
+        loanRepository.findBookIdById(loanId).ifPresent(holdService::passCopyOn);
+        return loanRepository.findViewById(loanId).orElseThrow(() -> new LoanNotFoundException(loanId));
+    }
+
+    /**
+     * Corrects dates or status of a loan. A status change takes or gives back a copy of the book
+     * through the same conditional updates as borrow and return, and moves the borrower's counter
+     * (without the limit, a correction is not a new borrow).
+     *
+     * @throws BookNotAvailableException if a returned loan is reopened while no copy is on the shelf
+     */
+    @Transactional
+    public LoanView updateLoan(Integer loanId, Loan updated) {
+        Loan loan = loanRepository.findById(loanId).orElseThrow(() -> new LoanNotFoundException(loanId));
+        LoanStatus previousStatus = loan.getStatus();
+
+        if (updated.getLoanDate() != null) {
+            loan.setLoanDate(updated.getLoanDate());
+        }
+        if (updated.getDueDate() != null) {
+            loan.setDueDate(updated.getDueDate());
+        }
+        if (updated.getReturnDate() != null) {
+            loan.setReturnDate(updated.getReturnDate());
+        }
+        if (updated.getStatus() != null) {
+            loan.setStatus(updated.getStatus());
+        }
+
+        // Only a change between open (active, overdue) and returned moves a copy
+        if (previousStatus != null && updated.getStatus() != null
+                && previousStatus.isOpen() != updated.getStatus().isOpen()) {
+            // The ids of the lazy book and user are known without loading them
+            Integer bookId = loan.getBook().getId();
+            userRepository.addActiveLoans(loan.getUser().getUid(), updated.getStatus().isOpen() ? 1 : -1);
+            if (!updated.getStatus().isOpen()) {
+                holdService.passCopyOn(bookId);
+            } else {
+                // Reopening needs a copy off the shelf, otherwise its later return would add one that was never taken
+                if (!bookRepository.claimCopy(bookId)) {
+                    throw new BookNotAvailableException(bookId);
+                }
+                if (bookRepository.findById(bookId).map(claimed -> !claimed.isAvailable()).orElse(false)) {
+                    eventPublisher.publishEvent(new BookAvailabilityChangedEvent(bookId, false));
+                }
+            }
+        }
+        return loanRepository.findViewById(loanId).orElseThrow(() -> new LoanNotFoundException(loanId));
+    }
+
+    // Deleting an open loan gives its copy back
+    @Transactional
+    public void deleteLoan(Integer loanId) {
+        Loan loan = loanRepository.findById(loanId).orElseThrow(() -> new LoanNotFoundException(loanId));
+        if (loan.getStatus() != null && loan.getStatus().isOpen()) {
+            userRepository.addActiveLoans(loan.getUser().getUid(), -1);
+            holdService.passCopyOn(loan.getBook().getId());
+        }
+        loanRepository.delete(loan);
+    }
+
+    /**
+     * Borrows a stack of books for one user in one transaction: one counter reservation, one batch
+     * fulfilling the user's ready holds, one batch of conditional claims for the other books, one IN
+     * query for the books and one batch of loan inserts, however many books there are. Books that are
+     * missing, lent out or beyond the user's loan limit are reported per item and do not fail the others.
+     */
+    @Transactional
+    public LoanBatchResult borrowBatch(String userId, List<Integer> bookIds) {
+        User user = userRepository.findById(userId).orElseThrow(() -> new UserNotFoundException(userId));
+        // A book scanned twice is reported, not lent twice
+        List<Integer> distinct = bookIds.stream().distinct().toList();
+        // Room is reserved for every book up to the limit, what is not borrowed is given back below
+        int limit = maxActiveLoans(user);
+        int reserved = Math.min(distinct.size(), Math.max(limit - user.getActiveLoans(), 0));
+        if (reserved > 0 && !userRepository.reserveLoans(userId, reserved, limit)) {
+            logger.debug("Service: Counter of user {} changed during batch borrow, nothing reserved", userId);
+            reserved = 0;
+        }
+        List<Integer> requested = distinct.subList(0, reserved);
+        boolean[] fulfilled = holdRepository.fulfillReady(userId, requested);
+        Set<Integer> fromHold = new HashSet<>();
+        List<Integer> claiming = new ArrayList<>();
+        for (int i = 0; i < fulfilled.length; i++) {
+            if (fulfilled[i]) {
+                fromHold.add(requested.get(i));
+            } else {
+                claiming.add(requested.get(i));
+            }
+        }
+        boolean[] claimed = bookRepository.claimCopies(claiming);
+        Map<Integer, Book> books = bookRepository.findAllById(requested).stream()
+                .collect(Collectors.toMap(Book::getId, Function.identity()));
+        Set<Integer> taken = new HashSet<>(fromHold);
+        for (int i = 0; i < claimed.length; i++) {
+            if (claimed[i]) {
+                taken.add(claiming.get(i));
+            }
+        }
+        // Loans in the order the books were scanned
+        Map<Integer, Loan> loans = new LinkedHashMap<>();
+        for (Integer bookId : requested) {
+            if (taken.contains(bookId)) {
+                loans.put(bookId, newLoan(user, books.get(bookId)));
+            }
+        }
+        loanRepository.saveAll(loans.values());
+        if (reserved > loans.size()) {
+            userRepository.addActiveLoans(userId, loans.size() - reserved);
+        }
+        Set<Integer> withinLimit = new HashSet<>(requested);
+
+        List<LoanBatchItem> items = new ArrayList<>(bookIds.size());
+        Set<Integer> seen = new HashSet<>();
+        for (Integer bookId : bookIds) {
+            Loan loan = loans.get(bookId);
+            String result = !seen.add(bookId) ? DUPLICATE
+                    : loan != null ? BORROWED
+                    : !withinLimit.contains(bookId) ? QUOTA_EXCEEDED
+                    : books.containsKey(bookId) ? "NOT_AVAILABLE" : "NOT_FOUND";
+            items.add(new LoanBatchItem(bookId, BORROWED.equals(result) ? loan.getId() : null, result));
+        }
+
+        if (!loans.isEmpty()) {
+            Map<Integer, List<Integer>> authorIds = bookRepository.findAuthorIdsByBookIds(loans.keySet()).stream()
+                    .collect(Collectors.groupingBy(row -> (Integer) row[0],
+                            Collectors.mapping(row -> (Integer) row[1], Collectors.toList())));
+            for (Loan loan : loans.values()) {
+                Integer bookId = loan.getBook().getId();
+                if (!fromHold.contains(bookId) && !loan.getBook().isAvailable()) {
+                    eventPublisher.publishEvent(new BookAvailabilityChangedEvent(bookId, false));
+                }
+                eventPublisher.publishEvent(new BookBorrowedEvent(bookId, authorIds.getOrDefault(bookId, List.of())));
+            }
+        }
+        logger.info("Service: Batch borrow for user {} - borrowed: {}, failed: {}", userId, loans.size(),
+                items.size() - loans.size());
+        return new LoanBatchResult(loans.size(), items.size() - loans.size(), items);
+    }
+
+    /**
+     * Returns a stack of loans in one transaction: one batch of conditional loan updates, one batch
+     * of borrower counter decrements, one query for their books, one query for which of them have
+     * waiting holds and one batch of copy releases for the rest. Unknown or already returned loans
+     * are reported per item.
+     */
+    @Transactional
+    public LoanBatchResult returnBatch(List<Integer> loanIds) {
+        List<Integer> distinct = loanIds.stream().distinct().toList();
+        boolean[] returned = loanRepository.markAllReturned(distinct, LocalDate.now());
+        Set<Integer> returnedIds = new LinkedHashSet<>();
+        for (int i = 0; i < returned.length; i++) {
+            if (returned[i]) {
+                returnedIds.add(distinct.get(i));
+            }
+        }
+        userRepository.releaseLoansOf(List.copyOf(returnedIds));
+        Map<Integer, Integer> bookIds = new HashMap<>();
+        for (Object[] row : loanRepository.findBookIdsByIdIn(distinct)) {
+            bookIds.put((Integer) row[0], (Integer) row[1]);
+        }
+
+        List<Integer> releasing = new ArrayList<>();
+        for (Integer loanId : returnedIds) {
+            Integer bookId = bookIds.get(loanId);
+            if (bookId != null) {
+                releasing.add(bookId);
+            }
+        }
+        // Copies of books with a queue go to their holds one by one, the rest back on the shelf in one batch
+        Set<Integer> queued = releasing.isEmpty() ? Set.of()
+                : new HashSet<>(holdRepository.findBookIdsWithStatus(releasing, HoldStatus.WAITING));
+        List<Integer> shelving = new ArrayList<>(releasing.size());
+        for (Integer bookId : releasing) {
+            if (queued.contains(bookId)) {
+                holdService.passCopyOn(bookId);
+            } else {
+                shelving.add(bookId);
+            }
+        }
+        boolean[] released = bookRepository.releaseCopies(shelving);
+        Set<Integer> available = new LinkedHashSet<>();
+        for (int i = 0; i < released.length; i++) {
+            if (released[i]) {
+                available.add(shelving.get(i));
+            } else {
+                logger.warn("Service: All copies of book {} were already in when its loan was returned", shelving.get(i));
+            }
+        }
+        available.forEach(bookId -> eventPublisher.publishEvent(new BookAvailabilityChangedEvent(bookId, true)));
+
+        List<LoanBatchItem> items = new ArrayList<>(loanIds.size());
+        Set<Integer> seen = new HashSet<>();
+        for (Integer loanId : loanIds) {
+            String result = !seen.add(loanId) ? DUPLICATE
+                    : returnedIds.contains(loanId) ? RETURNED
+                    : bookIds.containsKey(loanId) ? "ALREADY_RETURNED" : "NOT_FOUND";
+            items.add(new LoanBatchItem(bookIds.get(loanId), loanId, result));
+        }
+        logger.info("Service: Batch return - returned: {}, failed: {}", returnedIds.size(),
+                items.size() - returnedIds.size());
+        return new LoanBatchResult(returnedIds.size(), items.size() - returnedIds.size(), items);
+    }
+
+    /**
+     * A patron's loans, newest first, optionally only those with the given status. Keyset paginated
+     * on loan date and id within the user's (and status') range of idx_loan_user_status_date.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<LoanView> getLoansOfUser(String userId, LoanStatus status, String after, int size) {
+        if (!userRepository.existsById(userId)) {
+            throw new UserNotFoundException(userId);
+        }
+        KeysetPaginator.KeysetSlice slice = keysetPaginator.seek(Loan.class, "id", "loanDate", Sort.Direction.DESC,
+                after, size, LoanSpecifications.ofUser(userId).and(LoanSpecifications.withStatus(status)));
+        return keysetPaginator.load(slice, loanRepository::findViewsByIdIn, LoanView::getId);
+    }
+
+    private int maxActiveLoans(User user) {
+        return user.getRole() == Role.ROLE_ADMIN ? maxActiveLoansAdmin : maxActiveLoansUser;
+    }
+
+    private Loan newLoan(User user, Book book) {
+        Loan loan = new Loan();
+        loan.setUser(user);
+        loan.setBook(book);
+        loan.setLoanDate(LocalDate.now());
+        loan.setDueDate(loan.getLoanDate().plusDays(loanPeriodDays));
+        loan.setStatus(LoanStatus.ACTIVE);
+        loan.setReturnDate(null);
+        return loan;
+    }
+}
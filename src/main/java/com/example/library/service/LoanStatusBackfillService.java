@@ -0,0 +1,36 @@
+package com.example.library.service;
+
+import com.example.library.repository.LoanRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+
+/**
+ * Rewrites loan statuses stored in lower case before LoanStatus existed to the enum names, so that
+ * every query compares the status column as is and keeps using idx_loan_user_status_date and
+ * idx_loan_status_due. One idempotent statement at startup, a no-op once the rows are aligned. Runs
+ * before the other startup runners, which read loans by status.
+ */
+@Service
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class LoanStatusBackfillService implements ApplicationRunner {
+    private static final Logger logger = LoggerFactory.getLogger(LoanStatusBackfillService.class);
+
+    private final LoanRepository loanRepository;
+
+    public LoanStatusBackfillService(LoanRepository loanRepository) {
+        this.loanRepository = loanRepository;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        int updated = loanRepository.normalizeStatusCase();
+        if (updated > 0) {
+            logger.info("Service: Loan status backfill finished - loans: {}", updated);
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package com.example.library.service;
+
+import com.example.library.dto.OverdueRunStatus;
+import com.example.library.model.JobCheckpoint;
+import com.example.library.model.LoanStatus;
+import com.example.library.model.OverdueReminder;
+import com.example.library.repository.JobCheckpointRepository;
+import com.example.library.repository.LoanRepository;
+import com.example.library.repository.OverdueReminderRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Nightly overdue processing. Open loans past their due date are read in keyset chunks along
+ * idx_loan_status_due; each chunk is handed to a small worker pool and committed in its own short
+ * transaction: conditional updates that mark the loans OVERDUE or refresh their fine, plus reminder
+ * rows in the outbox. The conditional updates skip loans returned meanwhile and loans already
+ * assessed today, so a chunk that runs twice changes nothing the second time. The checkpoint
+ * advances behind the oldest unfinished chunk, and a restart on the same day resumes from it.
+ */
+@Service
+public class OverdueLoanService implements ApplicationRunner {
+    private static final Logger logger = LoggerFactory.getLogger(OverdueLoanService.class);
+    static final String JOB_NAME = "overdue-loans";
+    // OVERDUE first, so loans this run marks overdue are not assessed a second time
+    private static final List<LoanStatus> PHASES = List.of(LoanStatus.OVERDUE, LoanStatus.ACTIVE);
+
+    private final LoanRepository loanRepository;
+    private final OverdueReminderRepository reminderRepository;
+    private final JobCheckpointRepository checkpointRepository;
+    private final TransactionTemplate chunkTransaction;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ExecutorService coordinator;
+    private final ThreadPoolExecutor workers;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final Deque<OverdueRun> runs = new ArrayDeque<>();
+    private final int chunkSize;
+    private final int maxInFlight;
+    private final BigDecimal finePerDay;
+    private final BigDecimal maxFine;
+    private final int reminderIntervalDays;
+    private final int maxRetainedRuns;
+
+    public OverdueLoanService(LoanRepository loanRepository, OverdueReminderRepository reminderRepository,
+                              JobCheckpointRepository checkpointRepository, PlatformTransactionManager transactionManager,
+                              @Value("${library.overdue.chunk-size:500}") int chunkSize,
+                              @Value("${library.overdue.threads:2}") int threads,
+                              @Value("${library.overdue.fine-per-day:0.25}") BigDecimal finePerDay,
+                              @Value("${library.overdue.max-fine:20.00}") BigDecimal maxFine,
+                              @Value("${library.overdue.reminder-interval-days:7}") int reminderIntervalDays,
+                              @Value("${library.overdue.max-retained-runs:20}") int maxRetainedRuns) {
+        this.loanRepository = loanRepository;
+        this.reminderRepository = reminderRepository;
+        this.checkpointRepository = checkpointRepository;
+        // Workers and the coordinator never run inside a caller's transaction, each chunk commits on its own
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.readOnlyTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.chunkSize = chunkSize;
+        // Chunks read ahead of the workers; bounds memory and how far the checkpoint can lag
+        this.maxInFlight = threads * 2;
+        this.finePerDay = finePerDay;
+        this.maxFine = maxFine;
+        this.reminderIntervalDays = reminderIntervalDays;
+        this.maxRetainedRuns = maxRetainedRuns;
+        this.coordinator = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("overdue-run-"));
+        this.workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxInFlight),
+                new CustomizableThreadFactory("overdue-worker-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Resume a run that a restart interrupted today
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        checkpointRepository.findById(JOB_NAME)
+                .filter(checkpoint -> checkpoint.isRunning() && LocalDate.now().equals(checkpoint.getRunDate()))
+                .ifPresent(checkpoint -> {
+                    logger.info("Service: Resuming overdue run of {} after loan {}", checkpoint.getRunDate(),
+                            checkpoint.getLastId());
+                    start();
+                });
+    }
+
+    // Off-peak by default; runs on the scheduler thread, the chunks on the worker pool
+    @Scheduled(cron = "${library.overdue.cron:0 30 2 * * *}")
+    public void runScheduled() {
+        OverdueRun run = begin();
+        if (run == null) {
+            logger.warn("Service: Scheduled overdue run skipped, a run is still in progress");
+            return;
+        }
+        execute(run);
+    }
+
+    /**
+     * Start a run in the background
+     *
+     * @throws IllegalStateException if a run is already in progress
+     */
+    public OverdueRunStatus start() {
+        OverdueRun run = begin();
+        if (run == null) {
+            throw new IllegalStateException("An overdue run is already in progress");
+        }
+        coordinator.execute(() -> execute(run));
+        return run.snapshot();
+    }
+
+    /**
+     * Latest runs, newest first
+     */
+    public List<OverdueRunStatus> getRuns() {
+        synchronized (runs) {
+            return runs.stream().map(OverdueRun::snapshot).toList();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // Interrupted runs keep their checkpoint and resume on the next start
+        coordinator.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    private OverdueRun begin() {
+        if (!running.compareAndSet(false, true)) {
+            return null;
+        }
+        OverdueRun run = new OverdueRun(UUID.randomUUID().toString());
+        synchronized (runs) {
+            runs.addFirst(run);
+            while (runs.size() > maxRetainedRuns) {
+                runs.removeLast();
+            }
+        }
+        return run;
+    }
+
+    private void execute(OverdueRun run) {
+        run.state = "RUNNING";
+        run.startedAt = LocalDateTime.now();
+        try {
+            LocalDate today = LocalDate.now();
+            JobCheckpoint checkpoint = checkpointRepository.findById(JOB_NAME).orElseGet(() -> new JobCheckpoint(JOB_NAME));
+            run.resumed = checkpoint.isRunning() && today.equals(checkpoint.getRunDate());
+            if (!run.resumed) {
+                checkpoint.setRunDate(today);
+                checkpoint.setPhase(PHASES.get(0));
+                checkpoint.setLastDueDate(null);
+                checkpoint.setLastId(null);
+                checkpoint.setRunning(true);
+                save(checkpoint);
+            }
+            run.runDate = checkpoint.getRunDate();
+            logger.info("Service: Overdue run {} started for {} (resumed: {})", run.id, run.runDate, run.resumed);
+
+            for (int phase = PHASES.indexOf(checkpoint.getPhase()); phase < PHASES.size(); phase++) {
+                if (checkpoint.getPhase() != PHASES.get(phase)) {
+                    checkpoint.setPhase(PHASES.get(phase));
+                    checkpoint.setLastDueDate(null);
+                    checkpoint.setLastId(null);
+                    save(checkpoint);
+                }
+                scan(run, checkpoint);
+            }
+            checkpoint.setRunning(false);
+            save(checkpoint);
+            run.state = "COMPLETED";
+        } catch (Exception e) {
+            logger.error("Service: Overdue run {} failed, the next run resumes from its checkpoint", run.id, e);
+            run.state = "FAILED";
+        } finally {
+            run.finishedAt = LocalDateTime.now();
+            running.set(false);
+            OverdueRunStatus status = run.snapshot();
+            logger.info("Service: Overdue run {} {} - chunks: {}, scanned: {}, marked overdue: {}, fines updated: {}, "
+                            + "reminders: {}, {} ms ({} loans/s)", run.id, status.getState(), status.getChunks(),
+                    status.getLoansScanned(), status.getMarkedOverdue(), status.getFinesUpdated(),
+                    status.getRemindersWritten(), status.getDurationMs(), Math.round(status.getLoansPerSecond()));
+        }
+    }
+
+    /**
+     * Reads the chunks of the checkpoint's phase on this thread and processes them on the workers.
+     * Chunks finish out of order; the checkpoint only moves past a chunk once all earlier ones are done.
+     */
+    private void scan(OverdueRun run, JobCheckpoint checkpoint) throws InterruptedException {
+        LoanStatus phase = checkpoint.getPhase();
+        LocalDate afterDueDate = checkpoint.getLastDueDate();
+        Integer afterId = checkpoint.getLastId();
+        Deque<Chunk> inFlight = new ArrayDeque<>();
+        try {
+            while (true) {
+                LocalDate dueAfter = afterDueDate;
+                Integer idAfter = afterId;
+                List<Object[]> keys = readOnlyTransaction.execute(status -> loanRepository.findOverdueKeys(
+                        phase, run.runDate, dueAfter, idAfter, chunkSize));
+                if (keys.isEmpty()) {
+                    break;
+                }
+                Object[] last = keys.get(keys.size() - 1);
+                afterDueDate = (LocalDate) last[1];
+                afterId = (Integer) last[0];
+                if (inFlight.size() >= maxInFlight) {
+                    finish(inFlight.poll(), checkpoint);
+                }
+                inFlight.add(new Chunk(workers.submit(() -> process(run, phase, keys)), afterDueDate, afterId));
+                while (!inFlight.isEmpty() && inFlight.peek().result().isDone()) {
+                    finish(inFlight.poll(), checkpoint);
+                }
+                if (keys.size() < chunkSize) {
+                    break;
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                finish(inFlight.poll(), checkpoint);
+            }
+        } finally {
+            inFlight.forEach(chunk -> chunk.result().cancel(true));
+        }
+    }
+
+    private void finish(Chunk chunk, JobCheckpoint checkpoint) throws InterruptedException {
+        try {
+            chunk.result().get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Overdue chunk ending at loan " + chunk.lastId() + " failed", e.getCause());
+        }
+        checkpoint.setLastDueDate(chunk.lastDueDate());
+        checkpoint.setLastId(chunk.lastId());
+        save(checkpoint);
+    }
+
+    private void process(OverdueRun run, LoanStatus phase, List<Object[]> keys) {
+        List<Integer> loanIds = new ArrayList<>(keys.size());
+        List<BigDecimal> fines = new ArrayList<>(keys.size());
+        for (Object[] key : keys) {
+            loanIds.add((Integer) key[0]);
+            fines.add(fineFor(ChronoUnit.DAYS.between((LocalDate) key[1], run.runDate)));
+        }
+        List<OverdueReminder> reminders = new ArrayList<>();
+        int changed = chunkTransaction.execute(status -> {
+            boolean[] assessed = loanRepository.assessOverdue(phase, loanIds, fines, run.runDate);
+            int count = 0;
+            for (int i = 0; i < assessed.length; i++) {
+                if (!assessed[i]) {
+                    continue;
+                }
+                count++;
+                int daysOverdue = (int) ChronoUnit.DAYS.between((LocalDate) keys.get(i)[1], run.runDate);
+                // When a loan becomes overdue, then every reminderIntervalDays
+                if (phase == LoanStatus.ACTIVE || daysOverdue % reminderIntervalDays == 0) {
+                    reminders.add(reminder(keys.get(i), daysOverdue, fines.get(i)));
+                }
+            }
+            reminderRepository.saveAll(reminders);
+            return count;
+        });
+        run.chunks.incrementAndGet();
+        run.loansScanned.addAndGet(keys.size());
+        (phase == LoanStatus.ACTIVE ? run.markedOverdue : run.finesUpdated).addAndGet(changed);
+        run.remindersWritten.addAndGet(reminders.size());
+    }
+
+    private BigDecimal fineFor(long daysOverdue) {
+        return finePerDay.multiply(BigDecimal.valueOf(daysOverdue)).min(maxFine);
+    }
+
+    private OverdueReminder reminder(Object[] key, int daysOverdue, BigDecimal fine) {
+        OverdueReminder reminder = new OverdueReminder();
+        reminder.setLoanId((Integer) key[0]);
+        reminder.setDueDate((LocalDate) key[1]);
+        reminder.setUserId((String) key[2]);
+        reminder.setDaysOverdue(daysOverdue);
+        reminder.setFine(fine);
+        reminder.setCreatedAt(LocalDateTime.now());
+        return reminder;
+    }
+
+    private void save(JobCheckpoint checkpoint) {
+        checkpoint.setUpdatedAt(LocalDateTime.now());
+        checkpointRepository.save(checkpoint);
+    }
+
+    private record Chunk(Future<?> result, LocalDate lastDueDate, Integer lastId) {
+    }
+
+    private static class OverdueRun {
+        private final String id;
+        private final AtomicLong chunks = new AtomicLong();
+        private final AtomicLong loansScanned = new AtomicLong();
+        private final AtomicLong markedOverdue = new AtomicLong();
+        private final AtomicLong finesUpdated = new AtomicLong();
+        private final AtomicLong remindersWritten = new AtomicLong();
+        private volatile String state = "QUEUED";
+        private volatile boolean resumed;
+        private volatile LocalDate runDate;
+        private volatile LocalDateTime startedAt;
+        private volatile LocalDateTime finishedAt;
+
+        OverdueRun(String id) {
+            this.id = id;
+        }
+
+        OverdueRunStatus snapshot() {
+            long durationMs = startedAt == null ? 0
+                    : ChronoUnit.MILLIS.between(startedAt, finishedAt != null ? finishedAt : LocalDateTime.now());
+            long scanned = loansScanned.get();
+            return new OverdueRunStatus(id, runDate, state, resumed, chunks.get(), scanned, markedOverdue.get(),
+                    finesUpdated.get(), remindersWritten.get(), startedAt, finishedAt, durationMs,
+                    durationMs > 0 ? scanned * 1000.0 / durationMs : 0);
+        }
+    }
+}
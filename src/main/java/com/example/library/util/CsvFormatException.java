@@ -0,0 +1,13 @@
+package com.example.library.util;
+
+import java.io.IOException;
+
+/**
+ * Thrown by CsvReader for input that is not valid CSV
+ */
+public class CsvFormatException extends IOException {
+
+    public CsvFormatException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.library.util;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal streaming CSV reader (RFC 4180 quoting). Reads one record at a time, so the size
+ * of the input does not matter. Quoted fields may contain commas, quotes and line breaks.
+ * Records are capped at maxRecordLength characters, so a quote that is never closed cannot
+ * pull the rest of the input into one field.
+ */
+public class CsvReader implements Closeable {
+    private final BufferedReader reader;
+    private final int maxRecordLength;
+    // Line the next record starts on, for error messages
+    private long line = 1;
+
+    public CsvReader(Reader reader, int maxRecordLength) {
+        this.reader = reader instanceof BufferedReader buffered ? buffered : new BufferedReader(reader);
+        this.maxRecordLength = maxRecordLength;
+    }
+
+    /**
+     * Read the next record, or null at the end of the input. A malformed record throws
+     * CsvFormatException; the rest of the input cannot be read reliably after that.
+     */
+    public List<String> readRecord() throws IOException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        long startLine = line;
+        boolean inQuotes = false;
+        boolean readAnything = false;
+        int length = 0;
+        int c;
+
+        while ((c = reader.read()) != -1) {
+            readAnything = true;
+            char ch = (char) c;
+            if (ch == '\n') {
+                line++;
+            }
+            if (++length > maxRecordLength) {
+                throw new CsvFormatException("Record starting on line " + startLine + " is longer than "
+                        + maxRecordLength + " characters" + (inQuotes ? ", is a quote left open?" : ""));
+            }
+            if (inQuotes) {
+                if (ch == '"') {
+                    reader.mark(1);
+                    int next = reader.read();
+                    if (next == '"') {
+                        field.append('"');
+                        length++;
+                    } else {
+                        inQuotes = false;
+                        if (next != -1) {
+                            reader.reset();
+                        }
+                    }
+                } else {
+                    field.append(ch);
+                }
+            } else if (ch == '"') {
+                inQuotes = true;
+            } else if (ch == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (ch == '\n') {
+                fields.add(field.toString());
+                return fields;
+            } else if (ch != '\r') {
+                field.append(ch);
+            }
+        }
+
+        if (!readAnything) {
+            return null;
+        }
+        if (inQuotes) {
+            throw new CsvFormatException("Unclosed quote in the record starting on line " + startLine);
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
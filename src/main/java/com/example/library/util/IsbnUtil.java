@@ -0,0 +1,43 @@
+package com.example.library.util;
+
+import java.util.Locale;
+
+/**
+ * ISBN normalization. ISBN-10 and ISBN-13 spellings of the same book (with or without
+ * hyphens and spaces) map to one canonical ISBN-13 key.
+ */
+public final class IsbnUtil {
+
+    private IsbnUtil() {
+    }
+
+    /**
+     * Canonical lookup key for an ISBN: the ISBN-13 digits for anything that has the shape of an
+     * ISBN-10 or ISBN-13, otherwise the input without separators. Check digits are not verified,
+     * so existing catalogue data keeps a stable key. Returns null for a null or blank value.
+     */
+    public static String canonical(String isbn) {
+        if (isbn == null) {
+            return null;
+        }
+        String compact = isbn.replaceAll("[\\s-]", "").toUpperCase(Locale.ROOT);
+        if (compact.isEmpty()) {
+            return null;
+        }
+        if (compact.length() == 10 && compact.substring(0, 9).chars().allMatch(Character::isDigit)
+                && (Character.isDigit(compact.charAt(9)) || compact.charAt(9) == 'X')) {
+            String body = "978" + compact.substring(0, 9);
+            return body + isbn13CheckDigit(body);
+        }
+        return compact;
+    }
+
+    private static int isbn13CheckDigit(String first12) {
+        int sum = 0;
+        for (int i = 0; i < 12; i++) {
+            int digit = first12.charAt(i) - '0';
+            sum += (i % 2 == 0) ? digit : digit * 3;
+        }
+        return (10 - sum % 10) % 10;
+    }
+}
@@ -1,8 +1,12 @@
 package com.example.library.util;
 
+import com.example.library.security.JwtPrincipal;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.slf4j.Logger;
@@ -10,6 +14,7 @@ import org.slf4j.LoggerFactory;
 
 import javax.crypto.SecretKey;
 import java.util.Date;
+import java.util.Optional;
 
 @Component
 public class JwtUtil {
@@ -21,8 +26,23 @@ public class JwtUtil {
     @Value("${jwt.expiration:86400000}")
     private long expirationTime;
 
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes());
+    @Value("${jwt.cache.max-size:10000}")
+    private int cacheMaxSize;
+
+    private SecretKey signingKey;
+    private JwtParser parser;
+    private ExpiringLruCache<String, JwtPrincipal> verifiedTokens;
+
+    /**
+     * Builds the HMAC key and the parser once, both are immutable and thread-safe
+     */
+    @PostConstruct
+    void init() {
+        signingKey = Keys.hmacShaKeyFor(secret.getBytes());
+        parser = Jwts.parser()
+                .verifyWith(signingKey)
+                .build();
+        verifiedTokens = new ExpiringLruCache<>(cacheMaxSize, expirationTime);
     }
 
     public String generateToken(String userId, String email, String role) {
@@ -36,13 +56,43 @@ public class JwtUtil {
                 .claim("role", role)
                 .issuedAt(now)
                 .expiration(expiryDate)
-                .signWith(getSigningKey())
+                .signWith(signingKey)
                 .compact();
 
         logger.debug("JWT: Token generated successfully for user: {}", email);
         return token;
     }
 
+    /**
+     * Verifies the token and returns its principal. Tokens verified before are served
+     * from the cache until they expire, so the signature is checked once per token.
+     */
+    public Optional<JwtPrincipal> parseToken(String token) {
+        JwtPrincipal cached = verifiedTokens.get(token);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        try {
+            Claims claims = getClaimsFromToken(token);
+            if (claims.getExpiration() == null) {
+                logger.warn("JWT: Token without expiration rejected");
+                return Optional.empty();
+            }
+            JwtPrincipal principal = new JwtPrincipal(
+                    claims.getSubject(),
+                    claims.get("email", String.class),
+                    claims.get("role", String.class),
+                    claims.getExpiration().toInstant());
+            verifiedTokens.put(token, principal, principal.expiresAt().toEpochMilli());
+            logger.debug("JWT: Token validation successful");
+            return Optional.of(principal);
+        } catch (JwtException | IllegalArgumentException e) {
+            logger.warn("JWT: Token validation failed: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
     public String getUserIdFromToken(String token) {
         return getClaimsFromToken(token).getSubject();
     }
@@ -56,24 +106,22 @@ public class JwtUtil {
     }
 
     public boolean validateToken(String token) {
-        try {
-            Jwts.parser()
-                    .verifyWith(getSigningKey())
-                    .build()
-                    .parseSignedClaims(token);
-            logger.debug("JWT: Token validation successful");
-            return true;
-        } catch (Exception e) {
-            logger.warn("JWT: Token validation failed", e);
-            return false;
-        }
+        return parseToken(token).isPresent();
+    }
+
+    public long getCacheHits() {
+        return verifiedTokens.getHits();
+    }
+
+    public long getCacheMisses() {
+        return verifiedTokens.getMisses();
+    }
+
+    public int getCacheSize() {
+        return verifiedTokens.size();
     }
 
     private Claims getClaimsFromToken(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        return parser.parseSignedClaims(token).getPayload();
     }
 }
@@ -0,0 +1,46 @@
+package com.example.library;
+
+import com.example.library.model.Book;
+import com.example.library.model.Role;
+import com.example.library.model.User;
+
+/**
+ * Valid, not yet persisted entities for tests. Numbered instances differ in every unique field.
+ */
+public final class TestFixtures {
+
+    private TestFixtures() {
+    }
+
+    public static User user(int number) {
+        User user = new User();
+        user.setName("Reader");
+        user.setSurname("Patron" + number);
+        user.setEmail("reader" + number + "@example.com");
+        user.setAddress("Main Street " + number);
+        user.setCity("Prague");
+        user.setPassword("secret-password");
+        user.setRole(Role.ROLE_USER);
+        return user;
+    }
+
+    public static Book book(int number) {
+        Book book = new Book();
+        book.setTitle("Book " + number);
+        book.setAuthor("Author " + number);
+        book.setPublicationYear(2000);
+        book.setIsbn(isbn(number));
+        return book;
+    }
+
+    public static Book book(int number, int copies) {
+        Book book = book(number);
+        book.setTotalCopies(copies);
+        return book;
+    }
+
+    // ISBN-13 shaped, distinct per number
+    public static String isbn(int number) {
+        return "978-" + String.format("%010d", number);
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.library.search;
+
+import com.example.library.event.AuthorChangedEvent;
+import com.example.library.model.Author;
+import com.example.library.repository.AuthorRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the trigram index with the LIKE query it replaces on a small author table, page by page
+ */
+@DataJpaTest
+@Import({AuthorNameIndex.class, AuthorNameIndexLoader.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AuthorNameIndexTest {
+    private static final int AUTHORS = 240;
+    private static final int PAGE_SIZE = 7;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private AuthorNameIndex index;
+
+    @Autowired
+    private AuthorNameIndexLoader loader;
+
+    @BeforeEach
+    void setUp() {
+        // ASCII names only, so LOWER(...) LIKE agrees with the accent-folding index
+        jdbcTemplate.update("INSERT INTO author (id, first_name, last_name, nationality, nationality_key) "
+                + "SELECT X, "
+                + "ARRAY['Anna','Jan','Petr','Marie','Karel','Eva','Tomas','Lucie','Martin','Jana'][MOD(X, 10) + 1], "
+                + "ARRAY['Novak','Svoboda','Dvorak','Cerny','Prochazka','Kucera','Vesely','Horak'][MOD(X / 10, 8) + 1] || (X / 80), "
+                + "'Czech', 'czech' "
+                + "FROM SYSTEM_RANGE(1, ?)", AUTHORS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        authorRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void everyPageMatchesTheLikeQuery() {
+        loader.run(null);
+        assertThat(index.size()).isEqualTo(AUTHORS);
+
+        // Under three characters the names are scanned, from three on the trigram postings are used
+        List<String> queries = List.of("a", "AN", "k", "no", "novak", "ARIE", "vak1", "dvorak2", "ova", "xyz", "  jan  ");
+        List<Sort> sorts = List.of(Sort.by("lastName", "id"), Sort.by(Sort.Order.desc("firstName"), Sort.Order.asc("id")),
+                Sort.by("id"));
+        for (String query : queries) {
+            for (Sort sort : sorts) {
+                long total = -1;
+                for (int page = 0; total < 0 || (long) page * PAGE_SIZE <= total; page++) {
+                    Pageable pageable = PageRequest.of(page, PAGE_SIZE, sort);
+                    Page<Author> like = authorRepository.findByName(query.trim(), pageable);
+                    AuthorNameIndex.Matches matches = index.search(query, pageable);
+
+                    assertThat(matches.total()).as("total of %s by %s", query, sort).isEqualTo(like.getTotalElements());
+                    assertThat(matches.pageIds()).as("page %d of %s by %s", page, query, sort)
+                            .containsExactlyElementsOf(like.getContent().stream().map(Author::getId).toList());
+                    total = matches.total();
+                }
+            }
+        }
+    }
+
+    @Test
+    void matchesIgnoreAccentsAndCase() {
+        jdbcTemplate.update("INSERT INTO author (id, first_name, last_name) VALUES "
+                + "(1001, 'Karel', 'Čapek'), (1002, 'Božena', 'Němcová')");
+        loader.run(null);
+
+        assertThat(index.search("capek", PageRequest.of(0, 10)).pageIds()).containsExactly(1001);
+        assertThat(index.search("ČAPEK", PageRequest.of(0, 10)).pageIds()).containsExactly(1001);
+        assertThat(index.search("bož", PageRequest.of(0, 10)).pageIds()).containsExactly(1002);
+        // Full-scan path
+        assertThat(index.search("ěm", PageRequest.of(0, 10)).pageIds()).containsExactly(1002);
+
+        index.onAuthorChanged(new AuthorChangedEvent(AuthorChangedEvent.Type.SAVED, 1001, "Jaroslav", "Hašek"));
+        index.onAuthorChanged(AuthorChangedEvent.deleted(1002));
+
+        assertThat(index.search("capek", PageRequest.of(0, 10)).total()).isZero();
+        assertThat(index.search("hasek", PageRequest.of(0, 10)).pageIds()).containsExactly(1001);
+        assertThat(index.search("emc", PageRequest.of(0, 10)).total()).isZero();
+        assertThat(index.search("em", PageRequest.of(0, 10)).total()).isZero();
+    }
+}
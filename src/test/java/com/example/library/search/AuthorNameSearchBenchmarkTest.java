@@ -0,0 +1,88 @@
+package com.example.library.search;
+
+import com.example.library.model.Author;
+import com.example.library.repository.AuthorRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the trigram index with the LIKE '%name%' query it replaces on a large author table.
+ * AuthorNameIndexTest checks the same on a small table in every build.
+ * Run with: mvn test -Dtest=AuthorNameSearchBenchmarkTest -Dbenchmark=true [-Dbenchmark.authors=1000000]
+ */
+@DataJpaTest
+@Import({AuthorNameIndex.class, AuthorNameIndexLoader.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class AuthorNameSearchBenchmarkTest {
+    private static final Logger logger = LoggerFactory.getLogger(AuthorNameSearchBenchmarkTest.class);
+    private static final int AUTHORS = Integer.getInteger("benchmark.authors", 1_000_000);
+    private static final int RUNS = 5;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private AuthorNameIndex index;
+
+    @Autowired
+    private AuthorNameIndexLoader loader;
+
+    @Test
+    void trigramIndexReturnsTheSamePagesAsLikeQuery() {
+        jdbcTemplate.update("INSERT INTO author (id, first_name, last_name, nationality, nationality_key) "
+                + "SELECT X, "
+                + "ARRAY['Anna','Jan','Petr','Marie','Karel','Eva','Tomas','Lucie','Martin','Jana'][MOD(X, 10) + 1], "
+                + "ARRAY['Novak','Svoboda','Dvorak','Cerny','Prochazka','Kucera','Vesely','Horak'][MOD(X / 10, 8) + 1] || (X / 80), "
+                + "ARRAY['Czech','Slovak','Polish'][MOD(X, 3) + 1], "
+                + "ARRAY['czech','slovak','polish'][MOD(X, 3) + 1] "
+                + "FROM SYSTEM_RANGE(1, ?)", AUTHORS);
+
+        long started = System.currentTimeMillis();
+        loader.run(null);
+        logger.info("Benchmark: Indexed {} authors in {} ms", index.size(), System.currentTimeMillis() - started);
+
+        Pageable pageable = PageRequest.of(0, 20, Sort.by("lastName", "id"));
+        for (String query : new String[] {"an", "novak", "dvorak1234", "arie", "xyz"}) {
+            Page<Author> like = authorRepository.findByName(query, pageable);
+            AuthorNameIndex.Matches matches = index.search(query, pageable);
+
+            assertThat(matches.total()).isEqualTo(like.getTotalElements());
+            assertThat(matches.pageIds()).containsExactlyElementsOf(like.getContent().stream().map(Author::getId).toList());
+
+            long likeMicros = fastest(() -> authorRepository.findByName(query, pageable));
+            long indexMicros = fastest(() -> index.search(query, pageable));
+            logger.info("Benchmark: {} - matches: {}, LIKE: {} us, trigram: {} us",
+                    query, matches.total(), likeMicros, indexMicros);
+        }
+    }
+
+    private long fastest(Supplier<?> query) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            long started = System.nanoTime();
+            query.get();
+            best = Math.min(best, (System.nanoTime() - started) / 1000);
+        }
+        return best;
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.library.search;
+
+import com.example.library.dto.BookFacets;
+import com.example.library.dto.BookFilter;
+import com.example.library.event.BookAvailabilityChangedEvent;
+import org.junit.jupiter.api.Test;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks the bitmap facet counts against a recount over the entries kept beside the index
+ */
+class BookFacetIndexTest {
+    private static final String[] NATIONALITIES = {"czech", "slovak", "polish", "german", "austrian"};
+    private static final int AUTHORS = 8;
+
+    private final BookFacetIndex index = new BookFacetIndex();
+    // What the index should hold, by book id
+    private final Map<Integer, BookFacetIndex.Entry> books = new HashMap<>();
+    private final Random random = new Random(42);
+
+    @Test
+    void eachFacetIsCountedWithTheFiltersOfTheOtherFacets() {
+        put(1, 1985, true, new int[]{1}, "czech");
+        put(2, 1988, false, new int[]{1}, "czech");
+        put(3, 1994, true, new int[]{2}, "slovak");
+        put(4, 2003, true, new int[]{1, 2}, "czech", "slovak");
+
+        BookFacets facets = index.count(new BookFilter(true, 1990, null, null, "Czech"), null);
+
+        // Availability ignores available=true: the czech books from 1990 on
+        assertThat(facets.getAvailable()).containsExactly(Map.entry("true", 1L), Map.entry("false", 0L));
+        // Decades ignore the year range: available czech books of any year
+        assertThat(facets.getDecade()).containsExactly(Map.entry(1980, 1L), Map.entry(2000, 1L));
+        // Nationalities ignore the nationality: available books from 1990 on
+        assertThat(facets.getNationality()).containsExactly(Map.entry("slovak", 2L), Map.entry("czech", 1L));
+        assertMatchesRecount(new BookFilter(true, 1990, null, null, "Czech"), null);
+    }
+
+    @Test
+    void yearRangesMergeWholeDecadesWithEdgeYears() {
+        for (int year = 1950; year < 2010; year++) {
+            put(year, year, year % 2 == 0, new int[]{1}, "czech");
+        }
+
+        assertThat(matching(1955, 1984)).isEqualTo(30);
+        assertThat(matching(1960, 1969)).isEqualTo(10);
+        assertThat(matching(1973, 1973)).isEqualTo(1);
+        assertThat(matching(1987, null)).isEqualTo(23);
+        assertThat(matching(null, 1962)).isEqualTo(13);
+        assertThat(matching(1900, 2100)).isEqualTo(60);
+        assertThat(matching(2100, null)).isZero();
+        assertThat(matching(1980, 1970)).isZero();
+        for (int from = 1945; from <= 2012; from += 3) {
+            assertMatchesRecount(new BookFilter(null, from, null, null, null), null);
+            assertMatchesRecount(new BookFilter(null, null, from, null, null), null);
+            assertMatchesRecount(new BookFilter(true, from, from + 17, null, null), null);
+        }
+    }
+
+    @Test
+    void withinLimitsTheCountsToTheMatchesOfASearch() {
+        for (int id = 1; id <= 300; id++) {
+            putRandom(id);
+        }
+        for (int round = 0; round < 50; round++) {
+            RoaringBitmap within = new RoaringBitmap();
+            // Ids the index does not know, like a search hit on a book deleted meanwhile, count for nothing
+            for (int i = 0; i < 60; i++) {
+                within.add(1 + random.nextInt(400));
+            }
+            assertMatchesRecount(randomFilter(), within);
+        }
+        assertMatchesRecount(new BookFilter(), new RoaringBitmap());
+    }
+
+    @Test
+    void updatesDeletesAndAvailabilityChangesKeepTheCountsCurrent() {
+        for (int id = 1; id <= 200; id++) {
+            putRandom(id);
+        }
+        for (int step = 0; step < 2000; step++) {
+            int id = 1 + random.nextInt(250);
+            switch (random.nextInt(4)) {
+                case 0 -> putRandom(id);
+                case 1 -> {
+                    index.remove(id);
+                    books.remove(id);
+                }
+                default -> {
+                    boolean available = random.nextBoolean();
+                    // Events of books that are not indexed are ignored
+                    index.onAvailabilityChanged(new BookAvailabilityChangedEvent(id, available));
+                    books.computeIfPresent(id, (key, entry) -> new BookFacetIndex.Entry(key, entry.publicationYear(),
+                            available, entry.authorIds(), entry.nationalityKeys()));
+                }
+            }
+            if (step % 50 == 0) {
+                assertMatchesRecount(randomFilter(), null);
+                assertMatchesRecount(new BookFilter(), null);
+            }
+        }
+        assertThat(index.size()).isEqualTo(books.size());
+        for (int authorId = 1; authorId <= AUTHORS; authorId++) {
+            int author = authorId;
+            assertThat(index.booksOf(authorId)).containsExactlyInAnyOrder(books.values().stream()
+                    .filter(entry -> Arrays.stream(entry.authorIds()).anyMatch(id -> id == author))
+                    .mapToInt(BookFacetIndex.Entry::bookId).toArray());
+        }
+    }
+
+    private long matching(Integer yearFrom, Integer yearTo) {
+        Map<String, Long> available = index.count(new BookFilter(null, yearFrom, yearTo, null, null), null).getAvailable();
+        return available.get("true") + available.get("false");
+    }
+
+    private void put(int id, int year, boolean available, int[] authorIds, String... nationalityKeys) {
+        BookFacetIndex.Entry entry = new BookFacetIndex.Entry(id, year, available, authorIds, nationalityKeys);
+        index.put(entry);
+        books.put(id, entry);
+    }
+
+    private void putRandom(int id) {
+        int[] authorIds = random.ints(1 + random.nextInt(2), 1, AUTHORS + 1).distinct().toArray();
+        // An author's nationality follows from the author
+        String[] nationalityKeys = Arrays.stream(authorIds).mapToObj(author -> NATIONALITIES[author % NATIONALITIES.length])
+                .distinct().toArray(String[]::new);
+        put(id, 1900 + random.nextInt(125), random.nextBoolean(), authorIds, nationalityKeys);
+    }
+
+    private BookFilter randomFilter() {
+        Boolean available = random.nextInt(3) == 0 ? null : random.nextBoolean();
+        Integer yearFrom = random.nextBoolean() ? null : 1895 + random.nextInt(135);
+        Integer yearTo = random.nextBoolean() ? null : 1895 + random.nextInt(135);
+        Integer authorId = random.nextInt(3) == 0 ? 1 + random.nextInt(AUTHORS + 1) : null;
+        String nationality = random.nextInt(3) == 0 ? NATIONALITIES[random.nextInt(NATIONALITIES.length)].toUpperCase() : null;
+        return new BookFilter(available, yearFrom, yearTo, authorId, nationality);
+    }
+
+    private void assertMatchesRecount(BookFilter filter, RoaringBitmap within) {
+        BookFacets facets = index.count(filter, within);
+        BookFacets expected = recount(filter, within);
+        assertThat(facets.getAvailable()).as("available of %s", filter).containsExactlyEntriesOf(expected.getAvailable());
+        assertThat(facets.getDecade()).as("decades of %s", filter).containsExactlyEntriesOf(expected.getDecade());
+        assertThat(facets.getNationality()).as("nationalities of %s", filter)
+                .containsExactlyEntriesOf(expected.getNationality());
+    }
+
+    private BookFacets recount(BookFilter filter, RoaringBitmap within) {
+        long availableCount = 0;
+        long unavailableCount = 0;
+        Map<Integer, Long> decades = new TreeMap<>();
+        Map<String, Long> nationalities = new HashMap<>();
+        for (BookFacetIndex.Entry book : books.values()) {
+            if (within != null && !within.contains(book.bookId())) {
+                continue;
+            }
+            boolean available = filter.getAvailable() == null || filter.getAvailable() == book.available();
+            boolean inYears = (filter.getYearFrom() == null || book.publicationYear() >= filter.getYearFrom())
+                    && (filter.getYearTo() == null || book.publicationYear() <= filter.getYearTo());
+            boolean byAuthor = filter.getAuthorId() == null
+                    || Arrays.stream(book.authorIds()).anyMatch(id -> id == filter.getAuthorId());
+            boolean ofNationality = filter.getNationality() == null
+                    || Arrays.asList(book.nationalityKeys()).contains(filter.getNationality().toLowerCase());
+            if (!byAuthor) {
+                continue;
+            }
+            if (inYears && ofNationality) {
+                if (book.available()) {
+                    availableCount++;
+                } else {
+                    unavailableCount++;
+                }
+            }
+            if (available && ofNationality) {
+                decades.merge(book.publicationYear() / 10 * 10, 1L, Long::sum);
+            }
+            if (available && inYears) {
+                for (String nationality : book.nationalityKeys()) {
+                    nationalities.merge(nationality, 1L, Long::sum);
+                }
+            }
+        }
+        BookFacets facets = new BookFacets();
+        facets.getAvailable().put("true", availableCount);
+        facets.getAvailable().put("false", unavailableCount);
+        facets.setDecade(decades);
+        List<Map.Entry<String, Long>> sorted = new ArrayList<>(nationalities.entrySet());
+        sorted.sort(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+        Map<String, Long> ordered = new LinkedHashMap<>();
+        sorted.forEach(entry -> ordered.put(entry.getKey(), entry.getValue()));
+        facets.setNationality(ordered);
+        return facets;
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.library.search;
+
+import com.example.library.dto.BookSearchHit;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks ranking and paging, and compares an index kept current by random puts and removals with
+ * one built from scratch over the same books
+ */
+class BookSearchIndexTest {
+    private static final String[] WORDS = {"war", "peace", "wars", "story", "stories", "robot", "Čapek", "capek",
+            "garden", "gardener", "year", "dog", "cat", "krakatit"};
+    private static final int BOOKS = 40;
+
+    private final BookSearchIndex index = new BookSearchIndex();
+    // What the index should hold, by book id
+    private final Map<Integer, BookSearchIndex.Document> books = new HashMap<>();
+    private final Random random = new Random(11);
+
+    @Test
+    void isbnMatchRanksAboveTitleMatchAboveContentMatch() {
+        put(1, "Notes 9780306406157", "Someone", "978-1-4028-9462-6", "Plain text");
+        put(2, "Notes", "Someone", "978-0-306-40615-7", "Plain text");
+        put(3, "Notes", "Someone", "978-0-14-044913-6", "Plain 9780306406157");
+
+        // The ISBN-10 form of the same number finds the same book
+        assertThat(index.search("0-306-40615-2", PageRequest.of(0, 10)).getContent())
+                .extracting(BookSearchHit::getId).containsExactly(2, 1, 3);
+    }
+
+    @Test
+    void titleMatchRanksAboveAuthorMatchAboveContentMatch() {
+        put(1, "Gardener", "Someone", "978-0000000001", "Plain text");
+        put(2, "Notes", "Gardener", "978-0000000002", "Plain text");
+        put(3, "Notes", "Someone", "978-0000000003", "Gardener text");
+        put(4, "Notes", "Someone", "978-0000000004", "Plain text");
+
+        assertThat(index.search("gardener", PageRequest.of(0, 10)).getContent())
+                .extracting(BookSearchHit::getId).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    void pagesSplitTheFullRankingAndReportTheTotal() {
+        for (int id = 1; id <= 7; id++) {
+            // Fewer other words, shorter document, higher score
+            put(id, "Robot " + "filler ".repeat(id), "Capek", "978-000000000" + id, null);
+        }
+        put(8, "Garden", "Capek", "978-0000000008", null);
+
+        List<Integer> ranking = ids(index.search("robots", PageRequest.of(0, 100)));
+        assertThat(ranking).containsExactly(1, 2, 3, 4, 5, 6, 7);
+
+        List<Integer> paged = new ArrayList<>();
+        for (int page = 0; page < 3; page++) {
+            Page<BookSearchHit> hits = index.search("robots", PageRequest.of(page, 3));
+            assertThat(hits.getTotalElements()).isEqualTo(7);
+            assertThat(hits.getTotalPages()).isEqualTo(3);
+            paged.addAll(ids(hits));
+        }
+        assertThat(paged).isEqualTo(ranking);
+        Page<BookSearchHit> pastTheEnd = index.search("robots", PageRequest.of(3, 3));
+        assertThat(pastTheEnd.getContent()).isEmpty();
+        assertThat(pastTheEnd.getTotalElements()).isEqualTo(7);
+        assertThat(index.search("nothing", PageRequest.of(0, 3)).getTotalElements()).isZero();
+    }
+
+    @Test
+    void randomPutsAndRemovalsScoreLikeAFreshIndex() {
+        for (int step = 0; step < 3000; step++) {
+            int id = 1 + random.nextInt(BOOKS);
+            if (random.nextInt(4) == 0) {
+                index.remove(id);
+                books.remove(id);
+            } else {
+                put(id, randomText(), randomText(), "978-00000000" + String.format("%02d", id), randomText());
+            }
+            if (step % 100 == 0) {
+                assertMatchesFreshIndex();
+            }
+        }
+        assertMatchesFreshIndex();
+    }
+
+    @Test
+    void changeDuringRebuildIsNotOverwrittenByTheLoadedRow() {
+        put(1, "Stale title", "Capek", "978-0000000001", null);
+        put(2, "Stale title", "Capek", "978-0000000002", null);
+
+        index.beginRebuild();
+        put(1, "Fresh title", "Capek", "978-0000000001", null);
+        index.remove(2);
+        books.remove(2);
+        index.putFromRebuild(List.of(
+                BookSearchIndex.document(1, "Stale title", "Capek", "978-0000000001", 2000, null),
+                BookSearchIndex.document(2, "Stale title", "Capek", "978-0000000002", 2000, null),
+                BookSearchIndex.document(3, "Loaded title", "Capek", "978-0000000003", 2000, null)));
+        index.endRebuild();
+        books.put(3, BookSearchIndex.document(3, "Loaded title", "Capek", "978-0000000003", 2000, null));
+
+        assertThat(ids(index.search("stale", PageRequest.of(0, 10)))).isEmpty();
+        assertThat(ids(index.search("fresh", PageRequest.of(0, 10)))).containsExactly(1);
+        assertThat(ids(index.search("loaded", PageRequest.of(0, 10)))).containsExactly(3);
+        assertMatchesFreshIndex();
+
+        // After the rebuild, loaded rows replace what is indexed again
+        index.putFromRebuild(List.of(BookSearchIndex.document(1, "Later title", "Capek", "978-0000000001", 2000, null)));
+        assertThat(ids(index.search("later", PageRequest.of(0, 10)))).containsExactly(1);
+    }
+
+    // Postings and total length of the kept index decide every score, so both must match a rebuilt one
+    private void assertMatchesFreshIndex() {
+        BookSearchIndex fresh = new BookSearchIndex();
+        books.values().forEach(fresh::put);
+        assertThat(index.size()).isEqualTo(books.size());
+        for (String word : WORDS) {
+            for (String query : List.of(word, word + " " + WORDS[(word.length() * 7) % WORDS.length])) {
+                assertThat(index.search(query, PageRequest.of(0, BOOKS)).getContent()).as("search(%s)", query)
+                        .usingRecursiveFieldByFieldElementComparator()
+                        .containsExactlyElementsOf(fresh.search(query, PageRequest.of(0, BOOKS)).getContent());
+                assertThat(index.matchingIds(query)).as("matchingIds(%s)", query)
+                        .containsExactlyInAnyOrder(fresh.matchingIds(query));
+            }
+        }
+    }
+
+    private void put(int id, String title, String author, String isbn, String content) {
+        BookSearchIndex.Document document = BookSearchIndex.document(id, title, author, isbn, 2000, content);
+        index.put(document);
+        books.put(id, document);
+    }
+
+    private String randomText() {
+        StringBuilder text = new StringBuilder(WORDS[random.nextInt(WORDS.length)]);
+        for (int words = random.nextInt(4); words > 0; words--) {
+            text.append(' ').append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+
+    private static List<Integer> ids(Page<BookSearchHit> hits) {
+        return hits.getContent().stream().map(BookSearchHit::getId).toList();
+    }
+}
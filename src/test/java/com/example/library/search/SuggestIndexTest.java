@@ -0,0 +1,205 @@
+package com.example.library.search;
+
+import com.example.library.dto.Suggestion;
+import com.example.library.event.AuthorChangedEvent;
+import com.example.library.event.BookBorrowedEvent;
+import com.example.library.event.BookChangedEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks the cached top-k lists of the trie against a brute-force ranking of all names after random
+ * sequences of adds, renames, removals and loans
+ */
+class SuggestIndexTest {
+    private static final int TOP_K = 3;
+    private static final int MAX_KEY_LENGTH = 6;
+    // Few, overlapping words, so that edges are split and merged and most nodes keep a top list
+    private static final String[] WORDS = {"t", "ta", "tam", "tamer", "tango", "to", "tolkien", "tom", "tomas",
+            "Tomáš", "b", "bar", "barn", "barnaby", "o'neil", "x-ray"};
+    private static final int BOOKS = 40;
+    private static final int AUTHORS = 15;
+    private static final Comparator<Suggestion> RANKING = Comparator.comparingLong(Suggestion::getPopularity).reversed()
+            .thenComparingInt(suggestion -> suggestion.getText().length())
+            .thenComparing(Suggestion::getText)
+            .thenComparing(Suggestion::getType)
+            .thenComparingInt(Suggestion::getId);
+
+    private final SuggestIndex index = new SuggestIndex(TOP_K, MAX_KEY_LENGTH);
+    // What the index should hold, by type and id
+    private final Map<String, Suggestion> names = new HashMap<>();
+    private final Random random = new Random(7);
+
+    @Test
+    void completesAnyWordStartByPopularity() {
+        putBook(1, "The Hobbit");
+        putAuthor(1, "John", "Tolkien");
+        putBook(2, "Tolkien and the Great War");
+        borrow(1, 1);
+        borrow(1, 1);
+        borrow(2);
+
+        assertThat(index.suggest("tolk", TOP_K)).extracting(Suggestion::getText)
+                .containsExactly("John Tolkien", "Tolkien and the Great War");
+        assertThat(index.suggest("HOB", TOP_K)).extracting(Suggestion::getText).containsExactly("The Hobbit");
+        assertThat(index.suggest("hobo", TOP_K)).isEmpty();
+        assertThat(index.suggest("  ", TOP_K)).isEmpty();
+    }
+
+    @Test
+    void splittingAnEdgeKeepsTheListsOfBothHalvesApart() {
+        // More than k keys below one edge, so its node caches a top list
+        for (int id = 1; id <= TOP_K + 2; id++) {
+            putBook(id, "Tamer");
+        }
+        // Ends part way along the edge and ranks first by its shorter text
+        putBook(TOP_K + 3, "Tam");
+
+        assertThat(index.suggest("tam", TOP_K)).extracting(Suggestion::getText).startsWith("Tam");
+        assertThat(index.suggest("tame", TOP_K)).extracting(Suggestion::getText).containsOnly("Tamer");
+        assertAllPrefixesMatchBruteForce();
+    }
+
+    @Test
+    void randomChangesKeepTheTopListsInAgreementWithABruteForceRanking() {
+        for (int step = 0; step < 5000; step++) {
+            int id = 1 + random.nextInt(BOOKS);
+            switch (random.nextInt(6)) {
+                case 0 -> putBook(id, randomName());
+                case 1 -> putAuthor(1 + random.nextInt(AUTHORS), randomWord(), randomWord());
+                case 2 -> removeBook(id);
+                case 3 -> removeAuthor(1 + random.nextInt(AUTHORS));
+                default -> borrow(id, 1 + random.nextInt(AUTHORS), 1 + random.nextInt(AUTHORS));
+            }
+            if (step % 25 == 0) {
+                assertAllPrefixesMatchBruteForce();
+            }
+        }
+        assertAllPrefixesMatchBruteForce();
+    }
+
+    @Test
+    void rebuildComputesTheSameListsAsIncrementalUpkeep() {
+        for (int step = 0; step < 1000; step++) {
+            putBook(1 + random.nextInt(BOOKS), randomName());
+            borrow(1 + random.nextInt(BOOKS));
+        }
+
+        index.beginRebuild();
+        // A change arriving during the rebuild wins over the loaded row
+        putBook(BOOKS + 1, "tango bar");
+        names.values().forEach(name -> index.putFromRebuild(name.getType(), name.getId(), name.getText(),
+                name.getPopularity()));
+        index.putFromRebuild(SuggestIndex.BOOK, BOOKS + 1, "stale title", 0);
+        index.endRebuild();
+        assertAllPrefixesMatchBruteForce();
+
+        for (int step = 0; step < 500; step++) {
+            if (random.nextBoolean()) {
+                removeBook(1 + random.nextInt(BOOKS));
+            } else {
+                borrow(1 + random.nextInt(BOOKS));
+            }
+        }
+        assertAllPrefixesMatchBruteForce();
+    }
+
+    private void assertAllPrefixesMatchBruteForce() {
+        for (String word : WORDS) {
+            for (int length = 1; length <= word.length(); length++) {
+                String prefix = word.substring(0, length);
+                for (int limit = 1; limit <= TOP_K; limit++) {
+                    assertThat(index.suggest(prefix, limit)).as("suggest(%s, %d)", prefix, limit)
+                            .usingRecursiveFieldByFieldElementComparator()
+                            .containsExactlyElementsOf(bruteForce(prefix, limit));
+                }
+            }
+        }
+        assertThat(index.size()).isEqualTo(names.size());
+    }
+
+    private List<Suggestion> bruteForce(String prefix, int limit) {
+        String needle = normalize(prefix);
+        if (needle.length() > MAX_KEY_LENGTH) {
+            needle = needle.substring(0, MAX_KEY_LENGTH);
+        }
+        List<Suggestion> matches = new ArrayList<>();
+        for (Suggestion name : names.values()) {
+            String normalized = normalize(name.getText());
+            for (int i = 0; i < normalized.length(); i++) {
+                if ((i == 0 || normalized.charAt(i - 1) == ' ')
+                        && normalized.substring(i, Math.min(normalized.length(), i + MAX_KEY_LENGTH)).startsWith(needle)) {
+                    matches.add(copy(name));
+                    break;
+                }
+            }
+        }
+        matches.sort(RANKING);
+        return matches.subList(0, Math.min(limit, matches.size()));
+    }
+
+    private void putBook(int id, String title) {
+        index.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.SAVED, id, title, null, null, 2000, null));
+        rename(SuggestIndex.BOOK, id, title);
+    }
+
+    private void putAuthor(int id, String firstName, String lastName) {
+        index.onAuthorChanged(new AuthorChangedEvent(AuthorChangedEvent.Type.SAVED, id, firstName, lastName));
+        rename(SuggestIndex.AUTHOR, id, firstName + " " + lastName);
+    }
+
+    // A renamed entry keeps its popularity
+    private void rename(String type, int id, String text) {
+        Suggestion previous = names.get(type + ":" + id);
+        names.put(type + ":" + id, new Suggestion(type, id, text, previous != null ? previous.getPopularity() : 0));
+    }
+
+    private void removeBook(int id) {
+        index.onBookChanged(BookChangedEvent.deleted(id));
+        names.remove(SuggestIndex.BOOK + ":" + id);
+    }
+
+    private void removeAuthor(int id) {
+        index.onAuthorChanged(AuthorChangedEvent.deleted(id));
+        names.remove(SuggestIndex.AUTHOR + ":" + id);
+    }
+
+    private void borrow(int bookId, Integer... authorIds) {
+        index.onBookBorrowed(new BookBorrowedEvent(bookId, List.of(authorIds)));
+        // Loans of names that are not indexed are not counted
+        names.computeIfPresent(SuggestIndex.BOOK + ":" + bookId,
+                (key, name) -> new Suggestion(name.getType(), name.getId(), name.getText(), name.getPopularity() + 1));
+        for (Integer authorId : authorIds) {
+            names.computeIfPresent(SuggestIndex.AUTHOR + ":" + authorId,
+                    (key, name) -> new Suggestion(name.getType(), name.getId(), name.getText(), name.getPopularity() + 1));
+        }
+    }
+
+    private String randomName() {
+        StringBuilder name = new StringBuilder(randomWord());
+        for (int words = random.nextInt(3); words > 0; words--) {
+            name.append(' ').append(randomWord());
+        }
+        return name.toString();
+    }
+
+    private String randomWord() {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    private static Suggestion copy(Suggestion name) {
+        return new Suggestion(name.getType(), name.getId(), name.getText(), name.getPopularity());
+    }
+
+    private static String normalize(String text) {
+        return TextAnalyzer.fold(text).replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.library.service;
+
+import com.example.library.dto.AvailabilityChange;
+import com.example.library.event.BookAvailabilityChangedEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Subscribers on connections that stall or fail, with a single sender thread so that a blocked
+ * write would hold up everyone else
+ */
+class AvailabilityStreamServiceTest {
+    private static final long SEND_TIMEOUT_MS = 100;
+
+    // Handed out by subscribe in this order
+    private final Deque<SseEmitter> emitters = new ArrayDeque<>();
+    private final AvailabilityStreamService service = new AvailabilityStreamService(60000, 10, 256, 100, 1,
+            SEND_TIMEOUT_MS, 4) {
+        @Override
+        SseEmitter createEmitter(long timeoutMs) {
+            return emitters.removeFirst();
+        }
+    };
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void stalledSubscriberIsDroppedAndDoesNotHoldUpTheOthers() throws Exception {
+        StalledEmitter stalled = new StalledEmitter();
+        RecordingEmitter healthy = new RecordingEmitter();
+        emitters.add(stalled);
+        emitters.add(healthy);
+        service.subscribe(Set.of(1));
+        service.subscribe(Set.of(2));
+
+        service.onAvailabilityChanged(new BookAvailabilityChangedEvent(1, false));
+        assertThat(stalled.writeStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        service.onAvailabilityChanged(new BookAvailabilityChangedEvent(2, false));
+        // Queued behind the blocked write on the only sender
+        assertThat(healthy.books.poll(300, TimeUnit.MILLISECONDS)).isNull();
+
+        service.dropStalledSubscribers();
+
+        assertThat(healthy.books.poll(5, TimeUnit.SECONDS)).isEqualTo(2);
+        assertThat(service.getSubscriberCount()).isEqualTo(1);
+
+        stalled.release.countDown();
+        service.onAvailabilityChanged(new BookAvailabilityChangedEvent(1, true));
+        service.onAvailabilityChanged(new BookAvailabilityChangedEvent(2, true));
+        assertThat(healthy.books.poll(5, TimeUnit.SECONDS)).isEqualTo(2);
+        assertThat(stalled.writes.get()).isEqualTo(1);
+    }
+
+    @Test
+    void writeWithinTheSendTimeoutKeepsItsSubscriber() throws Exception {
+        RecordingEmitter healthy = new RecordingEmitter();
+        emitters.add(healthy);
+        service.subscribe(Set.of());
+
+        service.onAvailabilityChanged(new BookAvailabilityChangedEvent(3, false));
+        assertThat(healthy.books.poll(5, TimeUnit.SECONDS)).isEqualTo(3);
+        Thread.sleep(SEND_TIMEOUT_MS * 2);
+        service.dropStalledSubscribers();
+
+        assertThat(service.getSubscriberCount()).isEqualTo(1);
+    }
+
+    @Test
+    void failingSubscriberIsClosed() throws Exception {
+        FailingEmitter failing = new FailingEmitter();
+        RecordingEmitter healthy = new RecordingEmitter();
+        emitters.add(failing);
+        emitters.add(healthy);
+        service.subscribe(Set.of());
+        service.subscribe(Set.of());
+
+        service.onAvailabilityChanged(new BookAvailabilityChangedEvent(4, false));
+
+        assertThat(healthy.books.poll(5, TimeUnit.SECONDS)).isEqualTo(4);
+        assertThat(waitFor(() -> service.getSubscriberCount() == 1)).isTrue();
+        service.onAvailabilityChanged(new BookAvailabilityChangedEvent(4, true));
+        assertThat(healthy.books.poll(5, TimeUnit.SECONDS)).isEqualTo(4);
+        assertThat(failing.writes.get()).isEqualTo(1);
+    }
+
+    private static boolean waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    // A client that reads nothing: the write blocks until released
+    private static final class StalledEmitter extends SseEmitter {
+        private final CountDownLatch writeStarted = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final AtomicInteger writes = new AtomicInteger();
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            writes.incrementAndGet();
+            writeStarted.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted");
+            }
+        }
+    }
+
+    private static final class RecordingEmitter extends SseEmitter {
+        private final BlockingQueue<Integer> books = new LinkedBlockingQueue<>();
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            builder.build().stream()
+                    .filter(data -> data.getData() instanceof AvailabilityChange)
+                    .forEach(data -> books.add(((AvailabilityChange) data.getData()).getBookId()));
+        }
+    }
+
+    // A client that went away
+    private static final class FailingEmitter extends SseEmitter {
+        private final AtomicInteger writes = new AtomicInteger();
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            writes.incrementAndGet();
+            throw new IOException("Broken pipe");
+        }
+    }
+}
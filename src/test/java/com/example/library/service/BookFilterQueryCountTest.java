@@ -0,0 +1,106 @@
+package com.example.library.service;
+
+import com.example.library.TestFixtures;
+import com.example.library.dto.BookFilter;
+import com.example.library.dto.BookResponse;
+import com.example.library.dto.BookSummary;
+import com.example.library.model.Author;
+import com.example.library.model.Book;
+import com.example.library.repository.KeysetPaginator;
+import com.example.library.search.BookFacetIndex;
+import com.example.library.search.BookSearchIndex;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import({BookService.class, KeysetPaginator.class, BookSearchIndex.class, BookFacetIndex.class})
+class BookFilterQueryCountTest {
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private Statistics statistics;
+    private Author capek;
+
+    @BeforeEach
+    void setUp() {
+        capek = author("Karel", "Capek", "Czech");
+        Author neruda = author("Jan", "Neruda", "Czech");
+        Author austen = author("Jane", "Austen", "British");
+        for (int i = 0; i < 30; i++) {
+            Book book = TestFixtures.book(i);
+            book.setPublicationYear(1985 + i);
+            book.setAvailable(i % 2 == 0);
+            if (i % 3 == 0) {
+                book.getAuthors().add(capek);
+                book.getAuthors().add(neruda);
+            } else {
+                book.getAuthors().add(austen);
+            }
+            entityManager.persist(book);
+        }
+        entityManager.flush();
+        entityManager.clear();
+        statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class)
+                .getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void combinedFiltersSelectMatchingBooks() {
+        BookFilter filter = new BookFilter(true, 1990, 2000, capek.getId(), null);
+
+        Page<BookSummary> books = bookService.getBookSummaries(filter, PageRequest.of(0, 10, Sort.by("id")));
+
+        assertThat(books.getContent()).extracting(BookSummary::getTitle).containsExactly("Book 6", "Book 12");
+        assertThat(books.getContent().get(0).getAuthorNames()).containsExactly("Karel Capek", "Jan Neruda");
+    }
+
+    @Test
+    void summaryPageTakesThreeStatementsRegardlessOfPageSize() {
+        // Both Czech authors wrote every third book, the EXISTS filter still lists each book once
+        BookFilter filter = new BookFilter(null, null, null, null, " CZECH ");
+
+        Page<BookSummary> books = bookService.getBookSummaries(filter, PageRequest.of(0, 5, Sort.by("publicationYear")));
+
+        assertThat(books.getTotalElements()).isEqualTo(10);
+        assertThat(books.getContent()).hasSize(5).allSatisfy(book -> assertThat(book.getAuthorNames()).hasSize(2));
+        // Page, count and one query for the author names of the whole page
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+    }
+
+    @Test
+    void fullPageLoadsAuthorsInOneBatch() {
+        BookFilter filter = new BookFilter(false, null, null, null, null);
+
+        Page<BookResponse> books = bookService.getAllBooks(filter, PageRequest.of(0, 10, Sort.by("id")));
+
+        assertThat(books.getTotalElements()).isEqualTo(15);
+        assertThat(books.getContent()).hasSize(10).allSatisfy(book -> assertThat(book.getAuthors()).isNotEmpty());
+        // Page, count and at most one batch for the authors of all ten books
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(3);
+    }
+
+    private Author author(String firstName, String lastName, String nationality) {
+        Author author = new Author();
+        author.setFirstName(firstName);
+        author.setLastName(lastName);
+        author.setNationality(nationality);
+        return entityManager.persist(author);
+    }
+}
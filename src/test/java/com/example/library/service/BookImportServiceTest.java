@@ -0,0 +1,154 @@
+package com.example.library.service;
+
+import com.example.library.TestFixtures;
+import com.example.library.dto.ImportJobStatus;
+import com.example.library.dto.ImportRowError;
+import com.example.library.model.Book;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.KeysetPaginator;
+import com.example.library.search.BookFacetIndex;
+import com.example.library.search.BookSearchIndex;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.persistence.EntityManagerFactory;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Chunks commit on the import worker, so the test itself must not run in a transaction
+@DataJpaTest(properties = {"library.import.chunk-size=3", "library.import.threads=1",
+        "library.import.max-record-length=1000", "spring.jpa.properties.hibernate.generate_statistics=true"})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({BookImportService.class, BookService.class, KeysetPaginator.class, BookSearchIndex.class,
+        BookFacetIndex.class})
+@ImportAutoConfiguration({JacksonAutoConfiguration.class, ValidationAutoConfiguration.class})
+class BookImportServiceTest {
+    private static final String HEADER = "title,author,publication_year,isbn,content\n";
+
+    @Autowired
+    private BookImportService importService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        bookRepository.deleteAll();
+    }
+
+    @Test
+    void commitsOneTransactionPerChunk() throws Exception {
+        StringBuilder csv = new StringBuilder(HEADER);
+        for (int i = 1; i <= 7; i++) {
+            csv.append(row(i));
+        }
+
+        ImportJobStatus job = importCsv(csv.toString());
+
+        assertThat(job.getState()).isEqualTo("COMPLETED");
+        assertThat(job.getRowsRead()).isEqualTo(7);
+        assertThat(job.getRowsImported()).isEqualTo(7);
+        assertThat(job.getErrors()).isEmpty();
+        // Chunks of 3, 3 and 1
+        assertThat(statistics.getTransactionCount()).isEqualTo(3);
+        assertThat(bookRepository.count()).isEqualTo(7);
+    }
+
+    @Test
+    void failedChunkIsRetriedRowByRowAndErrorsNameTheirRows() throws Exception {
+        String csv = HEADER
+                + row(1) + row(2) + row(3)
+                // The second chunk fails on the duplicate ISBN, its other rows are saved one by one
+                + row(4) + "Duplicate,Author 1,2000," + TestFixtures.isbn(1) + ",\n" + row(6)
+                + ",Author 7,2000," + TestFixtures.isbn(7) + ",\n"
+                + "Book 8,Author 8,soon," + TestFixtures.isbn(8) + ",\n"
+                + "\"Book 9, with a comma\",Author 9,2000," + TestFixtures.isbn(9) + ",\"Line one\r\nline \"\"two\"\"\"\n";
+
+        ImportJobStatus job = importCsv(csv);
+
+        assertThat(job.getState()).isEqualTo("COMPLETED");
+        assertThat(job.getRowsRead()).isEqualTo(9);
+        assertThat(job.getRowsImported()).isEqualTo(6);
+        assertThat(job.getRowsFailed()).isEqualTo(3);
+        assertThat(job.getErrors()).extracting(ImportRowError::getRow).containsExactlyInAnyOrder(5L, 7L, 8L);
+        assertThat(job.getErrors()).filteredOn(error -> error.getRow() == 5).singleElement()
+                .extracting(ImportRowError::getMessage).asString().startsWith("Could not be saved");
+        assertThat(job.getErrors()).filteredOn(error -> error.getRow() == 7).singleElement()
+                .extracting(ImportRowError::getMessage).asString().contains("Title is required");
+        assertThat(job.getErrors()).filteredOn(error -> error.getRow() == 8).singleElement()
+                .extracting(ImportRowError::getMessage).isEqualTo("Invalid publication year");
+
+        assertThat(bookRepository.findAll()).extracting(Book::getTitle)
+                .containsExactlyInAnyOrder("Book 1", "Book 2", "Book 3", "Book 4", "Book 6", "Book 9, with a comma");
+        assertThat(bookRepository.findByIsbnKey(TestFixtures.isbn(9).replace("-", "")))
+                .map(Book::getContent).contains("Line one\r\nline \"two\"");
+    }
+
+    @Test
+    void unclosedQuoteFailsTheJobAfterSavingTheRowsBeforeIt() throws Exception {
+        StringBuilder csv = new StringBuilder(HEADER)
+                .append(row(1)).append(row(2)).append(row(3)).append(row(4))
+                .append("\"Never closed,Author 5,2000,").append(TestFixtures.isbn(5)).append(",\n");
+        for (int i = 6; i <= 200; i++) {
+            csv.append(row(i));
+        }
+
+        ImportJobStatus job = importCsv(csv.toString());
+
+        assertThat(job.getState()).isEqualTo("FAILED");
+        assertThat(job.getRowsRead()).isEqualTo(5);
+        assertThat(job.getRowsImported()).isEqualTo(4);
+        assertThat(job.getRowsFailed()).isEqualTo(1);
+        assertThat(job.getErrors()).extracting(ImportRowError::getRow).containsOnly(5L);
+        assertThat(job.getErrors()).extracting(ImportRowError::getMessage)
+                .anySatisfy(message -> assertThat(message).contains("line 6"))
+                .anySatisfy(message -> assertThat(message).startsWith("Import aborted"));
+        assertThat(bookRepository.count()).isEqualTo(4);
+    }
+
+    private ImportJobStatus importCsv(String csv) throws IOException, InterruptedException {
+        String jobId = importService.submit(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)),
+                BookImportService.Format.CSV, BookImportService.Mode.CREATE).getJobId();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (true) {
+            Optional<ImportJobStatus> job = importService.getJob(jobId);
+            assertThat(job).isPresent();
+            if (job.get().getFinishedAt() != null) {
+                return job.get();
+            }
+            assertThat(System.currentTimeMillis()).as("import finished in time").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static String row(int number) {
+        Book book = TestFixtures.book(number);
+        return book.getTitle() + "," + book.getAuthor() + "," + book.getPublicationYear() + "," + book.getIsbn() + ",\n";
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.library.service;
+
+import com.example.library.TestFixtures;
+import com.example.library.dto.HoldView;
+import com.example.library.exception.HoldAlreadyExistsException;
+import com.example.library.model.Book;
+import com.example.library.model.Hold;
+import com.example.library.model.HoldStatus;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.HoldRepository;
+import com.example.library.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Concurrent holds commit in their own transactions, so the test itself must not run in one
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(HoldService.class)
+class HoldServiceTest {
+    private static final int THREADS = 8;
+
+    @Autowired
+    private HoldService holdService;
+
+    @Autowired
+    private HoldRepository holdRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private String first;
+    private String second;
+    private Book book;
+
+    @BeforeEach
+    void setUp() {
+        first = userRepository.save(TestFixtures.user(1)).getUid();
+        second = userRepository.save(TestFixtures.user(2)).getUid();
+        book = bookRepository.save(TestFixtures.book(1, 1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        holdRepository.deleteAll();
+        bookRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void holdOnABookWithACopyOnTheShelfIsReadyAtOnce() {
+        HoldView hold = holdService.placeHold(first, book.getId());
+
+        assertThat(hold.getStatus()).isEqualTo(HoldStatus.READY);
+        assertThat(hold.getExpiresAt()).isAfter(LocalDateTime.now());
+        Book claimed = bookRepository.findById(book.getId()).orElseThrow();
+        assertThat(claimed.getAvailableCopies()).isZero();
+        assertThat(claimed.isAvailable()).isFalse();
+
+        HoldView waiting = holdService.placeHold(second, book.getId());
+        assertThat(waiting.getStatus()).isEqualTo(HoldStatus.WAITING);
+        assertThat(waiting.getPosition()).isEqualTo(1);
+    }
+
+    @Test
+    void repeatedHoldOfOneUserIsRejected() {
+        holdService.placeHold(first, book.getId());
+
+        assertThatThrownBy(() -> holdService.placeHold(first, book.getId()))
+                .isInstanceOf(HoldAlreadyExistsException.class);
+    }
+
+    @Test
+    void concurrentHoldsOfOneUserOnOneBookCreateOneHold() throws Exception {
+        holdService.placeHold(first, book.getId());
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Boolean>> attempts = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                attempts.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        holdService.placeHold(second, book.getId());
+                        return true;
+                    } catch (HoldAlreadyExistsException e) {
+                        return false;
+                    }
+                }));
+            }
+            start.countDown();
+            assertThat(outcomes(attempts)).containsOnlyOnce(true);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(holdRepository.findAll()).filteredOn(hold -> hold.getUser().getUid().equals(second))
+                .singleElement().extracting(Hold::getStatus).isEqualTo(HoldStatus.WAITING);
+    }
+
+    @Test
+    void expiredReadyHoldPassesItsCopyToTheNextHold() {
+        Integer expiring = holdService.placeHold(first, book.getId()).getId();
+        Integer next = holdService.placeHold(second, book.getId()).getId();
+        Hold ready = holdRepository.findById(expiring).orElseThrow();
+        ready.setExpiresAt(LocalDateTime.now().minusMinutes(1));
+        holdRepository.save(ready);
+
+        holdService.sweep();
+
+        assertThat(holdService.getHold(expiring).getStatus()).isEqualTo(HoldStatus.EXPIRED);
+        assertThat(holdService.getHold(next).getStatus()).isEqualTo(HoldStatus.READY);
+        assertThat(bookRepository.findById(book.getId()).orElseThrow().getAvailableCopies()).isZero();
+    }
+
+    @Test
+    void cancelledReadyHoldPassesItsCopyOnAndTheLastOneGoesToTheShelf() {
+        Integer cancelled = holdService.placeHold(first, book.getId()).getId();
+        Integer next = holdService.placeHold(second, book.getId()).getId();
+
+        assertThat(holdService.cancelHold(cancelled).getStatus()).isEqualTo(HoldStatus.CANCELLED);
+        assertThat(holdService.getHold(next).getStatus()).isEqualTo(HoldStatus.READY);
+        assertThat(bookRepository.findById(book.getId()).orElseThrow().getAvailableCopies()).isZero();
+
+        holdService.cancelHold(next);
+        Book shelved = bookRepository.findById(book.getId()).orElseThrow();
+        assertThat(shelved.getAvailableCopies()).isEqualTo(1);
+        assertThat(shelved.isAvailable()).isTrue();
+    }
+
+    private static List<Boolean> outcomes(List<Future<Boolean>> attempts) throws Exception {
+        List<Boolean> outcomes = new ArrayList<>();
+        for (Future<Boolean> attempt : attempts) {
+            try {
+                outcomes.add(attempt.get(30, TimeUnit.SECONDS));
+            } catch (ExecutionException e) {
+                throw new AssertionError("Hold failed unexpectedly", e.getCause());
+            }
+        }
+        return outcomes;
+    }
+}
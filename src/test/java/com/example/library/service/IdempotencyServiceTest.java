@@ -0,0 +1,112 @@
+package com.example.library.service;
+
+import com.example.library.exception.IdempotencyKeyReusedException;
+import com.example.library.repository.IdempotencyRecordRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Claims and responses commit in their own transactions, so the test itself must not run in one
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(IdempotencyService.class)
+class IdempotencyServiceTest {
+    private static final String REQUEST = "b".repeat(64);
+    private static final int THREADS = 8;
+
+    // The service caches completed responses across tests, each test uses a key of its own
+    private final String key = UUID.randomUUID().toString();
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private IdempotencyRecordRepository repository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void tearDown() {
+        repository.deleteAll();
+    }
+
+    @Test
+    void repeatGetsTheFirstResponseAndAKeyCannotBeReusedForAnotherRequest() {
+        assertThat(idempotencyService.claim(key, REQUEST)).isNull();
+        idempotencyService.complete(key, REQUEST, 201, "application/json", "{\"id\":1}");
+
+        IdempotencyService.StoredResponse replay = idempotencyService.claim(key, REQUEST);
+
+        assertThat(replay.status()).isEqualTo(201);
+        assertThat(replay.body()).isEqualTo("{\"id\":1}");
+        assertThatThrownBy(() -> idempotencyService.claim(key, "c".repeat(64)))
+                .isInstanceOf(IdempotencyKeyReusedException.class);
+    }
+
+    @Test
+    void failedRequestFreesItsKey() {
+        assertThat(idempotencyService.claim(key, REQUEST)).isNull();
+        idempotencyService.abandon(key);
+
+        assertThat(idempotencyService.claim(key, REQUEST)).isNull();
+        assertThat(repository.count()).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentRepeatsWaitForTheFirstRequest() throws Exception {
+        assertThat(idempotencyService.claim(key, REQUEST)).isNull();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<IdempotencyService.StoredResponse>> repeats = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                repeats.add(executor.submit(() -> idempotencyService.claim(key, REQUEST)));
+            }
+            Thread.sleep(200);
+            assertThat(repeats).noneMatch(Future::isDone);
+
+            idempotencyService.complete(key, REQUEST, 201, "application/json", "{\"id\":1}");
+
+            for (Future<IdempotencyService.StoredResponse> repeat : repeats) {
+                assertThat(repeat.get(5, TimeUnit.SECONDS).status()).isEqualTo(201);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void repeatOnAnotherInstanceWaitsForTheFirstRequest() throws Exception {
+        // A second instance shares only the table
+        IdempotencyService otherInstance = new IdempotencyService(repository, transactionManager, 24, 100, 30000, 10000, 500);
+        assertThat(idempotencyService.claim(key, REQUEST)).isNull();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<IdempotencyService.StoredResponse> repeat = executor.submit(() -> otherInstance.claim(key, REQUEST));
+            Thread.sleep(200);
+            assertThat(repeat.isDone()).isFalse();
+
+            idempotencyService.complete(key, REQUEST, 200, "application/json", "{\"status\":\"RETURNED\"}");
+
+            assertThat(repeat.get(5, TimeUnit.SECONDS).body()).isEqualTo("{\"status\":\"RETURNED\"}");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
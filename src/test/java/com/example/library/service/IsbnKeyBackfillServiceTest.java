@@ -0,0 +1,64 @@
+package com.example.library.service;
+
+import com.example.library.model.Book;
+import com.example.library.repository.BookRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Import(IsbnKeyBackfillService.class)
+class IsbnKeyBackfillServiceTest {
+
+    @Autowired
+    private IsbnKeyBackfillService backfillService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void bookLeftWithoutKeyCanBeEditedUntilItsIsbnChanges() {
+        // Rows from before isbn_key: the ISBN-10 and ISBN-13 forms of one number
+        insertLegacyBook(1, "0-306-40615-2");
+        insertLegacyBook(2, "978-0-306-40615-7");
+
+        backfillService.run(null);
+        entityManager.clear();
+
+        assertThat(bookRepository.findById(1).orElseThrow().getIsbnKey()).isEqualTo("9780306406157");
+        Book duplicate = bookRepository.findById(2).orElseThrow();
+        assertThat(duplicate.getIsbnKey()).isNull();
+
+        duplicate.setTitle("Corrected title");
+        duplicate.setIsbn("9780306406157");
+        bookRepository.saveAndFlush(duplicate);
+        entityManager.clear();
+
+        // Same number written differently is no change of ISBN
+        Book edited = bookRepository.findById(2).orElseThrow();
+        assertThat(edited.getTitle()).isEqualTo("Corrected title");
+        assertThat(edited.getIsbnKey()).isNull();
+
+        edited.setIsbn("978-1-4028-9462-6");
+        bookRepository.saveAndFlush(edited);
+        entityManager.clear();
+
+        assertThat(bookRepository.findById(2).orElseThrow().getIsbnKey()).isEqualTo("9781402894626");
+    }
+
+    private void insertLegacyBook(int id, String isbn) {
+        jdbcTemplate.update("INSERT INTO book (id, title, author, publication_year, isbn, available) "
+                + "VALUES (?, ?, 'Author', 2000, ?, TRUE)", id, "Book " + id, isbn);
+    }
+}
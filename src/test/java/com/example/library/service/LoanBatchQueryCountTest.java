@@ -0,0 +1,124 @@
+package com.example.library.service;
+
+import com.example.library.TestFixtures;
+import com.example.library.dto.LoanBatchItem;
+import com.example.library.dto.CursorPage;
+import com.example.library.dto.LoanBatchResult;
+import com.example.library.dto.LoanView;
+import com.example.library.model.Book;
+import com.example.library.model.Loan;
+import com.example.library.model.LoanStatus;
+import com.example.library.model.User;
+import com.example.library.repository.KeysetPaginator;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {"spring.jpa.properties.hibernate.generate_statistics=true",
+        "library.loans.max-active.user=50"})
+@Import({LoanService.class, HoldService.class, KeysetPaginator.class})
+class LoanBatchQueryCountTest {
+    private static final int STACK = 30;
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private Statistics statistics;
+    private String userId;
+    private final List<Integer> bookIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        userId = entityManager.persist(TestFixtures.user(1)).getUid();
+        for (int i = 0; i < STACK; i++) {
+            Book book = TestFixtures.book(i);
+            // The last book is already lent out
+            book.setAvailable(i < STACK - 1);
+            bookIds.add(entityManager.persist(book).getId());
+        }
+        entityManager.flush();
+        entityManager.clear();
+        statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class)
+                .getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void borrowingAStackTakesAHandfulOfStatements() {
+        List<Integer> stack = new ArrayList<>(bookIds);
+        stack.add(bookIds.get(0));
+        stack.add(-1);
+
+        LoanBatchResult result = loanService.borrowBatch(userId, stack);
+        entityManager.flush();
+
+        assertThat(result.getSucceeded()).isEqualTo(STACK - 1);
+        assertThat(result.getFailed()).isEqualTo(3);
+        assertThat(result.getItems()).extracting(LoanBatchItem::getResult).endsWith("NOT_AVAILABLE", "DUPLICATE", "NOT_FOUND");
+        assertThat(result.getItems().subList(0, STACK - 1)).allSatisfy(item -> {
+            assertThat(item.getResult()).isEqualTo("BORROWED");
+            assertThat(item.getLoanId()).isNotNull();
+        });
+        // User check, counter reservation, ready-hold batch, claim batch, books, loan sequence, loan insert
+        // batch, giving back the unused reservations and the authors for the events
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(9);
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(STACK - 1);
+        assertThat(entityManager.find(Book.class, bookIds.get(0)).isAvailable()).isFalse();
+        entityManager.clear();
+        assertThat(entityManager.find(User.class, userId).getActiveLoans()).isEqualTo(STACK - 1);
+    }
+
+    @Test
+    void returningAStackTakesFiveStatements() {
+        List<Integer> loanIds = loanService.borrowBatch(userId, bookIds).getItems().stream()
+                .map(LoanBatchItem::getLoanId)
+                .filter(id -> id != null)
+                .toList();
+        loanService.returnLoan(loanIds.get(0));
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+
+        LoanBatchResult result = loanService.returnBatch(loanIds);
+
+        assertThat(result.getSucceeded()).isEqualTo(STACK - 2);
+        assertThat(result.getItems().get(0).getResult()).isEqualTo("ALREADY_RETURNED");
+        // Loan update batch, counter decrement batch, book ids of the loans, books with waiting holds,
+        // copy release batch
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(5);
+        assertThat(entityManager.find(Loan.class, loanIds.get(1)).getStatus()).isEqualTo(LoanStatus.RETURNED);
+        assertThat(entityManager.find(Book.class, bookIds.get(1)).isAvailable()).isTrue();
+        assertThat(entityManager.find(User.class, userId).getActiveLoans()).isZero();
+    }
+
+    @Test
+    void loanHistoryPageIsReadWithoutLoadingUsersOrBooks() {
+        loanService.borrowBatch(userId, bookIds);
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+
+        CursorPage<LoanView> page = loanService.getLoansOfUser(userId, LoanStatus.ACTIVE, null, 20);
+
+        assertThat(page.getContent()).hasSize(20);
+        assertThat(page.getContent().get(0).getUserName()).isEqualTo("Reader");
+        assertThat(page.getContent()).allSatisfy(loan -> assertThat(loan.getBookTitle()).startsWith("Book "));
+        // User check, keyset seek and one joined select for the page
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+}
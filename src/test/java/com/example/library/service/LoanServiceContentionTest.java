@@ -0,0 +1,223 @@
+package com.example.library.service;
+
+import com.example.library.TestFixtures;
+import com.example.library.dto.LoanView;
+import com.example.library.exception.BookNotAvailableException;
+import com.example.library.exception.LoanAlreadyReturnedException;
+import com.example.library.exception.LoanQuotaExceededException;
+import com.example.library.dto.HoldView;
+import com.example.library.model.Book;
+import com.example.library.model.Hold;
+import com.example.library.model.HoldStatus;
+import com.example.library.model.Loan;
+import com.example.library.model.LoanStatus;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.HoldRepository;
+import com.example.library.repository.KeysetPaginator;
+import com.example.library.repository.LoanRepository;
+import com.example.library.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Every thread commits its own transaction, so the test itself must not run in one
+@DataJpaTest(properties = "library.loans.max-active.user=" + LoanServiceContentionTest.LIMIT)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({LoanService.class, HoldService.class, LoanCounterReconciliationService.class, KeysetPaginator.class})
+class LoanServiceContentionTest {
+    private static final int THREADS = 16;
+    static final int LIMIT = 4;
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private HoldService holdService;
+
+    @Autowired
+    private HoldRepository holdRepository;
+
+    @Autowired
+    private LoanCounterReconciliationService reconciliationService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private final List<String> userIds = new ArrayList<>();
+    private Book book;
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < THREADS; i++) {
+            userIds.add(userRepository.save(TestFixtures.user(i)).getUid());
+        }
+        book = bookRepository.save(TestFixtures.book(1, 1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        holdRepository.deleteAll();
+        loanRepository.deleteAll();
+        bookRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void concurrentBorrowsOfOneCopyHaveExactlyOneWinner() throws Exception {
+        List<Outcome> outcomes = race(i -> () -> loanService.borrow(userIds.get(i), book.getId()));
+
+        assertThat(outcomes).filteredOn(Outcome.WON::equals).hasSize(1);
+        assertThat(outcomes).filteredOn(Outcome.LOST::equals).hasSize(THREADS - 1);
+        assertThat(loanRepository.count()).isEqualTo(1);
+        assertThat(bookRepository.findById(book.getId())).get().extracting(Book::isAvailable).isEqualTo(false);
+    }
+
+    @Test
+    void concurrentBorrowsGetOneWinnerPerCopy() throws Exception {
+        Book popular = bookRepository.save(TestFixtures.book(2, 3));
+
+        List<Outcome> outcomes = race(i -> () -> loanService.borrow(userIds.get(i), popular.getId()));
+
+        assertThat(outcomes).filteredOn(Outcome.WON::equals).hasSize(3);
+        assertThat(outcomes).filteredOn(Outcome.LOST::equals).hasSize(THREADS - 3);
+        assertThat(loanRepository.count()).isEqualTo(3);
+        Book stored = bookRepository.findById(popular.getId()).orElseThrow();
+        assertThat(stored.getAvailableCopies()).isZero();
+        assertThat(stored.isAvailable()).isFalse();
+    }
+
+    @Test
+    void concurrentReturnsOfOneLoanHaveExactlyOneWinner() throws Exception {
+        LoanView loan = loanService.borrow(userIds.get(0), book.getId());
+
+        List<Outcome> outcomes = race(i -> () -> loanService.returnLoan(loan.getId()));
+
+        assertThat(outcomes).filteredOn(Outcome.WON::equals).hasSize(1);
+        assertThat(outcomes).filteredOn(Outcome.LOST::equals).hasSize(THREADS - 1);
+        assertThat(loanRepository.findById(loan.getId())).get().extracting(Loan::getStatus).isEqualTo(LoanStatus.RETURNED);
+        assertThat(bookRepository.findById(book.getId())).get().extracting(Book::isAvailable).isEqualTo(true);
+        // The copy is free again, so the next borrow succeeds
+        assertThat(loanService.borrow(userIds.get(1), book.getId()).getId()).isNotNull();
+    }
+
+    @Test
+    void concurrentReturnsHandEachCopyToTheNextHoldOnce() throws Exception {
+        Book popular = bookRepository.save(TestFixtures.book(3, 3));
+        List<Integer> loanIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            loanIds.add(loanService.borrow(userIds.get(i), popular.getId()).getId());
+        }
+        List<Integer> holdIds = new ArrayList<>();
+        for (int i = 3; i < 7; i++) {
+            HoldView hold = holdService.placeHold(userIds.get(i), popular.getId());
+            assertThat(hold.getPosition()).isEqualTo(i - 2);
+            holdIds.add(hold.getId());
+        }
+
+        // Several threads per loan, so copies come back concurrently and each loan also has losers
+        List<Outcome> outcomes = race(i -> () -> loanService.returnLoan(loanIds.get(i % 3)));
+
+        assertThat(outcomes).filteredOn(Outcome.WON::equals).hasSize(3);
+        // The three oldest holds got a copy each, the newest still waits and no copy reached the shelf
+        assertThat(holdIds).extracting(id -> holdRepository.findById(id).orElseThrow().getStatus())
+                .containsExactly(HoldStatus.READY, HoldStatus.READY, HoldStatus.READY, HoldStatus.WAITING);
+        assertThat(holdRepository.findById(holdIds.get(0))).get().extracting(Hold::getExpiresAt).isNotNull();
+        assertThat(bookRepository.findById(popular.getId())).get().extracting(Book::getAvailableCopies).isEqualTo(0);
+        assertThat(holdService.getHold(holdIds.get(3)).getPosition()).isEqualTo(1);
+
+        // Walk-ins find no copy, the patron whose copy was set aside gets it
+        assertThat(race(i -> () -> loanService.borrow(userIds.get(0), popular.getId())))
+                .containsOnly(Outcome.LOST);
+        assertThat(loanService.borrow(userIds.get(3), popular.getId()).getId()).isNotNull();
+        assertThat(holdRepository.findById(holdIds.get(0))).get().extracting(Hold::getStatus)
+                .isEqualTo(HoldStatus.FULFILLED);
+    }
+
+    @Test
+    void concurrentBorrowsOfOneUserStopAtTheLimit() throws Exception {
+        List<Integer> bookIds = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            bookIds.add(bookRepository.save(TestFixtures.book(100 + i, 1)).getId());
+        }
+        String userId = userIds.get(0);
+
+        List<Outcome> outcomes = race(i -> () -> loanService.borrow(userId, bookIds.get(i)));
+
+        assertThat(outcomes).filteredOn(Outcome.WON::equals).hasSize(LIMIT);
+        assertThat(loanRepository.count()).isEqualTo(LIMIT);
+        assertThat(activeLoans(userId)).isEqualTo(LIMIT);
+        // Counters stay free of drift, a lost counter update is put right by the reconciliation
+        assertThat(reconciliationService.reconcile()).isZero();
+        Integer loanId = loanRepository.findAll().get(0).getId();
+        loanService.returnLoan(loanId);
+        assertThat(activeLoans(userId)).isEqualTo(LIMIT - 1);
+        userRepository.addActiveLoans(userId, 5);
+        assertThat(reconciliationService.reconcile()).isEqualTo(1);
+        assertThat(activeLoans(userId)).isEqualTo(LIMIT - 1);
+    }
+
+    private int activeLoans(String userId) {
+        return userRepository.findById(userId).orElseThrow().getActiveLoans();
+    }
+
+    private enum Outcome { WON, LOST }
+
+    private interface Attempt {
+        Callable<?> forThread(int thread);
+    }
+
+    // Releases all threads at once and classifies each result; any unexpected exception fails the test
+    private List<Outcome> race(Attempt attempt) throws InterruptedException, ExecutionException {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Outcome>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                Callable<?> call = attempt.forThread(i);
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        call.call();
+                        return Outcome.WON;
+                    } catch (BookNotAvailableException | LoanAlreadyReturnedException | LoanQuotaExceededException e) {
+                        return Outcome.LOST;
+                    }
+                }));
+            }
+            start.countDown();
+            List<Outcome> outcomes = new ArrayList<>();
+            for (Future<Outcome> future : futures) {
+                outcomes.add(future.get(30, TimeUnit.SECONDS));
+            }
+            return outcomes;
+        } catch (TimeoutException e) {
+            throw new AssertionError("Contended loan operation did not finish", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
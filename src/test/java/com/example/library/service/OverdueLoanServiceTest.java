@@ -0,0 +1,169 @@
+package com.example.library.service;
+
+import com.example.library.TestFixtures;
+import com.example.library.dto.OverdueRunStatus;
+import com.example.library.model.JobCheckpoint;
+import com.example.library.model.Loan;
+import com.example.library.model.LoanStatus;
+import com.example.library.model.User;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.JobCheckpointRepository;
+import com.example.library.repository.LoanRepository;
+import com.example.library.repository.OverdueReminderRepository;
+import com.example.library.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Chunks commit on the worker threads, so the test itself must not run in a transaction
+@DataJpaTest(properties = {"library.overdue.chunk-size=4", "library.overdue.threads=2"})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({OverdueLoanService.class, LoanStatusBackfillService.class})
+class OverdueLoanServiceTest {
+    private static final int PAST_DUE = 20;
+
+    @Autowired
+    private OverdueLoanService overdueLoanService;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private OverdueReminderRepository reminderRepository;
+
+    @Autowired
+    private JobCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private LoanStatusBackfillService statusBackfillService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final LocalDate today = LocalDate.now();
+    // Past-due active loans, ordered by due date as the job reads them
+    private final List<Loan> pastDue = new ArrayList<>();
+    private Loan notDue;
+    private Loan returned;
+    private Loan overdue;
+
+    @BeforeEach
+    void setUp() {
+        User user = userRepository.save(TestFixtures.user(1));
+        for (int i = PAST_DUE; i > 0; i--) {
+            pastDue.add(loan(user, i, today.minusDays(i * 10L), LoanStatus.ACTIVE));
+        }
+        notDue = loan(user, 21, today, LoanStatus.ACTIVE);
+        returned = loan(user, 22, today.minusDays(5), LoanStatus.RETURNED);
+        overdue = loan(user, 23, today.minusDays(14), LoanStatus.OVERDUE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        reminderRepository.deleteAll();
+        checkpointRepository.deleteAll();
+        loanRepository.deleteAll();
+        bookRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void runMarksPastDueLoansAndIsIdempotentWithinADay() {
+        overdueLoanService.runScheduled();
+
+        OverdueRunStatus run = overdueLoanService.getRuns().get(0);
+        assertThat(run.getState()).isEqualTo("COMPLETED");
+        assertThat(run.getLoansScanned()).isEqualTo(PAST_DUE + 1);
+        assertThat(run.getMarkedOverdue()).isEqualTo(PAST_DUE);
+        assertThat(run.getFinesUpdated()).isEqualTo(1);
+        // One per newly overdue loan, and the overdue one is due a weekly reminder on day 14
+        assertThat(run.getRemindersWritten()).isEqualTo(PAST_DUE + 1);
+        assertThat(reminderRepository.count()).isEqualTo(PAST_DUE + 1);
+
+        Loan firstDue = reload(pastDue.get(0));
+        assertThat(firstDue.getStatus()).isEqualTo(LoanStatus.OVERDUE);
+        // 200 days at 0.25 is capped at 20.00
+        assertThat(firstDue.getFine()).isEqualByComparingTo("20.00");
+        assertThat(reload(pastDue.get(PAST_DUE - 1)).getFine()).isEqualByComparingTo("2.50");
+        assertThat(reload(overdue).getFine()).isEqualByComparingTo("3.50");
+        assertThat(reload(notDue).getStatus()).isEqualTo(LoanStatus.ACTIVE);
+        assertThat(reload(returned).getStatus()).isEqualTo(LoanStatus.RETURNED);
+        assertThat(checkpointRepository.findById(OverdueLoanService.JOB_NAME)).get()
+                .extracting(JobCheckpoint::isRunning).isEqualTo(false);
+
+        overdueLoanService.runScheduled();
+
+        OverdueRunStatus again = overdueLoanService.getRuns().get(0);
+        assertThat(again.getMarkedOverdue()).isZero();
+        assertThat(again.getFinesUpdated()).isZero();
+        assertThat(reminderRepository.count()).isEqualTo(PAST_DUE + 1);
+    }
+
+    @Test
+    void interruptedRunResumesBehindItsCheckpoint() {
+        Loan lastDone = pastDue.get(9);
+        JobCheckpoint checkpoint = new JobCheckpoint(OverdueLoanService.JOB_NAME);
+        checkpoint.setRunDate(today);
+        checkpoint.setPhase(LoanStatus.ACTIVE);
+        checkpoint.setLastDueDate(lastDone.getDueDate());
+        checkpoint.setLastId(lastDone.getId());
+        checkpoint.setRunning(true);
+        checkpointRepository.save(checkpoint);
+
+        overdueLoanService.runScheduled();
+
+        OverdueRunStatus run = overdueLoanService.getRuns().get(0);
+        assertThat(run.isResumed()).isTrue();
+        assertThat(run.getMarkedOverdue()).isEqualTo(PAST_DUE - 10);
+        assertThat(reload(lastDone).getStatus()).isEqualTo(LoanStatus.ACTIVE);
+        assertThat(reload(pastDue.get(10)).getStatus()).isEqualTo(LoanStatus.OVERDUE);
+        // The OVERDUE phase was finished before the interruption
+        assertThat(reload(overdue).getFine()).isNull();
+    }
+
+    @Test
+    void loansStoredInLowerCaseAreProcessedAfterTheStatusBackfill() {
+        jdbcTemplate.update("UPDATE loan SET status = LOWER(status)");
+
+        statusBackfillService.run(null);
+        overdueLoanService.runScheduled();
+
+        assertThat(overdueLoanService.getRuns().get(0).getMarkedOverdue()).isEqualTo(PAST_DUE);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM loan WHERE status <> UPPER(status)", Integer.class))
+                .isZero();
+        assertThat(reload(returned).getStatus()).isEqualTo(LoanStatus.RETURNED);
+    }
+
+    private Loan reload(Loan loan) {
+        return loanRepository.findById(loan.getId()).orElseThrow();
+    }
+
+    private Loan loan(User user, int number, LocalDate dueDate, LoanStatus status) {
+        Loan loan = new Loan();
+        loan.setUser(user);
+        loan.setBook(bookRepository.save(TestFixtures.book(number)));
+        loan.setLoanDate(dueDate.minusDays(21));
+        loan.setDueDate(dueDate);
+        loan.setStatus(status);
+        return loanRepository.save(loan);
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.library.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CsvReaderTest {
+    private static final int MAX_RECORD_LENGTH = 64;
+
+    @Test
+    void splitsRecordsAndFields() throws IOException {
+        assertThat(readAll("title,author\nR.U.R.,Capek\n")).containsExactly(
+                List.of("title", "author"),
+                List.of("R.U.R.", "Capek"));
+    }
+
+    @Test
+    void quotedFieldsKeepCommasEscapedQuotesAndLineBreaks() throws IOException {
+        assertThat(readAll("\"Hello, World\",\"say \"\"hi\"\"\",\"two\nlines\",\"\"\n")).containsExactly(
+                List.of("Hello, World", "say \"hi\"", "two\nlines", ""));
+    }
+
+    @Test
+    void acceptsCrlfAndAMissingFinalLineBreak() throws IOException {
+        assertThat(readAll("a,b\r\n\"c\r\nd\",e")).containsExactly(
+                List.of("a", "b"),
+                List.of("c\r\nd", "e"));
+    }
+
+    @Test
+    void keepsEmptyFields() throws IOException {
+        assertThat(readAll(",x,\n")).containsExactly(List.of("", "x", ""));
+    }
+
+    @Test
+    void unclosedQuoteAtTheEndOfTheInputIsAnError() throws IOException {
+        CsvReader csv = reader("a,b\n\"open,c\nd,e\n");
+        assertThat(csv.readRecord()).containsExactly("a", "b");
+
+        assertThatThrownBy(csv::readRecord)
+                .isInstanceOf(CsvFormatException.class)
+                .hasMessageContaining("line 2");
+    }
+
+    @Test
+    void unclosedQuoteDoesNotReadPastTheRecordLimit() throws IOException {
+        CsvReader csv = reader("a,\"open\n" + "b,c\n".repeat(1000));
+        assertThatThrownBy(csv::readRecord)
+                .isInstanceOf(CsvFormatException.class)
+                .hasMessageContaining("longer than " + MAX_RECORD_LENGTH);
+    }
+
+    @Test
+    void recordAtTheLimitIsRead() throws IOException {
+        String field = "x".repeat(MAX_RECORD_LENGTH - 1);
+        assertThat(readAll(field + "\n")).containsExactly(List.of(field));
+    }
+
+    private static List<List<String>> readAll(String input) throws IOException {
+        List<List<String>> records = new ArrayList<>();
+        try (CsvReader csv = reader(input)) {
+            List<String> record;
+            while ((record = csv.readRecord()) != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    private static CsvReader reader(String input) {
+        return new CsvReader(new StringReader(input), MAX_RECORD_LENGTH);
+    }
+}